@@ -22,6 +22,42 @@ public class DatabaseErrorsConfig {
     @Value("${roadrats.dberrors.connection-timeout:30}")
     private int connectionTimeout;
 
+    @Value("${roadrats.dberrors.query-deadline-ms:20000}")
+    private long queryDeadlineMs;
+
+    @Value("${roadrats.dberrors.breaker.failure-threshold:2}")
+    private int breakerFailureThreshold;
+
+    @Value("${roadrats.dberrors.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+
+    @Value("${roadrats.dberrors.pool.max-size:2}")
+    private int poolMaxSize;
+
+    @Value("${roadrats.dberrors.pool.idle-evict-minutes:15}")
+    private int poolIdleEvictMinutes;
+
+    @Value("${roadrats.dberrors.collector.enabled:true}")
+    private boolean collectorEnabled;
+
+    @Value("${roadrats.dberrors.collector.max-entries-per-server:50000}")
+    private int collectorMaxEntriesPerServer;
+
+    @Value("${roadrats.dberrors.aggregation.bucket-minutes:60}")
+    private int aggregationBucketMinutes;
+
+    @Value("${roadrats.dberrors.search.max-docs:250000}")
+    private int searchMaxDocs;
+
+    @Value("${roadrats.dberrors.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    @Value("${roadrats.dberrors.archive.dir:./data/dberrors-archive}")
+    private String archiveDir;
+
+    @Value("${roadrats.dberrors.archive.retention-days:90}")
+    private int archiveRetentionDays;
+
     public List<String> getServers() {
         return Arrays.stream(serversStr.split(","))
                 .map(String::trim)
@@ -41,6 +77,54 @@ public class DatabaseErrorsConfig {
         return connectionTimeout;
     }
 
+    public long getQueryDeadlineMs() {
+        return queryDeadlineMs;
+    }
+
+    public int getBreakerFailureThreshold() {
+        return breakerFailureThreshold;
+    }
+
+    public long getBreakerOpenMs() {
+        return breakerOpenMs;
+    }
+
+    public int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    public int getPoolIdleEvictMinutes() {
+        return poolIdleEvictMinutes;
+    }
+
+    public boolean isCollectorEnabled() {
+        return collectorEnabled;
+    }
+
+    public int getCollectorMaxEntriesPerServer() {
+        return collectorMaxEntriesPerServer;
+    }
+
+    public int getAggregationBucketMinutes() {
+        return aggregationBucketMinutes;
+    }
+
+    public int getSearchMaxDocs() {
+        return searchMaxDocs;
+    }
+
+    public boolean isArchiveEnabled() {
+        return archiveEnabled;
+    }
+
+    public String getArchiveDir() {
+        return archiveDir;
+    }
+
+    public int getArchiveRetentionDays() {
+        return archiveRetentionDays;
+    }
+
     /**
      * Build a JDBC URL for a given server using Windows Integrated Authentication.
      */
@@ -38,12 +38,80 @@ public class Wms360Config {
     @Value("${roadrats.wms360.connection-timeout:30}")
     private int connectionTimeout;
 
+    @Value("${roadrats.wms360.pool.max-size:8}")
+    private int poolMaxSize;
+
+    @Value("${roadrats.wms360.pool.idle-evict-minutes:15}")
+    private int poolIdleEvictMinutes;
+
+    @Value("${roadrats.wms360.pool.statement-cache-size:64}")
+    private int statementCacheSize;
+
+    @Value("${roadrats.wms360.lookup.parallelism:6}")
+    private int lookupParallelism;
+
+    @Value("${roadrats.wms360.lookup.query-timeout-seconds:15}")
+    private int lookupQueryTimeoutSeconds;
+
+    @Value("${roadrats.wms360.lookup.deadline-ms:30000}")
+    private long lookupDeadlineMs;
+
+    @Value("${roadrats.wms360.lookup.batch-groups:true}")
+    private boolean lookupBatchGroups;
+
+    @Value("${roadrats.wms360.lookup.defer-slow:true}")
+    private boolean lookupDeferSlow;
+
+    @Value("${roadrats.wms360.lookup.slow-deadline-ms:120000}")
+    private long lookupSlowDeadlineMs;
+
+    @Value("${roadrats.wms360.lookup.deferred-ttl-seconds:600}")
+    private int lookupDeferredTtlSeconds;
+
+    @Value("${roadrats.wms360.lookup.deferred-max-runs:4}")
+    private int lookupDeferredMaxRuns;
+
+    @Value("${roadrats.wms360.lookup.deferred-max-connections:2}")
+    private int lookupDeferredMaxConnections;
+
+    @Value("${roadrats.wms360.lookup.cache.ttl-seconds:60}")
+    private int lookupCacheTtlSeconds;
+
+    @Value("${roadrats.wms360.lookup.cache.max-entries:200}")
+    private int lookupCacheMaxEntries;
+
+    @Value("${roadrats.wms360.bulk.concurrency:2}")
+    private int bulkConcurrency;
+
+    @Value("${roadrats.wms360.bulk.max-ids:1000}")
+    private int bulkMaxIds;
+
+    @Value("${roadrats.wms360.bulk.max-connections:3}")
+    private int bulkMaxConnections;
+
     @Value("${roadrats.wms360.xml-gateway-url:http://wmsapp-is-test/XMLLinkGateway/AlXmlGw.asp}")
     private String xmlGatewayUrl;
 
     public String getDriverClassName() { return driverClassName; }
     public int getConnectionTimeout() { return connectionTimeout; }
     public String getXmlGatewayUrl() { return xmlGatewayUrl; }
+    public int getPoolMaxSize() { return poolMaxSize; }
+    public int getPoolIdleEvictMinutes() { return poolIdleEvictMinutes; }
+    public int getStatementCacheSize() { return statementCacheSize; }
+    public int getLookupParallelism() { return lookupParallelism; }
+    public int getLookupQueryTimeoutSeconds() { return lookupQueryTimeoutSeconds; }
+    public long getLookupDeadlineMs() { return lookupDeadlineMs; }
+    public boolean isLookupBatchGroups() { return lookupBatchGroups; }
+    public boolean isLookupDeferSlow() { return lookupDeferSlow; }
+    public long getLookupSlowDeadlineMs() { return lookupSlowDeadlineMs; }
+    public int getLookupDeferredTtlSeconds() { return lookupDeferredTtlSeconds; }
+    public int getLookupDeferredMaxRuns() { return lookupDeferredMaxRuns; }
+    public int getLookupDeferredMaxConnections() { return lookupDeferredMaxConnections; }
+    public int getLookupCacheTtlSeconds() { return lookupCacheTtlSeconds; }
+    public int getLookupCacheMaxEntries() { return lookupCacheMaxEntries; }
+    public int getBulkConcurrency() { return bulkConcurrency; }
+    public int getBulkMaxIds() { return bulkMaxIds; }
+    public int getBulkMaxConnections() { return bulkMaxConnections; }
 
     public String getIoServer(String env) { return isProd(env) ? prodIoServer : testIoServer; }
     public String getIoDatabase(String env) { return isProd(env) ? prodIoDatabase : testIoDatabase; }
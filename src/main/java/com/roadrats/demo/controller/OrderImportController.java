@@ -1,5 +1,7 @@
 package com.roadrats.demo.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roadrats.demo.model.io.EnrichedOrderPage;
 import com.roadrats.demo.model.io.EnrichedOrderResult;
 import com.roadrats.demo.model.io.OrderImportResult;
 import com.roadrats.demo.model.io.QueueStatusResult;
@@ -7,6 +9,8 @@ import com.roadrats.demo.model.io.XmlLogResult;
 import com.roadrats.demo.repository.io.QueueStatusRepository;
 import com.roadrats.demo.repository.io.XmlLogRepository;
 import com.roadrats.demo.service.OrderImportService;
+import com.roadrats.demo.service.StuckOrderChangeFeedService;
+import com.roadrats.demo.service.XmlParsingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,11 +19,19 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/io")
@@ -36,11 +48,25 @@ public class OrderImportController {
     @Autowired
     private XmlLogRepository xmlLogRepository;
 
+    @Autowired
+    private StuckOrderChangeFeedService stuckOrderChangeFeedService;
+
+    @Autowired
+    private XmlParsingService xmlParsingService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * XML log rows for an order. Bodies are left out unless includeXml=true; fetch a single one
+     * with /xml-logs/{logId}/message or /xml-logs/{logId}/response.
+     */
     @GetMapping("/xml-logs")
-    public ResponseEntity<?> getXmlLogs(@RequestParam String orderNumber, @RequestParam String whId) {
+    public ResponseEntity<?> getXmlLogs(@RequestParam String orderNumber, @RequestParam String whId,
+                                        @RequestParam(defaultValue = "false") boolean includeXml) {
         try {
             logger.info("Fetching XML logs for order={}, wh={}", orderNumber, whId);
-            List<XmlLogResult> results = xmlLogRepository.getXmlLogs(orderNumber, whId);
+            List<XmlLogResult> results = xmlLogRepository.getXmlLogs(orderNumber, whId, includeXml);
             logger.info("Found {} XML log entries", results.size());
             return ResponseEntity.ok(results);
         } catch (Exception e) {
@@ -49,15 +75,48 @@ public class OrderImportController {
         }
     }
 
+    @GetMapping("/xml-logs/{logId}/{part}")
+    public ResponseEntity<?> getXmlBody(@PathVariable String logId, @PathVariable String part,
+                                        @RequestParam(defaultValue = "false") boolean pretty) {
+        if (!"message".equals(part) && !"response".equals(part)) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "part must be 'message' or 'response'");
+            return ResponseEntity.badRequest().body(response);
+        }
+        try {
+            String xml = xmlLogRepository.getXmlBody(logId, "response".equals(part));
+            if (xml == null) {
+                return ResponseEntity.notFound().build();
+            }
+            StreamingResponseBody body = out -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                if (pretty) {
+                    xmlParsingService.prettyPrint(xml, writer);
+                } else {
+                    writer.write(xml);
+                }
+                writer.flush();
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_XML)
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(buildErrorResponse(e, "Invalid logId"));
+        } catch (Exception e) {
+            logger.error("Error fetching XML {} for logId={}", part, logId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(buildErrorResponse(e, "Failed to fetch XML " + part));
+        }
+    }
+
     @GetMapping("/rate-query")
-    public ResponseEntity<?> getRateQueryResults() {
+    public ResponseEntity<?> getRateQueryResults(@RequestParam(defaultValue = "false") boolean includeXml) {
         try {
             logger.info("Fetching enriched rate query results...");
             long startTime = System.currentTimeMillis();
             List<EnrichedOrderResult> results = orderImportService.getEnrichedRateQueryResults();
             long duration = System.currentTimeMillis() - startTime;
             logger.info("Successfully retrieved {} enriched results in {}ms", results.size(), duration);
-            return ResponseEntity.ok(results);
+            return ResponseEntity.ok(includeXml ? results : withoutXml(results));
         } catch (Exception e) {
             logger.error("Error fetching rate query results", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(buildErrorResponse(e, "Failed to fetch rate query results"));
@@ -65,20 +124,84 @@ public class OrderImportController {
     }
 
     @GetMapping("/rate-hold-query")
-    public ResponseEntity<?> getRateHoldQueryResults() {
+    public ResponseEntity<?> getRateHoldQueryResults(@RequestParam(defaultValue = "false") boolean includeXml) {
         try {
             logger.info("Fetching enriched rate hold query results...");
             long startTime = System.currentTimeMillis();
             List<EnrichedOrderResult> results = orderImportService.getEnrichedRateHoldQueryResults();
             long duration = System.currentTimeMillis() - startTime;
             logger.info("Successfully retrieved {} enriched results in {}ms", results.size(), duration);
-            return ResponseEntity.ok(results);
+            return ResponseEntity.ok(includeXml ? results : withoutXml(results));
         } catch (Exception e) {
             logger.error("Error fetching rate hold query results", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(buildErrorResponse(e, "Failed to fetch rate hold query results"));
         }
     }
 
+    /**
+     * Keyset-paginated rate query (no TOP 1000 cap). Pass the returned nextCursor to get the next page.
+     */
+    @GetMapping("/rate-query/page")
+    public ResponseEntity<?> getRateQueryPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + OrderImportService.DEFAULT_PAGE_SIZE) int pageSize,
+            @RequestParam(defaultValue = "false") boolean includeXml) {
+        try {
+            long startTime = System.currentTimeMillis();
+            EnrichedOrderPage page = orderImportService.getEnrichedRateQueryPage(cursor, pageSize);
+            logger.info("Rate query page: {} enriched results, hasMore={} in {}ms",
+                    page.getOrders().size(), page.isHasMore(), System.currentTimeMillis() - startTime);
+            if (!includeXml) {
+                withoutXml(page.getOrders());
+            }
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(buildErrorResponse(e, "Invalid cursor"));
+        } catch (Exception e) {
+            logger.error("Error fetching rate query page", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(buildErrorResponse(e, "Failed to fetch rate query page"));
+        }
+    }
+
+    @GetMapping("/rate-hold-query/page")
+    public ResponseEntity<?> getRateHoldQueryPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + OrderImportService.DEFAULT_PAGE_SIZE) int pageSize,
+            @RequestParam(defaultValue = "false") boolean includeXml) {
+        try {
+            long startTime = System.currentTimeMillis();
+            EnrichedOrderPage page = orderImportService.getEnrichedRateHoldQueryPage(cursor, pageSize);
+            logger.info("Rate hold query page: {} enriched results, hasMore={} in {}ms",
+                    page.getOrders().size(), page.isHasMore(), System.currentTimeMillis() - startTime);
+            if (!includeXml) {
+                withoutXml(page.getOrders());
+            }
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(buildErrorResponse(e, "Invalid cursor"));
+        } catch (Exception e) {
+            logger.error("Error fetching rate hold query page", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(buildErrorResponse(e, "Failed to fetch rate hold query page"));
+        }
+    }
+
+    /**
+     * Whole stuck population as NDJSON (one enriched order per line), written page by page as each is enriched.
+     */
+    @GetMapping(value = "/rate-query/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRateQuery(
+            @RequestParam(defaultValue = "" + OrderImportService.DEFAULT_PAGE_SIZE) int pageSize) {
+        logger.info("Streaming rate query results (pageSize={})...", pageSize);
+        return ndjsonPages(cursor -> orderImportService.getEnrichedRateQueryPage(cursor, pageSize));
+    }
+
+    @GetMapping(value = "/rate-hold-query/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRateHoldQuery(
+            @RequestParam(defaultValue = "" + OrderImportService.DEFAULT_PAGE_SIZE) int pageSize) {
+        logger.info("Streaming rate hold query results (pageSize={})...", pageSize);
+        return ndjsonPages(cursor -> orderImportService.getEnrichedRateHoldQueryPage(cursor, pageSize));
+    }
+
     @GetMapping("/rate-query/raw")
     public ResponseEntity<?> getRawRateQueryResults() {
         try {
@@ -90,12 +213,15 @@ public class OrderImportController {
         }
     }
 
-    @GetMapping("/rate-query/summary")
+    /**
+     * Error x warehouse counts, import-status distribution and queue ages, aggregated in SQL
+     * over the full stuck population.
+     */
+    @GetMapping({"/rate-query/summary", "/rate-query/analytics"})
     public ResponseEntity<?> getRateQuerySummary() {
         try {
             logger.info("Fetching rate query summary...");
-            List<EnrichedOrderResult> results = orderImportService.getEnrichedRateQueryResults();
-            Map<String, Object> summary = buildErrorSummary(results);
+            Map<String, Object> summary = orderImportService.getStuckOrderAnalytics(false);
             return ResponseEntity.ok(summary);
         } catch (Exception e) {
             logger.error("Error fetching rate query summary", e);
@@ -103,12 +229,11 @@ public class OrderImportController {
         }
     }
 
-    @GetMapping("/rate-hold-query/summary")
+    @GetMapping({"/rate-hold-query/summary", "/rate-hold-query/analytics"})
     public ResponseEntity<?> getRateHoldQuerySummary() {
         try {
             logger.info("Fetching rate hold query summary...");
-            List<EnrichedOrderResult> results = orderImportService.getEnrichedRateHoldQueryResults();
-            Map<String, Object> summary = buildErrorSummary(results);
+            Map<String, Object> summary = orderImportService.getStuckOrderAnalytics(true);
             return ResponseEntity.ok(summary);
         } catch (Exception e) {
             logger.error("Error fetching rate hold query summary", e);
@@ -117,17 +242,11 @@ public class OrderImportController {
     }
 
     @GetMapping("/rate-query/export")
-    public ResponseEntity<?> exportRateQueryToCsv() {
+    public ResponseEntity<?> exportRateQueryToCsv(@RequestParam(defaultValue = "false") boolean gzip) {
         try {
-            logger.info("Exporting rate query results to CSV...");
+            logger.info("Exporting rate query results to CSV (gzip={})...", gzip);
             List<EnrichedOrderResult> results = orderImportService.getEnrichedRateQueryResults();
-            String csv = buildCsv(results);
-            String filename = "cls_debugger_export_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HHmmss")) + ".csv";
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
-                    .contentType(MediaType.parseMediaType("text/csv"))
-                    .body(csv);
+            return csvExportResponse("cls_debugger_export_", results, gzip);
         } catch (Exception e) {
             logger.error("Error exporting rate query results", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(buildErrorResponse(e, "Failed to export rate query results"));
@@ -135,17 +254,11 @@ public class OrderImportController {
     }
 
     @GetMapping("/rate-hold-query/export")
-    public ResponseEntity<?> exportRateHoldQueryToCsv() {
+    public ResponseEntity<?> exportRateHoldQueryToCsv(@RequestParam(defaultValue = "false") boolean gzip) {
         try {
-            logger.info("Exporting rate hold query results to CSV...");
+            logger.info("Exporting rate hold query results to CSV (gzip={})...", gzip);
             List<EnrichedOrderResult> results = orderImportService.getEnrichedRateHoldQueryResults();
-            String csv = buildCsv(results);
-            String filename = "cls_debugger_hold_export_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HHmmss")) + ".csv";
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
-                    .contentType(MediaType.parseMediaType("text/csv"))
-                    .body(csv);
+            return csvExportResponse("cls_debugger_hold_export_", results, gzip);
         } catch (Exception e) {
             logger.error("Error exporting rate hold query results", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(buildErrorResponse(e, "Failed to export rate hold query results"));
@@ -157,11 +270,15 @@ public class OrderImportController {
         try {
             logger.info("Fetching CLS queue status...");
             long startTime = System.currentTimeMillis();
-            Map<String, List<QueueStatusResult>> queues = queueStatusRepository.getAllQueueStatuses();
+            Map<String, String> failures = new LinkedHashMap<>();
+            Map<String, List<QueueStatusResult>> queues = queueStatusRepository.getAllQueueStatuses(failures);
             long duration = System.currentTimeMillis() - startTime;
 
             Map<String, Object> response = new LinkedHashMap<>();
             response.put("queryTimeMs", duration);
+            if (!failures.isEmpty()) {
+                response.put("queueErrors", failures);
+            }
 
             // Build summary counts
             Map<String, Integer> counts = new LinkedHashMap<>();
@@ -182,6 +299,34 @@ public class OrderImportController {
         }
     }
 
+    /**
+     * Server-Sent Events stream of orders entering/leaving the stuck sets.
+     * Browsers resend Last-Event-ID on reconnect, which replays anything buffered since then.
+     */
+    @GetMapping(value = "/stuck-changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStuckChanges(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        logger.info("Subscribing to stuck order change feed (lastEventId={})", lastEventId);
+        return stuckOrderChangeFeedService.subscribe(lastEventId);
+    }
+
+    /**
+     * Poll-friendly view of the change feed: buffered events with id greater than since.
+     */
+    @GetMapping("/stuck-changes")
+    public ResponseEntity<?> getStuckChanges(@RequestParam(defaultValue = "0") long since) {
+        try {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("latestEventId", stuckOrderChangeFeedService.getLatestEventId());
+            response.put("lastPollAt", stuckOrderChangeFeedService.getLastPollAt());
+            response.put("subscribers", stuckOrderChangeFeedService.getSubscriberCount());
+            response.put("events", stuckOrderChangeFeedService.getRecentEvents(since));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error fetching stuck order changes", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(buildErrorResponse(e, "Failed to fetch stuck order changes"));
+        }
+    }
+
     @GetMapping("/database/test")
     public ResponseEntity<Map<String, Object>> testIoConnection() {
         Map<String, Object> response = new java.util.HashMap<>();
@@ -211,88 +356,88 @@ public class OrderImportController {
     }
 
     /**
-     * Build error summary grouped by error text and warehouse.
-     * Mirrors Python summarize_results() in CLS_Debugger.py.
+     * Drop the XML bodies from list rows; clients fetch them on demand by logId.
      */
-    private Map<String, Object> buildErrorSummary(List<EnrichedOrderResult> results) {
-        Map<String, Object> summary = new LinkedHashMap<>();
-        summary.put("totalOrders", results.size());
-
-        // Split comma-separated error texts and count by (errorText, whId)
-        List<Map<String, Object>> errorBreakdown = new ArrayList<>();
-        Map<String, Map<String, Integer>> errorsByTextAndWarehouse = new LinkedHashMap<>();
-
-        for (EnrichedOrderResult result : results) {
-            String errorText = result.getErrorText();
-            if (errorText == null || errorText.isBlank()) continue;
-
-            String[] splitErrors = errorText.split(",");
-            for (String singleError : splitErrors) {
-                String trimmed = singleError.trim();
-                if (trimmed.isEmpty()) continue;
-
-                errorsByTextAndWarehouse
-                        .computeIfAbsent(trimmed, k -> new LinkedHashMap<>())
-                        .merge(result.getWhId() != null ? result.getWhId() : "UNKNOWN", 1, Integer::sum);
-            }
-        }
-
-        for (Map.Entry<String, Map<String, Integer>> entry : errorsByTextAndWarehouse.entrySet()) {
-            Map<String, Object> errorEntry = new LinkedHashMap<>();
-            errorEntry.put("errorText", entry.getKey());
-            int totalCount = entry.getValue().values().stream().mapToInt(Integer::intValue).sum();
-            errorEntry.put("totalCount", totalCount);
-            errorEntry.put("warehouseBreakdown", entry.getValue());
-            errorBreakdown.add(errorEntry);
+    private static List<EnrichedOrderResult> withoutXml(List<EnrichedOrderResult> results) {
+        for (EnrichedOrderResult r : results) {
+            r.setXmlMessage(null);
+            r.setXmlResponse(null);
         }
+        return results;
+    }
 
-        // Sort by total count descending
-        errorBreakdown.sort((a, b) -> Integer.compare((int) b.get("totalCount"), (int) a.get("totalCount")));
-        summary.put("errors", errorBreakdown);
-
-        // Unique warehouses
-        Set<String> warehouses = results.stream()
-                .map(EnrichedOrderResult::getWhId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toCollection(TreeSet::new));
-        summary.put("warehouses", warehouses);
+    private ResponseEntity<StreamingResponseBody> ndjsonPages(Function<String, EnrichedOrderPage> pageFetcher) {
+        StreamingResponseBody body = out -> {
+            String cursor = null;
+            EnrichedOrderPage page;
+            int total = 0;
+            do {
+                page = pageFetcher.apply(cursor);
+                for (EnrichedOrderResult r : withoutXml(page.getOrders())) {
+                    out.write(objectMapper.writeValueAsBytes(r));
+                    out.write('\n');
+                }
+                out.flush();
+                total += page.getOrders().size();
+                cursor = page.getNextCursor();
+            } while (page.isHasMore());
+            logger.info("Streamed {} enriched results", total);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 
-        // Count with errors
-        long withErrors = results.stream()
-                .filter(r -> r.getErrorText() != null && !r.getErrorText().isBlank())
-                .count();
-        summary.put("ordersWithErrors", withErrors);
+    /**
+     * Stream enriched results as a CSV attachment, optionally gzipped.
+     * Rows are written straight to the response so no copy of the whole file is held in memory.
+     */
+    private ResponseEntity<StreamingResponseBody> csvExportResponse(String filenamePrefix, List<EnrichedOrderResult> results, boolean gzip) {
+        String filename = filenamePrefix + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HHmmss"))
+                + (gzip ? ".csv.gz" : ".csv");
+
+        StreamingResponseBody body = out -> {
+            GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, 8192) : null;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(gzipOut != null ? gzipOut : out, StandardCharsets.UTF_8));
+            writeCsv(results.iterator(), writer);
+            writer.flush();
+            if (gzipOut != null) {
+                gzipOut.finish();
+            }
+        };
 
-        return summary;
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : "text/csv"))
+                .body(body);
     }
 
     /**
-     * Build CSV string from enriched results.
+     * Write enriched results as CSV, one row at a time.
      * Mirrors Python export_to_csv() in CLS_Debugger.py.
      */
-    private String buildCsv(List<EnrichedOrderResult> results) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Warehouse,Order Number,Item Number,Error Text,Import Status,");
-        sb.append("Ship Date,Arrival Date,TNT,Travel Time,Service Level,");
-        sb.append("City,State,Postal Code,Route\n");
-
-        for (EnrichedOrderResult r : results) {
-            sb.append(escapeCsv(r.getWhId())).append(",");
-            sb.append(escapeCsv(r.getOrderNumber())).append(",");
-            sb.append(escapeCsv(r.getItemNumber())).append(",");
-            sb.append(escapeCsv(r.getErrorText())).append(",");
-            sb.append(escapeCsv(r.getImportStatus())).append(",");
-            sb.append(escapeCsv(r.getShipDate())).append(",");
-            sb.append(escapeCsv(r.getArriveDate())).append(",");
-            sb.append(escapeCsv(r.getTravelDays())).append(",");
-            sb.append(r.getDaysBetween() != null ? r.getDaysBetween() : "").append(",");
-            sb.append(escapeCsv(r.getServiceLevel())).append(",");
-            sb.append(escapeCsv(r.getCity())).append(",");
-            sb.append(escapeCsv(r.getState())).append(",");
-            sb.append(escapeCsv(r.getPostalCode())).append(",");
-            sb.append(escapeCsv(r.getRoute())).append("\n");
+    private void writeCsv(Iterator<EnrichedOrderResult> rows, Writer out) throws IOException {
+        out.write("Warehouse,Order Number,Item Number,Error Text,Import Status,");
+        out.write("Ship Date,Arrival Date,TNT,Travel Time,Service Level,");
+        out.write("City,State,Postal Code,Route\n");
+
+        while (rows.hasNext()) {
+            EnrichedOrderResult r = rows.next();
+            out.write(escapeCsv(r.getWhId())); out.write(',');
+            out.write(escapeCsv(r.getOrderNumber())); out.write(',');
+            out.write(escapeCsv(r.getItemNumber())); out.write(',');
+            out.write(escapeCsv(r.getErrorText())); out.write(',');
+            out.write(escapeCsv(r.getImportStatus())); out.write(',');
+            out.write(escapeCsv(r.getShipDate())); out.write(',');
+            out.write(escapeCsv(r.getArriveDate())); out.write(',');
+            out.write(escapeCsv(r.getTravelDays())); out.write(',');
+            out.write(r.getDaysBetween() != null ? r.getDaysBetween().toString() : ""); out.write(',');
+            out.write(escapeCsv(r.getServiceLevel())); out.write(',');
+            out.write(escapeCsv(r.getCity())); out.write(',');
+            out.write(escapeCsv(r.getState())); out.write(',');
+            out.write(escapeCsv(r.getPostalCode())); out.write(',');
+            out.write(escapeCsv(r.getRoute())); out.write('\n');
         }
-        return sb.toString();
     }
 
     private String escapeCsv(String value) {
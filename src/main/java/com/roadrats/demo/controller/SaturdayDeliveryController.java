@@ -1,6 +1,7 @@
 package com.roadrats.demo.controller;
 
 import com.roadrats.demo.service.SaturdayDeliveryService;
+import com.roadrats.demo.service.SaturdayEligibilityCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +21,9 @@ public class SaturdayDeliveryController {
     @Autowired
     private SaturdayDeliveryService saturdayDeliveryService;
 
+    @Autowired
+    private SaturdayEligibilityCache saturdayEligibilityCache;
+
     @GetMapping("/saturday-delivery")
     public ResponseEntity<?> checkSaturdayDeliveries() {
         try {
@@ -38,4 +42,9 @@ public class SaturdayDeliveryController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
         }
     }
+
+    @GetMapping("/saturday-delivery/cache")
+    public ResponseEntity<Map<String, Object>> getEligibilityCacheStats() {
+        return ResponseEntity.ok(saturdayEligibilityCache.getStats());
+    }
 }
@@ -1,6 +1,8 @@
 package com.roadrats.demo.controller.dberrors;
 
 import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import com.roadrats.demo.model.dberrors.DatabaseErrorFilter;
+import com.roadrats.demo.model.dberrors.DatabaseErrorPage;
 import com.roadrats.demo.service.dberrors.DatabaseErrorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,10 +10,17 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/database-errors")
@@ -19,6 +28,9 @@ public class DatabaseErrorController {
 
     private static final Logger logger = LoggerFactory.getLogger(DatabaseErrorController.class);
 
+    // Upper bound on rows per archive page; archive reads decompress whole days into memory
+    private static final int MAX_ARCHIVE_LIMIT = 50000;
+
     private final DatabaseErrorService service;
 
     public DatabaseErrorController(DatabaseErrorService service) {
@@ -26,25 +38,51 @@ public class DatabaseErrorController {
     }
 
     /**
-     * GET /api/database-errors?days=1
-     * Query all configured servers for database errors.
+     * GET /api/database-errors?days=1&limit=500&cursor=...&resource=&machine=&user=&text=
+     * Query all configured servers for database errors, merged newest first. limit=0 returns
+     * everything; otherwise pass nextCursor back to get the following page. Servers that miss
+     * the query deadline are listed in serverStatuses and the response is marked partial.
+     * resource/machine/user (exact) and text (substring of details, call stack or arguments)
+     * are applied on each server before its row cap.
+     *
+     * With mode=histogram&bucketMinutes=60 the response is error counts per time bucket,
+     * grouped on each server, instead of rows.
      */
     @GetMapping
-    public ResponseEntity<?> getErrors(@RequestParam(defaultValue = "1") int days) {
-        logger.info("GET /api/database-errors?days={}", days);
+    public ResponseEntity<?> getErrors(@RequestParam(defaultValue = "1") int days,
+                                       @RequestParam(defaultValue = "0") int limit,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) String resource,
+                                       @RequestParam(required = false) String machine,
+                                       @RequestParam(required = false) String user,
+                                       @RequestParam(required = false) String text,
+                                       @RequestParam(defaultValue = "rows") String mode,
+                                       @RequestParam(defaultValue = "60") int bucketMinutes) {
+        logger.info("GET /api/database-errors?days={}&limit={}&cursor={}&resource={}&machine={}&user={}&text={}&mode={}",
+                days, limit, cursor, resource, machine, user, text, mode);
+        DatabaseErrorFilter filter = new DatabaseErrorFilter(resource, machine, user, text);
         try {
-            List<DatabaseErrorEntry> results = service.queryAllServers(days);
+            if ("histogram".equalsIgnoreCase(mode)) {
+                return ResponseEntity.ok(service.histogramAllServers(days, bucketMinutes, filter));
+            }
+            DatabaseErrorPage page = service.queryAllServers(days, Math.max(0, limit), cursor, filter);
+            List<DatabaseErrorEntry> results = page.getErrors();
 
             Map<String, Object> response = new LinkedHashMap<>();
             response.put("totalErrors", results.size());
             response.put("days", Math.max(1, Math.min(7, days)));
             response.put("servers", service.getConfiguredServers());
             response.put("queriedAt", LocalDateTime.now().toString());
+            response.put("partial", page.isPartial());
+            response.put("serverStatuses", page.getServerStatuses());
+            response.put("nextCursor", page.getNextCursor());
             response.put("errors", results);
 
             logger.info("Returning {} database errors", results.size());
             return ResponseEntity.ok(response);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Error fetching database errors", e);
             Map<String, Object> error = new LinkedHashMap<>();
@@ -85,22 +123,39 @@ public class DatabaseErrorController {
     }
 
     /**
-     * GET /api/database-errors/export?days=1
-     * Export all errors as CSV download.
+     * GET /api/database-errors/export?days=1&gzip=false&resource=&machine=&user=&text=
+     * Export all (matching) errors as a streamed CSV download (optionally gzipped).
      */
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportCsv(@RequestParam(defaultValue = "1") int days) {
-        logger.info("GET /api/database-errors/export?days={}", days);
+    public ResponseEntity<StreamingResponseBody> exportCsv(
+            @RequestParam(defaultValue = "1") int days,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) String resource,
+            @RequestParam(required = false) String machine,
+            @RequestParam(required = false) String user,
+            @RequestParam(required = false) String text) {
+        logger.info("GET /api/database-errors/export?days={}&gzip={}", days, gzip);
         try {
-            List<DatabaseErrorEntry> results = service.queryAllServers(days);
-            String csv = service.generateCsv(results);
-            String filename = String.format("database-errors_%s.csv",
-                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss")));
+            List<DatabaseErrorEntry> results = service.queryAllServers(days, 0, null,
+                    new DatabaseErrorFilter(resource, machine, user, text)).getErrors();
+            String filename = String.format("database-errors_%s.csv%s",
+                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss")),
+                    gzip ? ".gz" : "");
+
+            StreamingResponseBody body = out -> {
+                GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, 8192) : null;
+                Writer writer = new BufferedWriter(new OutputStreamWriter(gzipOut != null ? gzipOut : out, StandardCharsets.UTF_8));
+                service.writeCsv(results.iterator(), writer);
+                writer.flush();
+                if (gzipOut != null) {
+                    gzipOut.finish();
+                }
+            };
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.parseMediaType("text/csv"))
-                    .body(csv.getBytes());
+                    .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : "text/csv"))
+                    .body(body);
 
         } catch (Exception e) {
             logger.error("Error exporting database errors", e);
@@ -128,5 +183,116 @@ public class DatabaseErrorController {
             return ResponseEntity.internalServerError().body(error);
         }
     }
-}
 
+    /**
+     * GET /api/database-errors/health
+     * Circuit breaker state per server (CLOSED / OPEN / HALF_OPEN) and last failure.
+     */
+    @GetMapping("/health")
+    public ResponseEntity<Map<String, Object>> getHealth() {
+        return ResponseEntity.ok(service.getHealth());
+    }
+
+    /**
+     * GET /api/database-errors/pools
+     * Connection pool metrics per server.
+     */
+    @GetMapping("/pools")
+    public ResponseEntity<Map<String, Object>> getPools() {
+        return ResponseEntity.ok(service.getPoolStats());
+    }
+
+    /**
+     * GET /api/database-errors/collector
+     * In-memory buffer size, high-water mark and last poll per server.
+     */
+    @GetMapping("/collector")
+    public ResponseEntity<Map<String, Object>> getCollectorStatus() {
+        return ResponseEntity.ok(service.getCollectorStatus());
+    }
+
+    /**
+     * GET /api/database-errors/top?days=1&limit=25&server=&machine=
+     * Most frequent error fingerprints with counts per server/machine and a sparkline per
+     * fingerprint, instead of the raw rows.
+     */
+    @GetMapping("/top")
+    public ResponseEntity<?> getTopFingerprints(
+            @RequestParam(defaultValue = "1") int days,
+            @RequestParam(defaultValue = "25") int limit,
+            @RequestParam(required = false) String server,
+            @RequestParam(required = false) String machine) {
+        logger.info("GET /api/database-errors/top?days={}&limit={}&server={}&machine={}", days, limit, server, machine);
+        return ResponseEntity.ok(service.getTopFingerprints(days, limit,
+                server != null && !server.isBlank() ? server.trim() : null,
+                machine != null && !machine.isBlank() ? machine.trim() : null));
+    }
+
+    /**
+     * GET /api/database-errors/search?q=usp_ship_order "deadlock victim"&server=&machine=&days=1&from=&to=&limit=200
+     * Term and "phrase" search over details, call stack and arguments of the collected window.
+     * from/to are UTC (yyyy-MM-ddTHH:mm:ss) and override days.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> search(
+            @RequestParam String q,
+            @RequestParam(required = false) String server,
+            @RequestParam(required = false) String machine,
+            @RequestParam(defaultValue = "7") int days,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = "200") int limit) {
+        logger.info("GET /api/database-errors/search?q={}&server={}&machine={}&days={}&from={}&to={}",
+                q, server, machine, days, from, to);
+        try {
+            return ResponseEntity.ok(service.search(q,
+                    server != null && !server.isBlank() ? server.trim() : null,
+                    machine != null && !machine.isBlank() ? machine.trim() : null,
+                    days,
+                    from != null && !from.isBlank() ? LocalDateTime.parse(from.trim()) : null,
+                    to != null && !to.isBlank() ? LocalDateTime.parse(to.trim()) : null,
+                    limit));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * GET /api/database-errors/archive?days=30&server=&fingerprint=&limit=5000&to=
+     * Lookback past the 7-day window, served from the local archive (no SQL server load).
+     * from/to are UTC and override days; pass nextTo back as to for the next page.
+     * limit is capped at MAX_ARCHIVE_LIMIT (0 or negative means the cap).
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<?> getArchivedErrors(
+            @RequestParam(defaultValue = "30") int days,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String server,
+            @RequestParam(required = false) String fingerprint,
+            @RequestParam(defaultValue = "5000") int limit) {
+        logger.info("GET /api/database-errors/archive?days={}&from={}&to={}&server={}&fingerprint={}&limit={}",
+                days, from, to, server, fingerprint, limit);
+        try {
+            return ResponseEntity.ok(service.queryArchive(days,
+                    from != null && !from.isBlank() ? LocalDateTime.parse(from.trim()) : null,
+                    to != null && !to.isBlank() ? LocalDateTime.parse(to.trim()) : null,
+                    server != null && !server.isBlank() ? server.trim() : null,
+                    fingerprint != null && !fingerprint.isBlank() ? fingerprint.trim() : null,
+                    limit <= 0 ? MAX_ARCHIVE_LIMIT : Math.min(limit, MAX_ARCHIVE_LIMIT)));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * GET /api/database-errors/archive/stats
+     * Archive location, retention, segment count and size.
+     */
+    @GetMapping("/archive/stats")
+    public ResponseEntity<Map<String, Object>> getArchiveStats() {
+        return ResponseEntity.ok(service.getArchiveStats());
+    }
+}
@@ -1,17 +1,25 @@
 package com.roadrats.demo.controller.testtools;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roadrats.demo.model.testtools.ColumnarTable;
+import com.roadrats.demo.service.testtools.BulkOrderLookupService;
+import com.roadrats.demo.service.testtools.DeferredLookupRegistry;
 import com.roadrats.demo.service.testtools.ItemImportService;
 import com.roadrats.demo.service.testtools.OrderLookupService;
 import com.roadrats.demo.service.testtools.OrderActionService;
 import com.roadrats.demo.service.testtools.ShipOrderService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
 
 @RestController
 @RequestMapping("/api/wms360")
@@ -23,13 +31,21 @@ public class TestToolsController {
     private final ShipOrderService shipOrderService;
     private final OrderActionService orderActionService;
     private final ItemImportService itemImportService;
+    private final BulkOrderLookupService bulkOrderLookupService;
+    private final DeferredLookupRegistry deferredLookups;
+    private final ObjectMapper objectMapper;
 
     public TestToolsController(OrderLookupService orderLookupService, ShipOrderService shipOrderService,
-                               OrderActionService orderActionService, ItemImportService itemImportService) {
+                               OrderActionService orderActionService, ItemImportService itemImportService,
+                               BulkOrderLookupService bulkOrderLookupService, DeferredLookupRegistry deferredLookups,
+                               ObjectMapper objectMapper) {
         this.orderLookupService = orderLookupService;
         this.shipOrderService = shipOrderService;
         this.orderActionService = orderActionService;
         this.itemImportService = itemImportService;
+        this.bulkOrderLookupService = bulkOrderLookupService;
+        this.deferredLookups = deferredLookups;
+        this.objectMapper = objectMapper;
     }
 
     private String normalizeEnv(String env) {
@@ -44,7 +60,8 @@ public class TestToolsController {
             @RequestParam String value,
             @RequestParam(required = false, defaultValue = "") String warehouseId,
             @RequestParam(required = false, defaultValue = "both") String stack,
-            @RequestParam(required = false, defaultValue = "test") String env) {
+            @RequestParam(required = false, defaultValue = "test") String env,
+            @RequestParam(required = false) String format) {
         String nEnv = normalizeEnv(env);
         logger.info("GET /api/wms360/lookup?type={}&value={}&warehouseId={}&stack={}&env={}", type, value, warehouseId, stack, nEnv);
 
@@ -63,7 +80,7 @@ public class TestToolsController {
 
         try {
             Map<String, Object> result = orderLookupService.lookupOrder(type.trim(), value.trim(), warehouseId.trim(), normalizedStack, nEnv);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(ColumnarTable.withFormat(result, format));
         } catch (Exception e2) {
             logger.error("Error during order lookup", e2);
             Map<String, Object> error = new LinkedHashMap<>();
@@ -108,7 +125,8 @@ public class TestToolsController {
      * Same data as classic lookup, plus "groups" bucketed for UI.
      */
     @PostMapping("/lookup/v2/details")
-    public ResponseEntity<?> lookupGrouped(@RequestBody Map<String, String> body) {
+    public ResponseEntity<?> lookupGrouped(@RequestBody Map<String, String> body,
+                                           @RequestParam(required = false) String format) {
         if (body == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Request body required"));
         }
@@ -133,15 +151,148 @@ public class TestToolsController {
                 stack,
                 nEnv);
             if (result.containsKey("error")) {
-                return ResponseEntity.badRequest().body(result);
+                return ResponseEntity.badRequest().body(ColumnarTable.withFormat(result, format));
             }
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(ColumnarTable.withFormat(result, format));
         } catch (Exception e) {
             logger.error("Error during grouped lookup", e);
             return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * POST /api/wms360/lookup/bulk
+     * Body: type (oms|order|container), ids [..], warehouseId?, stack, env, groups? [..]
+     * Streams NDJSON: a "resolved" summary, one "order" line per order as it finishes, then "done".
+     */
+    @PostMapping(value = "/lookup/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> bulkLookup(@RequestBody Map<String, Object> body,
+                                        @RequestParam(required = false) String format) {
+        if (body == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Request body required"));
+        }
+        List<String> ids = new ArrayList<>();
+        if (body.get("ids") instanceof Collection<?> raw) {
+            raw.forEach(v -> ids.add(v != null ? String.valueOf(v) : null));
+        }
+        List<String> groups = new ArrayList<>();
+        if (body.get("groups") instanceof Collection<?> raw) {
+            raw.forEach(g -> groups.add(String.valueOf(g)));
+        }
+        return bulkLookupResponse(
+            body.get("type") != null ? String.valueOf(body.get("type")) : null,
+            BulkOrderLookupService.normalizeIds(ids),
+            body.get("warehouseId") != null ? String.valueOf(body.get("warehouseId")) : null,
+            body.get("stack") != null ? String.valueOf(body.get("stack")) : null,
+            body.get("env") != null ? String.valueOf(body.get("env")) : null,
+            groups,
+            format);
+    }
+
+    /**
+     * GET /api/wms360/lookup/deferred/{token}?since=n
+     * Slow tables of a lookup that returned deferred.token: the ones finished after the first n,
+     * the keys still pending, done, and next (the since to pass on the following poll).
+     */
+    @GetMapping("/lookup/deferred/{token}")
+    public ResponseEntity<?> pollDeferredLookup(@PathVariable String token,
+                                                @RequestParam(defaultValue = "0") int since,
+                                                @RequestParam(required = false) String format) {
+        Map<String, Object> result = deferredLookups.poll(token, since);
+        if (result == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Unknown or expired token: " + token));
+        }
+        return ResponseEntity.ok(ColumnarTable.withFormat(result, format));
+    }
+
+    /**
+     * GET /api/wms360/lookup/deferred/{token}/stream
+     * SSE: a "table" event per slow table (already finished ones first), then "done".
+     */
+    @GetMapping(value = "/lookup/deferred/{token}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamDeferredLookup(@PathVariable String token,
+                                                  @RequestParam(required = false) String format) {
+        SseEmitter emitter = deferredLookups.subscribe(token, format);
+        if (emitter == null) {
+            return ResponseEntity.status(404).contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error", "Unknown or expired token: " + token));
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * POST /api/wms360/lookup/bulk/upload (multipart): file = CSV with ids in the first column,
+     * plus type, warehouseId?, stack, env, groups? (comma-separated), hasHeader. Same NDJSON as /lookup/bulk.
+     */
+    @PostMapping(value = "/lookup/bulk/upload", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> bulkLookupUpload(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(defaultValue = "order") String type,
+            @RequestParam(required = false) String warehouseId,
+            @RequestParam(required = false, defaultValue = "both") String stack,
+            @RequestParam(required = false, defaultValue = "test") String env,
+            @RequestParam(required = false) List<String> groups,
+            @RequestParam(defaultValue = "false") boolean hasHeader,
+            @RequestParam(required = false) String format) {
+        if (file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "CSV file is required"));
+        }
+        List<String> ids;
+        try {
+            ids = BulkOrderLookupService.readIdsFromCsv(file.getInputStream(), hasHeader);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Could not read CSV: " + e.getMessage()));
+        }
+        return bulkLookupResponse(type, ids, warehouseId, stack, env, groups, format);
+    }
+
+    private ResponseEntity<?> bulkLookupResponse(String type, List<String> ids, String warehouseId, String stack,
+                                                 String env, List<String> groups, String format) {
+        String nEnv = normalizeEnv(env);
+        String nType = type != null ? type.trim().toLowerCase() : "order";
+        String nStack = stack != null ? stack.trim().toLowerCase() : "both";
+        if (!List.of("aad", "io", "both").contains(nStack)) {
+            nStack = "both";
+        }
+        String wh = warehouseId != null && !warehouseId.isBlank() ? warehouseId.trim() : null;
+        try {
+            // Rejected here, before the 200 and the stream start
+            bulkOrderLookupService.validate(nType, ids, wh);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        Set<String> groupSet = groups != null ? new LinkedHashSet<>(groups) : Set.of();
+        logger.info("Bulk lookup type={}, ids={}, wh={}, stack={}, env={}, groups={}", nType, ids.size(), wh, nStack, nEnv, groupSet);
+
+        String finalStack = nStack;
+        StreamingResponseBody body = out -> {
+            try {
+                bulkOrderLookupService.lookupAll(nType, ids, wh, finalStack, nEnv, groupSet, line -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(ColumnarTable.withFormat(line, format)));
+                        out.write('\n');
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                logger.info("Bulk lookup stream closed by client: {}", e.getMessage());
+            } catch (Exception e) {
+                logger.error("Error during bulk lookup", e);
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("type", "error");
+                error.put("error", e.getMessage());
+                out.write(objectMapper.writeValueAsBytes(error));
+                out.write('\n');
+                out.flush();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @PostMapping("/ship-order")
     public ResponseEntity<?> shipOrder(@RequestBody Map<String, String> request) {
         String warehouseId = request.get("warehouseId");
@@ -207,12 +358,18 @@ public class TestToolsController {
         }
     }
 
+    @GetMapping("/pools")
+    public ResponseEntity<Map<String, Object>> getPools() {
+        return ResponseEntity.ok(orderLookupService.getPoolStats());
+    }
+
     @GetMapping("/resolve-order")
     public ResponseEntity<?> resolveOrder(
             @RequestParam String type,
             @RequestParam String value,
             @RequestParam(required = false, defaultValue = "") String warehouseId,
-            @RequestParam(required = false, defaultValue = "test") String env) {
+            @RequestParam(required = false, defaultValue = "test") String env,
+            @RequestParam(required = false) String format) {
         String nEnv = normalizeEnv(env);
         logger.info("GET /api/wms360/resolve-order?type={}&value={}&warehouseId={}&env={}", type, value, warehouseId, nEnv);
 
@@ -222,7 +379,7 @@ public class TestToolsController {
 
         try {
             Map<String, Object> result = orderActionService.resolveOrder(type.trim(), value.trim(), warehouseId.trim(), nEnv);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(ColumnarTable.withFormat(result, format));
         } catch (Exception e) {
             logger.error("Error resolving order", e);
             return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
@@ -230,7 +387,8 @@ public class TestToolsController {
     }
 
     @PostMapping("/setup-order")
-    public ResponseEntity<?> setupOrder(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> setupOrder(@RequestBody Map<String, String> request,
+                                        @RequestParam(required = false) String format) {
         String warehouseId = request.get("warehouseId");
         String orderNumber = request.get("orderNumber");
         String setupType = request.getOrDefault("setupType", "normal");
@@ -256,7 +414,7 @@ public class TestToolsController {
         try {
             Map<String, Object> result = orderActionService.setupOrderData(
                 warehouseId.trim(), orderNumber.trim(), setupType, containerId, itemOverride, quantityOverride, nEnv);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(ColumnarTable.withFormat(result, format));
         } catch (Exception e) {
             logger.error("Error setting up order", e);
             return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
@@ -295,7 +453,8 @@ public class TestToolsController {
     public ResponseEntity<?> lookupItem(
             @RequestParam String itemNumber,
             @RequestParam(required = false, defaultValue = "") String warehouseId,
-            @RequestParam(required = false, defaultValue = "test") String env) {
+            @RequestParam(required = false, defaultValue = "test") String env,
+            @RequestParam(required = false) String format) {
         String nEnv = normalizeEnv(env);
         logger.info("GET /api/wms360/item-lookup?itemNumber={}&warehouseId={}&env={}", itemNumber, warehouseId, nEnv);
 
@@ -305,7 +464,7 @@ public class TestToolsController {
 
         try {
             Map<String, Object> result = itemImportService.lookupItem(itemNumber.trim(), warehouseId.trim(), nEnv);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(ColumnarTable.withFormat(result, format));
         } catch (Exception e) {
             logger.error("Error looking up item", e);
             return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
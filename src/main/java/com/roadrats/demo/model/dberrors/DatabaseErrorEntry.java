@@ -10,6 +10,7 @@ public class DatabaseErrorEntry {
 
     private String serverName;
     private LocalDateTime loggedOnLocal;
+    private LocalDateTime loggedOnUtc;
     private String machineId;
     private String userId;
     private String resourceName;
@@ -50,6 +51,14 @@ public class DatabaseErrorEntry {
         this.loggedOnLocal = loggedOnLocal;
     }
 
+    public LocalDateTime getLoggedOnUtc() {
+        return loggedOnUtc;
+    }
+
+    public void setLoggedOnUtc(LocalDateTime loggedOnUtc) {
+        this.loggedOnUtc = loggedOnUtc;
+    }
+
     public String getMachineId() {
         return machineId;
     }
@@ -0,0 +1,71 @@
+package com.roadrats.demo.model.dberrors;
+
+import java.util.Locale;
+
+/**
+ * Optional row filters for database-error queries. resource, machine and user are exact
+ * (case-insensitive) matches; text is a case-insensitive substring of details, call_stack or
+ * arguments. Live queries push these into SQL; the in-memory window applies {@link #matches}.
+ */
+public class DatabaseErrorFilter {
+
+    public static final DatabaseErrorFilter NONE = new DatabaseErrorFilter(null, null, null, null);
+
+    private final String resource;
+    private final String machine;
+    private final String user;
+    private final String text;
+
+    public DatabaseErrorFilter(String resource, String machine, String user, String text) {
+        this.resource = blankToNull(resource);
+        this.machine = blankToNull(machine);
+        this.user = blankToNull(user);
+        this.text = blankToNull(text);
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public String getMachine() {
+        return machine;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isEmpty() {
+        return resource == null && machine == null && user == null && text == null;
+    }
+
+    public boolean matches(DatabaseErrorEntry entry) {
+        if (resource != null && !resource.equalsIgnoreCase(entry.getResourceName())) return false;
+        if (machine != null && !machine.equalsIgnoreCase(entry.getMachineId())) return false;
+        if (user != null && !user.equalsIgnoreCase(entry.getUserId())) return false;
+        if (text != null) {
+            String needle = text.toLowerCase(Locale.ROOT);
+            return containsIgnoreCase(entry.getDetails(), needle)
+                    || containsIgnoreCase(entry.getCallStack(), needle)
+                    || containsIgnoreCase(entry.getArguments(), needle);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "resource=" + resource + ", machine=" + machine + ", user=" + user + ", text=" + text;
+    }
+
+    private static boolean containsIgnoreCase(String haystack, String lowerNeedle) {
+        return haystack != null && haystack.toLowerCase(Locale.ROOT).contains(lowerNeedle);
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s.trim();
+    }
+}
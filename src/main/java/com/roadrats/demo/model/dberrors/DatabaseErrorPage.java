@@ -0,0 +1,60 @@
+package com.roadrats.demo.model.dberrors;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of the merged, newest-first error stream across all servers.
+ * serverStatuses has one entry per configured server (status OK / TIMEOUT / ERROR, rows, source);
+ * partial is true when any server didn't answer before the deadline. Pass nextCursor back to
+ * continue the merge where this page stopped (null when there is nothing more).
+ */
+public class DatabaseErrorPage {
+
+    private List<DatabaseErrorEntry> errors;
+    private String nextCursor;
+    private Map<String, Map<String, Object>> serverStatuses;
+    private boolean partial;
+
+    public DatabaseErrorPage() {}
+
+    public DatabaseErrorPage(List<DatabaseErrorEntry> errors, String nextCursor,
+                             Map<String, Map<String, Object>> serverStatuses, boolean partial) {
+        this.errors = errors;
+        this.nextCursor = nextCursor;
+        this.serverStatuses = serverStatuses;
+        this.partial = partial;
+    }
+
+    public List<DatabaseErrorEntry> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<DatabaseErrorEntry> errors) {
+        this.errors = errors;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Map<String, Map<String, Object>> getServerStatuses() {
+        return serverStatuses;
+    }
+
+    public void setServerStatuses(Map<String, Map<String, Object>> serverStatuses) {
+        this.serverStatuses = serverStatuses;
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+}
@@ -0,0 +1,36 @@
+package com.roadrats.demo.model.io;
+
+import java.util.List;
+
+/**
+ * One keyset page of enriched stuck orders. Pass nextCursor back to fetch the following page;
+ * it is null once the last page has been returned.
+ */
+public class EnrichedOrderPage {
+    private List<EnrichedOrderResult> orders;
+    private String nextCursor;
+    private int pageSize;
+    private boolean hasMore;
+
+    public EnrichedOrderPage() {
+    }
+
+    public EnrichedOrderPage(List<EnrichedOrderResult> orders, String nextCursor, int pageSize, boolean hasMore) {
+        this.orders = orders;
+        this.nextCursor = nextCursor;
+        this.pageSize = pageSize;
+        this.hasMore = hasMore;
+    }
+
+    public List<EnrichedOrderResult> getOrders() { return orders; }
+    public void setOrders(List<EnrichedOrderResult> orders) { this.orders = orders; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+    public int getPageSize() { return pageSize; }
+    public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+}
@@ -1,5 +1,7 @@
 package com.roadrats.demo.model.io;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.time.LocalDateTime;
 
 public class EnrichedOrderResult {
@@ -8,7 +10,12 @@ public class EnrichedOrderResult {
     private String itemNumber;
     private String errorText;
     private String importStatus;
+    // Id of the t_cls_xml_log row the XML came from; fetch the bodies via /api/io/xml-logs/{logId}/...
+    private String logId;
+    // Only populated when a caller asks for the full XML; list responses leave these out
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String xmlMessage;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String xmlResponse;
     private LocalDateTime insertedDatetime;
     private LocalDateTime updatedDatetime;
@@ -51,6 +58,9 @@ public class EnrichedOrderResult {
     public String getImportStatus() { return importStatus; }
     public void setImportStatus(String importStatus) { this.importStatus = importStatus; }
 
+    public String getLogId() { return logId; }
+    public void setLogId(String logId) { this.logId = logId; }
+
     public String getXmlMessage() { return xmlMessage; }
     public void setXmlMessage(String xmlMessage) { this.xmlMessage = xmlMessage; }
 
@@ -0,0 +1,56 @@
+package com.roadrats.demo.model.io;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single change between two successive stuck-order snapshots for one queue.
+ * changeType is ENTERED, LEFT or ERROR_CHANGED.
+ */
+public class StuckOrderChangeEvent {
+    private long id;
+    private String changeType;
+    private String queue;
+    private String whId;
+    private String orderNumber;
+    private String errorText;
+    private String previousErrorText;
+    private LocalDateTime detectedAt;
+
+    public StuckOrderChangeEvent() {
+    }
+
+    public StuckOrderChangeEvent(String changeType, String queue, String whId, String orderNumber,
+                                 String errorText, String previousErrorText, LocalDateTime detectedAt) {
+        this.changeType = changeType;
+        this.queue = queue;
+        this.whId = whId;
+        this.orderNumber = orderNumber;
+        this.errorText = errorText;
+        this.previousErrorText = previousErrorText;
+        this.detectedAt = detectedAt;
+    }
+
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    public String getChangeType() { return changeType; }
+    public void setChangeType(String changeType) { this.changeType = changeType; }
+
+    public String getQueue() { return queue; }
+    public void setQueue(String queue) { this.queue = queue; }
+
+    public String getWhId() { return whId; }
+    public void setWhId(String whId) { this.whId = whId; }
+
+    public String getOrderNumber() { return orderNumber; }
+    public void setOrderNumber(String orderNumber) { this.orderNumber = orderNumber; }
+
+    public String getErrorText() { return errorText; }
+    public void setErrorText(String errorText) { this.errorText = errorText; }
+
+    public String getPreviousErrorText() { return previousErrorText; }
+    public void setPreviousErrorText(String previousErrorText) { this.previousErrorText = previousErrorText; }
+
+    public LocalDateTime getDetectedAt() { return detectedAt; }
+    public void setDetectedAt(LocalDateTime detectedAt) { this.detectedAt = detectedAt; }
+}
@@ -1,20 +1,31 @@
 package com.roadrats.demo.model.io;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.time.LocalDateTime;
 
 /**
  * Represents a row from t_cls_xml_log for a specific order.
  */
 public class XmlLogResult {
+    private String logId;
     private String whId;
     private String orderNumber;
     private String requestType;
     private String requestSproc;
+    // Bodies are only populated when the caller asks for them; otherwise just their stored sizes (bytes)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String xmlMessage;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String xmlResponse;
+    private Long xmlMessageLength;
+    private Long xmlResponseLength;
     private String errorText;
     private LocalDateTime insertDatetime;
 
+    public String getLogId() { return logId; }
+    public void setLogId(String logId) { this.logId = logId; }
+
     public String getWhId() { return whId; }
     public void setWhId(String whId) { this.whId = whId; }
 
@@ -33,6 +44,12 @@ public class XmlLogResult {
     public String getXmlResponse() { return xmlResponse; }
     public void setXmlResponse(String xmlResponse) { this.xmlResponse = xmlResponse; }
 
+    public Long getXmlMessageLength() { return xmlMessageLength; }
+    public void setXmlMessageLength(Long xmlMessageLength) { this.xmlMessageLength = xmlMessageLength; }
+
+    public Long getXmlResponseLength() { return xmlResponseLength; }
+    public void setXmlResponseLength(Long xmlResponseLength) { this.xmlResponseLength = xmlResponseLength; }
+
     public String getErrorText() { return errorText; }
     public void setErrorText(String errorText) { this.errorText = errorText; }
 
@@ -0,0 +1,235 @@
+package com.roadrats.demo.model.testtools;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Query result held column by column: the column names once, a kind per column, and one typed
+ * array per column (long[] / double[] / boolean[] for numeric and bit columns, Object[] for the
+ * rest) with a null bitmap. Serializes straight to
+ * {"columns":[..],"types":[..],"rowCount":n,"values":[[column 0..],[column 1..],..]}, formatting
+ * timestamps and decimals as they are written rather than per row up front. Controllers send this
+ * form only for format=columnar; by default {@link #withFormat} turns tables back into rows.
+ */
+@JsonSerialize(using = ColumnarTable.Serializer.class)
+public final class ColumnarTable {
+
+    public enum Kind {
+        INTEGER, FLOAT, DECIMAL, BOOLEAN, TIMESTAMP, BINARY, STRING;
+
+        public String jsonName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public static final ColumnarTable EMPTY = new ColumnarTable(List.of(), new Kind[0], new Object[0], new BitSet[0], 0);
+
+    /** Value of the format request parameter that asks for tables in this form. */
+    public static final String FORMAT_COLUMNAR = "columnar";
+
+    private final List<String> columns;
+    private final Kind[] kinds;
+    private final Object[] data;
+    private final BitSet[] nulls;
+    private final int rowCount;
+
+    /**
+     * @param data per column: long[] (INTEGER), double[] (FLOAT), boolean[] (BOOLEAN) or Object[]
+     * @param nulls per column: set bit = null in that row
+     */
+    public ColumnarTable(List<String> columns, Kind[] kinds, Object[] data, BitSet[] nulls, int rowCount) {
+        this.columns = columns;
+        this.kinds = kinds;
+        this.data = data;
+        this.nulls = nulls;
+        this.rowCount = rowCount;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    public int columnIndex(String column) {
+        for (int c = 0; c < columns.size(); c++) {
+            if (columns.get(c).equalsIgnoreCase(column)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Value boxed as Long, Double, Boolean, BigDecimal, a JDBC date/time, String, or "[binary]".
+     */
+    public Object getValue(int row, int col) {
+        if (nulls[col].get(row)) {
+            return null;
+        }
+        switch (kinds[col]) {
+            case INTEGER: return ((long[]) data[col])[row];
+            case FLOAT: return ((double[]) data[col])[row];
+            case BOOLEAN: return ((boolean[]) data[col])[row];
+            case BINARY: return "[binary]";
+            default: return ((Object[]) data[col])[row];
+        }
+    }
+
+    /**
+     * Trimmed string value of the named column, or null when the column is missing or null.
+     */
+    public String getString(int row, String column) {
+        int col = columnIndex(column);
+        Object value = col >= 0 ? getValue(row, col) : null;
+        return value != null ? String.valueOf(value).trim() : null;
+    }
+
+    /**
+     * Rows as maps, for the few callers that want a handful of rows keyed by column.
+     */
+    public List<Map<String, Object>> toRowMaps() {
+        List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+        for (int r = 0; r < rowCount; r++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int c = 0; c < columns.size(); c++) {
+                row.put(columns.get(c), getValue(r, c));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Rows as maps with the values diagnostic tables have always shown: timestamps, dates and
+     * decimals as strings.
+     */
+    public List<Map<String, Object>> toDisplayRows() {
+        List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+        for (int r = 0; r < rowCount; r++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int c = 0; c < columns.size(); c++) {
+                Object value = getValue(r, c);
+                if (value instanceof Timestamp || value instanceof java.sql.Date) {
+                    value = value.toString();
+                } else if (value instanceof BigDecimal d) {
+                    value = d.toPlainString();
+                }
+                row.put(columns.get(c), value);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    public static boolean isColumnar(String format) {
+        return format != null && FORMAT_COLUMNAR.equalsIgnoreCase(format.trim());
+    }
+
+    /**
+     * The response as is for format=columnar; otherwise a copy in the row shape the UI reads: a
+     * diagnostic table map gets "columns" and "rows" in place of "table", and any other table
+     * becomes a list of row maps. Maps and collections are copied, so cached results are untouched.
+     */
+    public static Object withFormat(Object value, String format) {
+        return isColumnar(format) ? value : toRows(value);
+    }
+
+    private static Object toRows(Object value) {
+        if (value instanceof ColumnarTable t) {
+            return t.toRowMaps();
+        }
+        if (value instanceof Map<?, ?> map) {
+            boolean diagnostic = map.get("table") instanceof ColumnarTable;
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (diagnostic && "table".equals(e.getKey())) {
+                    ColumnarTable t = (ColumnarTable) e.getValue();
+                    copy.put("columns", t.columns);
+                    copy.put("rows", t.toDisplayRows());
+                } else {
+                    copy.put(e.getKey(), toRows(e.getValue()));
+                }
+            }
+            return copy;
+        }
+        if (value instanceof Collection<?> items) {
+            List<Object> copy = new ArrayList<>(items.size());
+            for (Object item : items) {
+                copy.add(toRows(item));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    public static class Serializer extends JsonSerializer<ColumnarTable> {
+        @Override
+        public void serialize(ColumnarTable t, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("columns");
+            for (String column : t.columns) {
+                gen.writeString(column);
+            }
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("types");
+            for (Kind kind : t.kinds) {
+                gen.writeString(kind.jsonName());
+            }
+            gen.writeEndArray();
+            gen.writeNumberField("rowCount", t.rowCount);
+            gen.writeArrayFieldStart("values");
+            for (int c = 0; c < t.kinds.length; c++) {
+                gen.writeStartArray();
+                writeColumn(t, c, gen);
+                gen.writeEndArray();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+
+        private static void writeColumn(ColumnarTable t, int c, JsonGenerator gen) throws IOException {
+            BitSet nulls = t.nulls[c];
+            for (int r = 0; r < t.rowCount; r++) {
+                if (nulls.get(r)) {
+                    gen.writeNull();
+                    continue;
+                }
+                switch (t.kinds[c]) {
+                    case INTEGER:
+                        gen.writeNumber(((long[]) t.data[c])[r]);
+                        break;
+                    case FLOAT:
+                        gen.writeNumber(((double[]) t.data[c])[r]);
+                        break;
+                    case BOOLEAN:
+                        gen.writeBoolean(((boolean[]) t.data[c])[r]);
+                        break;
+                    case BINARY:
+                        gen.writeString("[binary]");
+                        break;
+                    case DECIMAL:
+                        // Plain digits, never 1E+3
+                        gen.writeNumber(((BigDecimal) ((Object[]) t.data[c])[r]).toPlainString());
+                        break;
+                    default:
+                        gen.writeString(String.valueOf(((Object[]) t.data[c])[r]));
+                        break;
+                }
+            }
+        }
+    }
+}
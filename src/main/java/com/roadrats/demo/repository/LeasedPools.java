@@ -0,0 +1,162 @@
+package com.roadrats.demo.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Lazily-created Hikari pools by key, shared by the per-server / per-stack registries. Every
+ * borrowed connection holds a lease on its pool until it is closed, and only a pool with no
+ * leases out is retired by {@link #evictIdle}, so eviction never closes a pool under a caller
+ * that is borrowing from it or still holds a connection.
+ */
+public final class LeasedPools {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeasedPools.class);
+
+    private final String name;
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    private static final class Pool {
+        final HikariDataSource dataSource;
+        final LocalDateTime createdAt = LocalDateTime.now();
+        volatile long lastUsedMillis = System.currentTimeMillis();
+        // Borrowed connections not yet closed, and whether the evictor has claimed the pool; guarded by this
+        private int leases;
+        private boolean retired;
+
+        Pool(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * Take a lease for one borrow; false once the evictor has retired this pool.
+         */
+        synchronized boolean lease() {
+            if (retired) {
+                return false;
+            }
+            leases++;
+            lastUsedMillis = System.currentTimeMillis();
+            return true;
+        }
+
+        synchronized void release() {
+            leases--;
+            lastUsedMillis = System.currentTimeMillis();
+        }
+
+        /**
+         * Retire the pool if nothing is borrowed and it has been unused since cutoff.
+         */
+        synchronized boolean retireIfIdle(long cutoff) {
+            if (leases > 0 || lastUsedMillis >= cutoff) {
+                return false;
+            }
+            retired = true;
+            return true;
+        }
+    }
+
+    /**
+     * @param name used in log lines, e.g. "database-errors"
+     */
+    public LeasedPools(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Borrow a connection from the key's pool, creating the pool with factory on first use.
+     * Closing the returned connection releases the lease.
+     */
+    public Connection getConnection(String key, Function<String, HikariDataSource> factory) throws SQLException {
+        while (true) {
+            Pool pool = pools.computeIfAbsent(key, k -> new Pool(factory.apply(k)));
+            if (!pool.lease()) {
+                // Retired by the evictor after our lookup; drop it (if still mapped) and use a fresh pool
+                pools.remove(key, pool);
+                continue;
+            }
+            try {
+                return leased(pool.dataSource.getConnection(), pool);
+            } catch (SQLException | RuntimeException e) {
+                pool.release();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Close pools with nothing borrowed that have not been used since cutoff (epoch millis).
+     */
+    public void evictIdle(long cutoff) {
+        for (Map.Entry<String, Pool> entry : pools.entrySet()) {
+            Pool pool = entry.getValue();
+            if (pool.retireIfIdle(cutoff)) {
+                pools.remove(entry.getKey(), pool);
+                logger.info("Closing idle {} pool {}", name, entry.getKey());
+                pool.dataSource.close();
+            }
+        }
+    }
+
+    /**
+     * Metrics per open pool, keyed like the pools.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        for (Map.Entry<String, Pool> entry : pools.entrySet()) {
+            Pool pool = entry.getValue();
+            Map<String, Object> poolStats = new LinkedHashMap<>();
+            HikariPoolMXBean mx = pool.dataSource.getHikariPoolMXBean();
+            if (mx != null) {
+                poolStats.put("active", mx.getActiveConnections());
+                poolStats.put("idle", mx.getIdleConnections());
+                poolStats.put("total", mx.getTotalConnections());
+                poolStats.put("waiting", mx.getThreadsAwaitingConnection());
+            }
+            poolStats.put("maxSize", pool.dataSource.getMaximumPoolSize());
+            poolStats.put("createdAt", pool.createdAt);
+            poolStats.put("idleSeconds", (System.currentTimeMillis() - pool.lastUsedMillis) / 1000);
+            stats.put(entry.getKey(), poolStats);
+        }
+        return stats;
+    }
+
+    public void closeAll() {
+        pools.values().forEach(p -> p.dataSource.close());
+        pools.clear();
+    }
+
+    /**
+     * Wrap a borrowed connection so that closing it releases the pool lease (once).
+     */
+    private static Connection leased(Connection connection, Pool pool) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                            pool.release();
+                        }
+                    }
+                });
+    }
+}
@@ -4,12 +4,19 @@ import com.roadrats.demo.model.cls.SaturdayDeliveryResult;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
+import jakarta.persistence.QueryTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Queries ps_PRIMARY_ROUTING_GUIDE_{origin} tables on WMSSQL-CLS (DMSServer)
@@ -24,58 +31,184 @@ public class RoutingGuideRepository {
     @PersistenceContext(unitName = "cls")
     private EntityManager entityManager;
 
+    // IN-list sizes; a chunk is padded up to the smallest one that fits
+    private static final int[] CHUNK_SIZES = {32, 256};
+    private static final int MAX_CHUNK_SIZE = CHUNK_SIZES[CHUNK_SIZES.length - 1];
+
+    // (table#size) -> SQL text, so identical statements are reused
+    private static final Map<String, String> CHUNK_QUERIES = new ConcurrentHashMap<>();
+
     /**
      * Query the routing guide table for a specific origin and set of postal codes.
      * Returns rows where SATURDAYDELIVERY_FLAG is true.
      */
-    @SuppressWarnings("unchecked")
+    @Transactional(transactionManager = "clsTransactionManager", readOnly = true)
     public List<SaturdayDeliveryResult> getSaturdayDeliveryByOrigin(String origin, List<String> postalCodes) {
+        return getSaturdayDeliveryByOrigin(origin, postalCodes, 0);
+    }
+
+    /**
+     * Same as above with a time limit for the whole origin (0 = none). Failures are thrown so
+     * callers can report the origin as failed rather than silently returning no Saturday flags.
+     */
+    @Transactional(transactionManager = "clsTransactionManager", readOnly = true)
+    public List<SaturdayDeliveryResult> getSaturdayDeliveryByOrigin(String origin, List<String> postalCodes, int timeoutMs) {
+        List<SaturdayDeliveryResult> mapped = new ArrayList<>();
+        forEachSaturdayDelivery(origin, postalCodes, timeoutMs, mapped::add);
+        return mapped;
+    }
+
+    /**
+     * Pass Saturday-flagged rows for an origin to the consumer, one IN-list chunk at a time.
+     * Postal codes are sent in fixed-size IN lists (see CHUNK_SIZES), padded by repeating the
+     * last code, so every call against a table uses one of a couple of SQL texts and their
+     * cached plans, and no statement gets near SQL Server's 2100-parameter limit.
+     * timeoutMs bounds all chunks together: each statement gets what is left of it.
+     */
+    @Transactional(transactionManager = "clsTransactionManager", readOnly = true)
+    @SuppressWarnings("unchecked")
+    public void forEachSaturdayDelivery(String origin, List<String> postalCodes, int timeoutMs,
+                                        Consumer<SaturdayDeliveryResult> consumer) {
         if (postalCodes == null || postalCodes.isEmpty()) {
-            return new ArrayList<>();
+            return;
         }
 
         // Sanitize origin to prevent SQL injection (only allow alphanumeric and underscore)
         if (!origin.matches("[a-zA-Z0-9_]+")) {
             logger.warn("Invalid origin value rejected: {}", origin);
-            return new ArrayList<>();
+            return;
         }
 
         String tableName = "DMSServer.dbo.ps_PRIMARY_ROUTING_GUIDE_" + origin;
+        long deadline = timeoutMs > 0 ? System.currentTimeMillis() + timeoutMs : 0;
+        int rowCount = 0;
 
-        // Build parameterized IN clause
-        StringBuilder queryStr = new StringBuilder();
-        queryStr.append("SELECT POSTALCODE, SERVICE, TRANSIT_DAYS FROM ");
-        queryStr.append(tableName);
-        queryStr.append(" WHERE SATURDAYDELIVERY_FLAG = 1 AND POSTALCODE IN (");
+        try {
+            for (List<String> chunk : planChunks(postalCodes)) {
+                Query query = entityManager.createNativeQuery(buildChunkQuery(tableName, chunk.size()));
+                if (deadline > 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new QueryTimeoutException("Timed out after " + timeoutMs + "ms");
+                    }
+                    query.setHint("jakarta.persistence.query.timeout", (int) remaining);
+                }
+                for (int i = 0; i < chunk.size(); i++) {
+                    query.setParameter(i + 1, chunk.get(i));
+                }
+
+                for (Object[] row : (List<Object[]>) query.getResultList()) {
+                    SaturdayDeliveryResult r = new SaturdayDeliveryResult();
+                    r.setPostalCode(row[0] != null ? row[0].toString() : null);
+                    r.setService(row[1] != null ? row[1].toString() : null);
+                    r.setTransitDays(row[2] != null ? row[2].toString() : null);
+                    consumer.accept(r);
+                    rowCount++;
+                }
+            }
 
-        for (int i = 0; i < postalCodes.size(); i++) {
-            if (i > 0) queryStr.append(", ");
-            queryStr.append("?").append(i + 1);
+            logger.debug("Routing guide query for origin={} ({} zips) returned {} Saturday delivery rows",
+                    origin, postalCodes.size(), rowCount);
+        } catch (Exception e) {
+            logger.error("Error querying routing guide for origin={}: {}", origin, e.getMessage());
+            throw new RuntimeException("Failed to query routing guide for origin " + origin + ": " + e.getMessage(), e);
         }
-        queryStr.append(")");
+    }
 
-        try {
-            Query query = entityManager.createNativeQuery(queryStr.toString());
-            for (int i = 0; i < postalCodes.size(); i++) {
-                query.setParameter(i + 1, postalCodes.get(i));
+    /**
+     * Split postal codes into IN-list parameter sets: at most MAX_CHUNK_SIZE codes each, every
+     * set padded up to one of CHUNK_SIZES by repeating its last code.
+     */
+    static List<List<String>> planChunks(List<String> postalCodes) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < postalCodes.size(); from += MAX_CHUNK_SIZE) {
+            List<String> codes = postalCodes.subList(from, Math.min(from + MAX_CHUNK_SIZE, postalCodes.size()));
+            int size = chunkSize(codes.size());
+            List<String> padded = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                padded.add(codes.get(Math.min(i, codes.size() - 1)));
             }
+            chunks.add(padded);
+        }
+        return chunks;
+    }
 
-            List<Object[]> results = (List<Object[]>) query.getResultList();
-            List<SaturdayDeliveryResult> mapped = new ArrayList<>();
-
-            for (Object[] row : results) {
-                SaturdayDeliveryResult r = new SaturdayDeliveryResult();
-                r.setPostalCode(row[0] != null ? row[0].toString() : null);
-                r.setService(row[1] != null ? row[1].toString() : null);
-                r.setTransitDays(row[2] != null ? row[2].toString() : null);
-                mapped.add(r);
+    /**
+     * Stream every Saturday-flagged row of an origin's routing guide (no postal-code filter).
+     * Used to build the in-memory eligibility sets. The read-only transaction keeps the
+     * EntityManager (and its cursor) open while the stream is read, including when called from
+     * scheduler or executor threads. timeoutMs (0 = none) is the statement timeout.
+     */
+    @Transactional(transactionManager = "clsTransactionManager", readOnly = true)
+    @SuppressWarnings("unchecked")
+    public void forEachSaturdayFlag(String origin, int timeoutMs, Consumer<SaturdayDeliveryResult> consumer) {
+        if (!origin.matches("[a-zA-Z0-9_]+")) {
+            logger.warn("Invalid origin value rejected: {}", origin);
+            return;
+        }
+        String sql = "SELECT POSTALCODE, SERVICE, TRANSIT_DAYS FROM DMSServer.dbo.ps_PRIMARY_ROUTING_GUIDE_" + origin
+                + " WHERE SATURDAYDELIVERY_FLAG = 1";
+        try {
+            Query query = entityManager.createNativeQuery(sql);
+            if (timeoutMs > 0) {
+                query.setHint("jakarta.persistence.query.timeout", timeoutMs);
+            }
+            try (Stream<Object[]> rows = (Stream<Object[]>) query.getResultStream()) {
+                Iterator<Object[]> it = rows.iterator();
+                while (it.hasNext()) {
+                    Object[] row = it.next();
+                    consumer.accept(new SaturdayDeliveryResult(
+                            row[0] != null ? row[0].toString() : null,
+                            row[1] != null ? row[1].toString() : null,
+                            row[2] != null ? row[2].toString() : null));
+                }
             }
+        } catch (Exception e) {
+            logger.error("Error loading Saturday flags for origin={}: {}", origin, e.getMessage());
+            throw new RuntimeException("Failed to load Saturday flags for origin " + origin + ": " + e.getMessage(), e);
+        }
+    }
 
-            logger.debug("Routing guide query for origin={} returned {} Saturday delivery rows", origin, mapped.size());
-            return mapped;
+    /**
+     * Cheap server-side fingerprint of an origin's Saturday-flagged rows (row count + checksum),
+     * used to tell whether a routing guide was reloaded since it was last cached.
+     */
+    public String getSaturdayFlagsFingerprint(String origin) {
+        if (!origin.matches("[a-zA-Z0-9_]+")) {
+            return null;
+        }
+        String sql = "SELECT COUNT_BIG(*), CHECKSUM_AGG(CHECKSUM(POSTALCODE, SERVICE, TRANSIT_DAYS)) "
+                + "FROM DMSServer.dbo.ps_PRIMARY_ROUTING_GUIDE_" + origin + " WHERE SATURDAYDELIVERY_FLAG = 1";
+        try {
+            Object[] row = (Object[]) entityManager.createNativeQuery(sql).getSingleResult();
+            return row[0] + ":" + row[1];
         } catch (Exception e) {
-            logger.error("Error querying routing guide for origin={}: {}", origin, e.getMessage());
-            return new ArrayList<>();
+            logger.error("Error fingerprinting routing guide for origin={}: {}", origin, e.getMessage());
+            throw new RuntimeException("Failed to fingerprint routing guide for origin " + origin + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static int chunkSize(int count) {
+        for (int size : CHUNK_SIZES) {
+            if (count <= size) {
+                return size;
+            }
         }
+        return MAX_CHUNK_SIZE;
+    }
+
+    private static String buildChunkQuery(String tableName, int size) {
+        return CHUNK_QUERIES.computeIfAbsent(tableName + "#" + size, k -> {
+            StringBuilder queryStr = new StringBuilder();
+            queryStr.append("SELECT POSTALCODE, SERVICE, TRANSIT_DAYS FROM ");
+            queryStr.append(tableName);
+            queryStr.append(" WHERE SATURDAYDELIVERY_FLAG = 1 AND POSTALCODE IN (");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) queryStr.append(", ");
+                queryStr.append("?").append(i + 1);
+            }
+            queryStr.append(")");
+            return queryStr.toString();
+        });
     }
 }
@@ -2,6 +2,7 @@ package com.roadrats.demo.repository.dberrors;
 
 import com.roadrats.demo.config.DatabaseErrorsConfig;
 import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import com.roadrats.demo.model.dberrors.DatabaseErrorFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
@@ -10,11 +11,14 @@ import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Repository that uses dynamic JDBC connections to query t_log_message
  * across multiple SQL Server instances. Does NOT use JPA/EntityManager
  * because we need to connect to N servers with the same schema dynamically.
+ * Connections come from a small per-server pool (see ServerDataSourceRegistry).
  */
 @Repository
 public class DatabaseErrorRepository {
@@ -22,10 +26,12 @@ public class DatabaseErrorRepository {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseErrorRepository.class);
 
     private final DatabaseErrorsConfig config;
+    private final ServerDataSourceRegistry dataSources;
 
     private static final String ERROR_QUERY = """
         SELECT TOP 10000
             logged_on_local,
+            logged_on_utc,
             machine_id,
             user_id,
             resource_name,
@@ -36,11 +42,66 @@ public class DatabaseErrorRepository {
         WHERE logged_on_utc >= DATEADD(day, ?, GETUTCDATE())
         AND resource_name LIKE 'CANT_EXE_DB%'
         AND call_stack <> '1: Process Exacta Divert Confirmation:32'
+        {filters}
         ORDER BY logged_on_utc DESC
         """;
 
-    public DatabaseErrorRepository(DatabaseErrorsConfig config) {
+    // Row counts per fixed-width logged_on_utc bucket (bucket = minutes since 2000-01-01 / width).
+    // The width is an inlined validated int so the SELECT and GROUP BY expressions match.
+    private static final String HISTOGRAM_QUERY = """
+        SELECT b.bucket, COUNT(*) AS error_count
+        FROM (
+            SELECT DATEDIFF(minute, '20000101', logged_on_utc) / {width} AS bucket
+            FROM dbo.t_log_message WITH (NOLOCK)
+            WHERE logged_on_utc >= DATEADD(day, ?, GETUTCDATE())
+            AND resource_name LIKE 'CANT_EXE_DB%'
+            AND call_stack <> '1: Process Exacta Divert Confirmation:32'
+            {filters}
+        ) b
+        GROUP BY b.bucket
+        ORDER BY b.bucket
+        """;
+
+    public static final LocalDateTime HISTOGRAM_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    // Rows strictly after a logged_on_utc high-water mark, oldest first, for the background collector
+    private static final String INCREMENTAL_QUERY = """
+        SELECT TOP (?)
+            logged_on_local,
+            logged_on_utc,
+            machine_id,
+            user_id,
+            resource_name,
+            details,
+            call_stack,
+            arguments
+        FROM dbo.t_log_message WITH (NOLOCK)
+        WHERE logged_on_utc > ?
+        AND resource_name LIKE 'CANT_EXE_DB%'
+        AND call_stack <> '1: Process Exacta Divert Confirmation:32'
+        ORDER BY logged_on_utc ASC
+        """;
+
+    // Every row at exactly one logged_on_utc, for finishing a batch that ended part-way through it
+    private static final String TIES_QUERY = """
+        SELECT
+            logged_on_local,
+            logged_on_utc,
+            machine_id,
+            user_id,
+            resource_name,
+            details,
+            call_stack,
+            arguments
+        FROM dbo.t_log_message WITH (NOLOCK)
+        WHERE logged_on_utc = ?
+        AND resource_name LIKE 'CANT_EXE_DB%'
+        AND call_stack <> '1: Process Exacta Divert Confirmation:32'
+        """;
+
+    public DatabaseErrorRepository(DatabaseErrorsConfig config, ServerDataSourceRegistry dataSources) {
         this.config = config;
+        this.dataSources = dataSources;
     }
 
     /**
@@ -51,46 +112,32 @@ public class DatabaseErrorRepository {
      * @return list of error entries from this server
      */
     public List<DatabaseErrorEntry> queryServer(String server, int days) {
-        String jdbcUrl = config.buildJdbcUrl(server);
-        List<DatabaseErrorEntry> results = new ArrayList<>();
+        return queryServer(server, days, DatabaseErrorFilter.NONE);
+    }
 
-        logger.info("Querying server {} (database: {}, days: {})", server, config.getDatabase(), days);
+    /**
+     * Same as queryServer(server, days), with the filter applied in SQL so TOP 10000 counts
+     * only matching rows.
+     */
+    public List<DatabaseErrorEntry> queryServer(String server, int days, DatabaseErrorFilter filter) {
+        List<DatabaseErrorEntry> results = new ArrayList<>();
+        List<String> filterParams = new ArrayList<>();
+        String sql = ERROR_QUERY.replace("{filters}", filterClause(filter, filterParams));
 
-        try {
-            // Ensure driver is loaded
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            logger.error("JDBC driver not found: {}", config.getDriverClassName(), e);
-            throw new RuntimeException("JDBC driver not found: " + config.getDriverClassName(), e);
-        }
+        logger.info("Querying server {} (database: {}, days: {}, filter: {})", server, config.getDatabase(), days, filter);
 
-        try (Connection conn = DriverManager.getConnection(jdbcUrl)) {
-            // Set READ UNCOMMITTED isolation level (matches Python's behavior)
-            conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
+        // Pooled connections are READ UNCOMMITTED (matches Python's behavior)
+        try (Connection conn = dataSources.getConnection(server)) {
 
-            try (PreparedStatement stmt = conn.prepareStatement(ERROR_QUERY)) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 // Negative days for DATEADD lookback
                 stmt.setInt(1, -Math.abs(days));
+                bindFilter(stmt, 2, filterParams);
                 stmt.setQueryTimeout(config.getConnectionTimeout());
 
                 try (ResultSet rs = stmt.executeQuery()) {
                     while (rs.next()) {
-                        DatabaseErrorEntry entry = new DatabaseErrorEntry();
-                        entry.setServerName(server);
-
-                        Timestamp ts = rs.getTimestamp("logged_on_local");
-                        if (ts != null) {
-                            entry.setLoggedOnLocal(ts.toLocalDateTime());
-                        }
-
-                        entry.setMachineId(rs.getString("machine_id"));
-                        entry.setUserId(rs.getString("user_id"));
-                        entry.setResourceName(rs.getString("resource_name"));
-                        entry.setDetails(rs.getString("details"));
-                        entry.setCallStack(rs.getString("call_stack"));
-                        entry.setArguments(rs.getString("arguments"));
-
-                        results.add(entry);
+                        results.add(mapRow(server, rs));
                     }
                 }
             }
@@ -99,12 +146,159 @@ public class DatabaseErrorRepository {
 
         } catch (SQLException e) {
             logger.error("Error querying server {}: {}", server, e.getMessage(), e);
-            // Don't throw — return empty list so other servers can still be queried
+            // Thrown so the fan-out reports this server as failed instead of "OK, 0 rows"
+            throw new RuntimeException("Failed to query " + server + ": " + e.getMessage(), e);
+        }
+
+        return results;
+    }
+
+    /**
+     * Error counts per time bucket on one server, grouped in SQL. Keys are bucket indexes
+     * (minutes since HISTOGRAM_EPOCH / bucketMinutes), ascending.
+     */
+    public Map<Long, Long> queryHistogram(String server, int days, int bucketMinutes, DatabaseErrorFilter filter) {
+        Map<Long, Long> counts = new TreeMap<>();
+        List<String> filterParams = new ArrayList<>();
+        String sql = HISTOGRAM_QUERY
+                .replace("{width}", Integer.toString(Math.max(1, bucketMinutes)))
+                .replace("{filters}", filterClause(filter, filterParams));
+
+        try (Connection conn = dataSources.getConnection(server);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, -Math.abs(days));
+            bindFilter(stmt, 2, filterParams);
+            stmt.setQueryTimeout(config.getConnectionTimeout());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getLong(1), rs.getLong(2));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error querying histogram on server {}: {}", server, e.getMessage(), e);
+            throw new RuntimeException("Failed to query histogram on " + server + ": " + e.getMessage(), e);
+        }
+        logger.debug("Server {} returned {} histogram buckets", server, counts.size());
+        return counts;
+    }
+
+    /**
+     * Fetch up to maxRows errors logged strictly after the given UTC high-water mark, oldest first.
+     * Failures are thrown so the caller keeps its high-water mark.
+     */
+    public List<DatabaseErrorEntry> queryServerSince(String server, LocalDateTime afterUtc, int maxRows) {
+        List<DatabaseErrorEntry> results = new ArrayList<>();
+        try (Connection conn = dataSources.getConnection(server);
+             PreparedStatement stmt = conn.prepareStatement(INCREMENTAL_QUERY)) {
+            stmt.setInt(1, maxRows);
+            stmt.setTimestamp(2, Timestamp.valueOf(afterUtc));
+            stmt.setQueryTimeout(config.getConnectionTimeout());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    results.add(mapRow(server, rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to query " + server + " since " + afterUtc + ": " + e.getMessage(), e);
         }
+        logger.debug("Server {} returned {} errors after {}", server, results.size(), afterUtc);
+        return results;
+    }
 
+    /**
+     * Every error logged at exactly the given UTC time. Failures are thrown like queryServerSince.
+     */
+    public List<DatabaseErrorEntry> queryServerAt(String server, LocalDateTime atUtc) {
+        List<DatabaseErrorEntry> results = new ArrayList<>();
+        try (Connection conn = dataSources.getConnection(server);
+             PreparedStatement stmt = conn.prepareStatement(TIES_QUERY)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(atUtc));
+            stmt.setQueryTimeout(config.getConnectionTimeout());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    results.add(mapRow(server, rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to query " + server + " at " + atUtc + ": " + e.getMessage(), e);
+        }
         return results;
     }
 
+    /**
+     * AND-ed predicates for the non-null filter fields; their values are appended to params
+     * in placeholder order. Text uses LIKE with %, _ and [ escaped.
+     */
+    private static String filterClause(DatabaseErrorFilter filter, List<String> params) {
+        if (filter == null || filter.isEmpty()) {
+            return "";
+        }
+        StringBuilder sql = new StringBuilder();
+        if (filter.getResource() != null) {
+            sql.append("AND resource_name = ? ");
+            params.add(filter.getResource());
+        }
+        if (filter.getMachine() != null) {
+            sql.append("AND machine_id = ? ");
+            params.add(filter.getMachine());
+        }
+        if (filter.getUser() != null) {
+            sql.append("AND user_id = ? ");
+            params.add(filter.getUser());
+        }
+        if (filter.getText() != null) {
+            sql.append("AND (details LIKE ? ESCAPE '\\' OR call_stack LIKE ? ESCAPE '\\' OR arguments LIKE ? ESCAPE '\\') ");
+            String pattern = "%" + escapeLike(filter.getText()) + "%";
+            params.add(pattern);
+            params.add(pattern);
+            params.add(pattern);
+        }
+        return sql.toString();
+    }
+
+    private static void bindFilter(PreparedStatement stmt, int firstIndex, List<String> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            stmt.setString(firstIndex + i, params.get(i));
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_").replace("[", "\\[");
+    }
+
+    private DatabaseErrorEntry mapRow(String server, ResultSet rs) throws SQLException {
+        DatabaseErrorEntry entry = new DatabaseErrorEntry();
+        entry.setServerName(server);
+
+        Timestamp ts = rs.getTimestamp("logged_on_local");
+        if (ts != null) {
+            entry.setLoggedOnLocal(ts.toLocalDateTime());
+        }
+        Timestamp utc = rs.getTimestamp("logged_on_utc");
+        if (utc != null) {
+            entry.setLoggedOnUtc(utc.toLocalDateTime());
+        }
+
+        entry.setMachineId(rs.getString("machine_id"));
+        entry.setUserId(rs.getString("user_id"));
+        entry.setResourceName(rs.getString("resource_name"));
+        entry.setDetails(rs.getString("details"));
+        entry.setCallStack(rs.getString("call_stack"));
+        entry.setArguments(rs.getString("arguments"));
+        return entry;
+    }
+
+    /**
+     * Cheap liveness check (borrow a connection and validate it); throws if the server is unreachable.
+     */
+    public void ping(String server) throws SQLException {
+        try (Connection conn = dataSources.getConnection(server)) {
+            if (!conn.isValid(Math.max(1, config.getConnectionTimeout()))) {
+                throw new SQLException("Connection to " + server + " is not valid");
+            }
+        }
+    }
+
     /**
      * Test connectivity to a specific server.
      *
@@ -112,15 +306,7 @@ public class DatabaseErrorRepository {
      * @return connection metadata or error message
      */
     public String testConnection(String server) {
-        String jdbcUrl = config.buildJdbcUrl(server);
-
-        try {
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            return "Driver not found: " + config.getDriverClassName();
-        }
-
-        try (Connection conn = DriverManager.getConnection(jdbcUrl)) {
+        try (Connection conn = dataSources.getConnection(server)) {
             DatabaseMetaData meta = conn.getMetaData();
             return String.format("Connected to %s - %s %s (Driver: %s %s)",
                     server,
@@ -128,7 +314,7 @@ public class DatabaseErrorRepository {
                     meta.getDatabaseProductVersion(),
                     meta.getDriverName(),
                     meta.getDriverVersion());
-        } catch (SQLException e) {
+        } catch (SQLException | RuntimeException e) {
             return String.format("Failed to connect to %s: %s", server, e.getMessage());
         }
     }
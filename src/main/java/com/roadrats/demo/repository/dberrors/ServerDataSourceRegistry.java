@@ -0,0 +1,83 @@
+package com.roadrats.demo.repository.dberrors;
+
+import com.roadrats.demo.config.DatabaseErrorsConfig;
+import com.roadrats.demo.repository.LeasedPools;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Lazily-created, small Hikari pool per database-errors server, so the TLS + integrated-auth
+ * handshake is paid once per server rather than on every request. Pools that haven't been
+ * used for roadrats.dberrors.pool.idle-evict-minutes are closed, though never while a
+ * connection is borrowed from them (see {@link LeasedPools}).
+ */
+@Component
+public class ServerDataSourceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerDataSourceRegistry.class);
+
+    private final DatabaseErrorsConfig config;
+    private final LeasedPools pools = new LeasedPools("database-errors");
+
+    public ServerDataSourceRegistry(DatabaseErrorsConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Borrow a pooled connection to the given server, creating its pool on first use.
+     */
+    public Connection getConnection(String server) throws SQLException {
+        return pools.getConnection(server, this::createPool);
+    }
+
+    /**
+     * Close pools that have sat unused past the idle-evict window.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdlePools() {
+        pools.evictIdle(System.currentTimeMillis() - config.getPoolIdleEvictMinutes() * 60_000L);
+    }
+
+    /**
+     * Per-server pool metrics (only servers with an open pool are listed).
+     */
+    public Map<String, Object> getPoolStats() {
+        return pools.getStats();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        pools.closeAll();
+    }
+
+    private HikariDataSource createPool(String server) {
+        logger.info("Creating database-errors pool for {} (database: {}, max {} connections)",
+                server, config.getDatabase(), config.getPoolMaxSize());
+
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName("dberrors-" + server);
+        hikari.setJdbcUrl(config.buildJdbcUrl(server));
+        hikari.setDriverClassName(config.getDriverClassName());
+        hikari.setMaximumPoolSize(Math.max(1, config.getPoolMaxSize()));
+        hikari.setMinimumIdle(0);
+        hikari.setConnectionTimeout(config.getConnectionTimeout() * 1000L);
+        hikari.setIdleTimeout(Math.max(10_000L, config.getPoolIdleEvictMinutes() * 60_000L));
+        hikari.setMaxLifetime(1800000);
+        hikari.setValidationTimeout(5000);
+        // Every read against t_log_message is a dirty read (matches the Python tool)
+        hikari.setTransactionIsolation("TRANSACTION_READ_UNCOMMITTED");
+        hikari.setReadOnly(true);
+        // Don't fail fast - a server that's down shouldn't stop the pool from being created
+        hikari.setInitializationFailTimeout(-1);
+        return new HikariDataSource(hikari);
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 @Repository
 public class OrderImportRepository {
@@ -51,6 +52,54 @@ public class OrderImportRepository {
         order by CTE.order_number
         """;
 
+    // Keyset-paginated variant of RATE_QUERY / RATE_HOLD_QUERY: pages stuck orders by (wh_id, order_number).
+    // The XML log is LEFT JOINed (has_log = 0 when missing) so the cursor still advances past orders with no log rows.
+    private static final String RATE_PAGE_QUERY_TEMPLATE = """
+        ;WITH CTE AS (SELECT TOP (:pageSize) wh_id, order_number, inserted_datetime, updated_datetime, import_status
+        FROM t_order_import_queue oiq 
+        WHERE 
+            ((inserted_datetime < DATEADD(MINUTE, -10, GETDATE()) AND import_status = 'XML_PARSED')
+            OR (updated_datetime < DATEADD(MINUTE, -10, GETDATE()) AND import_status <> 'XML_PARSED'))
+            AND %s EXISTS (
+                SELECT * FROM dbo.t_cls_rate_hold_queue rhq 
+                WHERE rhq.wh_id = oiq.wh_id 
+                AND rhq.order_number = oiq.order_number)
+            AND (oiq.wh_id > :afterWhId OR (oiq.wh_id = :afterWhId AND oiq.order_number > :afterOrderNumber))
+        ORDER BY oiq.wh_id, oiq.order_number)
+        SELECT CTE.wh_id,CTE.order_number,pkd.item_number, cls.xml_message, cls.xml_response, error_text, import_status, inserted_datetime, updated_datetime, cls.insert_datetime as cls_insert_datetime,
+            CASE WHEN cls.order_number IS NULL THEN 0 ELSE 1 END as has_log
+        from CTE
+        left join dbo.t_cls_xml_log cls on cls.order_number = CTE.order_number and cls.wh_id = CTE.wh_id 
+        left join dbo.t_pick_detail pkd on pkd.order_number = CTE.order_number and pkd.wh_id = CTE.wh_id
+        order by CTE.wh_id, CTE.order_number
+        """;
+
+    private static final String RATE_PAGE_QUERY = RATE_PAGE_QUERY_TEMPLATE.formatted("NOT");
+    private static final String RATE_HOLD_PAGE_QUERY = RATE_PAGE_QUERY_TEMPLATE.formatted("");
+
+    /**
+     * One keyset page of raw rows. lastWhId/lastOrderNumber is the last stuck order scanned
+     * (even if it had no XML log rows) and orderCount is how many stuck orders the page covered.
+     */
+    public static class RawPage {
+        private final List<OrderImportResult> rows;
+        private final String lastWhId;
+        private final String lastOrderNumber;
+        private final int orderCount;
+
+        public RawPage(List<OrderImportResult> rows, String lastWhId, String lastOrderNumber, int orderCount) {
+            this.rows = rows;
+            this.lastWhId = lastWhId;
+            this.lastOrderNumber = lastOrderNumber;
+            this.orderCount = orderCount;
+        }
+
+        public List<OrderImportResult> getRows() { return rows; }
+        public String getLastWhId() { return lastWhId; }
+        public String getLastOrderNumber() { return lastOrderNumber; }
+        public int getOrderCount() { return orderCount; }
+    }
+
     @SuppressWarnings("unchecked")
     public List<OrderImportResult> getRateQueryResults() {
         logger.debug("Executing rate query SQL");
@@ -79,33 +128,79 @@ public class OrderImportRepository {
         }
     }
 
+    public RawPage getRateQueryPage(String afterWhId, String afterOrderNumber, int pageSize) {
+        return queryPage(RATE_PAGE_QUERY, "rate", afterWhId, afterOrderNumber, pageSize);
+    }
+
+    public RawPage getRateHoldQueryPage(String afterWhId, String afterOrderNumber, int pageSize) {
+        return queryPage(RATE_HOLD_PAGE_QUERY, "rate hold", afterWhId, afterOrderNumber, pageSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RawPage queryPage(String sql, String label, String afterWhId, String afterOrderNumber, int pageSize) {
+        logger.debug("Executing {} page query after ({}, {}) pageSize={}", label, afterWhId, afterOrderNumber, pageSize);
+        try {
+            Query query = entityManager.createNativeQuery(sql);
+            query.setParameter("pageSize", pageSize);
+            // Empty strings sort before every real key, so they start from the first page
+            query.setParameter("afterWhId", afterWhId != null ? afterWhId : "");
+            query.setParameter("afterOrderNumber", afterOrderNumber != null ? afterOrderNumber : "");
+            List<Object[]> results = (List<Object[]>) query.getResultList();
+
+            List<OrderImportResult> mapped = new ArrayList<>();
+            String lastWhId = null;
+            String lastOrderNumber = null;
+            int orderCount = 0;
+            for (Object[] row : results) {
+                OrderImportResult result = mapRow(row);
+                if (!Objects.equals(result.getWhId(), lastWhId) || !Objects.equals(result.getOrderNumber(), lastOrderNumber)) {
+                    orderCount++;
+                    lastWhId = result.getWhId();
+                    lastOrderNumber = result.getOrderNumber();
+                }
+                boolean hasLog = row[10] != null && ((Number) row[10]).intValue() == 1;
+                if (hasLog) {
+                    mapped.add(result);
+                }
+            }
+
+            logger.debug("{} page query returned {} raw rows over {} orders", label, results.size(), orderCount);
+            return new RawPage(mapped, lastWhId, lastOrderNumber, orderCount);
+        } catch (Exception e) {
+            logger.error("Error executing {} page query", label, e);
+            throw new RuntimeException("Failed to execute " + label + " page query: " + e.getMessage(), e);
+        }
+    }
+
     private List<OrderImportResult> mapResults(List<Object[]> results) {
         List<OrderImportResult> mappedResults = new ArrayList<>();
         
         for (Object[] row : results) {
-            OrderImportResult result = new OrderImportResult();
-            result.setWhId(row[0] != null ? row[0].toString() : null);
-            result.setOrderNumber(row[1] != null ? row[1].toString() : null);
-            result.setItemNumber(row[2] != null ? row[2].toString() : null);
-            result.setXmlMessage(row[3] != null ? row[3].toString() : null);
-            result.setXmlResponse(row[4] != null ? row[4].toString() : null);
-            result.setErrorText(row[5] != null ? row[5].toString() : null);
-            result.setImportStatus(row[6] != null ? row[6].toString() : null);
-            
-            if (row[7] != null) {
-                result.setInsertedDatetime(((java.sql.Timestamp) row[7]).toLocalDateTime());
-            }
-            if (row[8] != null) {
-                result.setUpdatedDatetime(((java.sql.Timestamp) row[8]).toLocalDateTime());
-            }
-            if (row[9] != null) {
-                result.setClsInsertDatetime(((java.sql.Timestamp) row[9]).toLocalDateTime());
-            }
-            
-            mappedResults.add(result);
+            mappedResults.add(mapRow(row));
         }
         
         return mappedResults;
     }
-}
 
+    private OrderImportResult mapRow(Object[] row) {
+        OrderImportResult result = new OrderImportResult();
+        result.setWhId(row[0] != null ? row[0].toString() : null);
+        result.setOrderNumber(row[1] != null ? row[1].toString() : null);
+        result.setItemNumber(row[2] != null ? row[2].toString() : null);
+        result.setXmlMessage(row[3] != null ? row[3].toString() : null);
+        result.setXmlResponse(row[4] != null ? row[4].toString() : null);
+        result.setErrorText(row[5] != null ? row[5].toString() : null);
+        result.setImportStatus(row[6] != null ? row[6].toString() : null);
+        
+        if (row[7] != null) {
+            result.setInsertedDatetime(((java.sql.Timestamp) row[7]).toLocalDateTime());
+        }
+        if (row[8] != null) {
+            result.setUpdatedDatetime(((java.sql.Timestamp) row[8]).toLocalDateTime());
+        }
+        if (row[9] != null) {
+            result.setClsInsertDatetime(((java.sql.Timestamp) row[9]).toLocalDateTime());
+        }
+        return result;
+    }
+}
@@ -10,14 +10,18 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 /**
  * Queries the 6 CLS queue tables for orders with attempts > 2.
- * Mirrors the queries in cls_scripts.sql.
+ * Mirrors the queries in cls_scripts.sql. The queue reads run concurrently, each through
+ * the shared EntityManager (one pooled connection per read outside a transaction).
  */
 @Repository
 public class QueueStatusRepository {
@@ -65,79 +69,178 @@ public class QueueStatusRepository {
                 + "WHERE q.attempts > 2 ORDER BY q.order_number");
     }
 
+    private static final long QUEUE_TIMEOUT_SECONDS = 60;
+
+    // One thread per queue so the six reads run concurrently on separate pooled connections
+    private final ExecutorService queueExecutor = Executors.newFixedThreadPool(QUEUE_QUERIES.size());
+
     /**
      * Query all 6 CLS queues and return results grouped by queue type.
      */
-    @SuppressWarnings("unchecked")
     public Map<String, List<QueueStatusResult>> getAllQueueStatuses() {
-        Map<String, List<QueueStatusResult>> allResults = new LinkedHashMap<>();
+        return getAllQueueStatuses(new LinkedHashMap<>());
+    }
 
+    /**
+     * Query all 6 CLS queues concurrently and return results grouped by queue type.
+     * Queues that fail or time out map to an empty list and are reported in {@code failures}.
+     */
+    public Map<String, List<QueueStatusResult>> getAllQueueStatuses(Map<String, String> failures) {
+        Map<String, Future<List<QueueStatusResult>>> futures = new LinkedHashMap<>();
         for (Map.Entry<String, String> entry : QUEUE_QUERIES.entrySet()) {
             String queueType = entry.getKey();
             String sql = entry.getValue();
+            futures.put(queueType, queueExecutor.submit(() -> queryQueue(queueType, sql)));
+        }
+
+        Map<String, List<QueueStatusResult>> allResults = new LinkedHashMap<>();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(QUEUE_TIMEOUT_SECONDS);
 
+        for (Map.Entry<String, Future<List<QueueStatusResult>>> entry : futures.entrySet()) {
+            String queueType = entry.getKey();
             try {
-                Query query = entityManager.createNativeQuery(sql);
-                List<Object[]> rows = (List<Object[]>) query.getResultList();
-
-                // Parse all rows, then deduplicate per (wh_id, order_number)
-                // preferring the row that has a non-empty route
-                Map<String, QueueStatusResult> deduped = new LinkedHashMap<>();
-                for (Object[] row : rows) {
-                    String whId = row[1] != null ? row[1].toString() : null;
-                    String orderNumber = row[2] != null ? row[2].toString() : null;
-                    String key = whId + "|" + orderNumber;
-
-                    // Parse error and route from xml_response
-                    String errorText = null;
-                    String route = null;
-                    String xmlResponse = (row.length > 3 && row[3] != null) ? row[3].toString() : null;
-                    if (xmlResponse != null) {
-                        errorText = xmlParsingService.extractErrorFromXml(xmlResponse);
-                        route = xmlParsingService.extractRoute(xmlResponse);
-                    }
-
-                    // Parse zip from xml_message (consignee info is in the request)
-                    String zip = null;
-                    String xmlMessage = (row.length > 4 && row[4] != null) ? row[4].toString() : null;
-                    if (xmlMessage != null) {
-                        Map<String, String> consignee = xmlParsingService.extractConsigneeInfo(xmlMessage);
-                        if (consignee != null && consignee.get("postalcode") != null) {
-                            String pc = consignee.get("postalcode");
-                            zip = pc.length() >= 5 ? pc.substring(0, 5) : pc;
-                        }
-                    }
-
-                    QueueStatusResult existing = deduped.get(key);
-                    boolean hasRoute = route != null && !route.isEmpty();
-                    boolean existingHasRoute = existing != null
-                            && existing.getRoute() != null && !existing.getRoute().isEmpty();
-
-                    // Keep this row if: no existing yet, or this one has route and existing doesn't
-                    if (existing == null || (hasRoute && !existingHasRoute)) {
-                        QueueStatusResult r = new QueueStatusResult();
-                        r.setType(row[0] != null ? row[0].toString() : null);
-                        r.setWhId(whId);
-                        r.setOrderNumber(orderNumber);
-                        r.setErrorText(errorText);
-                        r.setRoute(route);
-                        r.setZip(zip);
-                        deduped.put(key, r);
-                    } else if (existing.getZip() == null && zip != null) {
-                        // Fill in zip from another row if missing
-                        existing.setZip(zip);
-                    }
-                }
-
-                List<QueueStatusResult> mapped = new ArrayList<>(deduped.values());
-                allResults.put(queueType, mapped);
-                logger.debug("Queue '{}' returned {} rows with attempts > 2", queueType, mapped.size());
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                allResults.put(queueType, entry.getValue().get(remaining, TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                logger.error("Timeout querying queue '{}'", queueType);
+                failures.put(queueType, "TIMEOUT");
+                allResults.put(queueType, new ArrayList<>());
             } catch (Exception e) {
-                logger.error("Error querying queue '{}': {}", queueType, e.getMessage());
+                Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                logger.error("Error querying queue '{}': {}", queueType, cause.getMessage());
+                failures.put(queueType, "ERROR: " + cause.getMessage());
                 allResults.put(queueType, new ArrayList<>());
             }
         }
 
         return allResults;
     }
+
+    @SuppressWarnings("unchecked")
+    private List<QueueStatusResult> queryQueue(String queueType, String sql) {
+        Query query = entityManager.createNativeQuery(sql);
+        List<Object[]> rows = (List<Object[]>) query.getResultList();
+
+        // Group rows per (wh_id, order_number), keeping query order
+        Map<String, List<Object[]>> grouped = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            String whId = row[1] != null ? row[1].toString() : null;
+            String orderNumber = row[2] != null ? row[2].toString() : null;
+            grouped.computeIfAbsent(whId + "|" + orderNumber, k -> new ArrayList<>()).add(row);
+        }
+
+        // Only the de-duplicated winners are parsed, in parallel
+        List<QueueStatusResult> mapped = grouped.values().parallelStream()
+                .map(this::toResult)
+                .collect(Collectors.toList());
+
+        logger.debug("Queue '{}' returned {} rows ({} orders) with attempts > 2", queueType, rows.size(), mapped.size());
+        return mapped;
+    }
+
+    /**
+     * Build the result for one (wh_id, order_number) group: prefer the first row whose
+     * xml_response has a route, and fill the zip from another row if the winner has none.
+     * Rows are screened with {@link #mayHaveRoute}, so only rows that can carry a route are
+     * DOM-parsed; the route itself still comes from XmlParsingService.extractRoute.
+     */
+    private QueueStatusResult toResult(List<Object[]> group) {
+        Object[] winner = group.get(0);
+        String route = "";
+        for (Object[] row : group) {
+            String xmlResponse = column(row, 3);
+            if (!mayHaveRoute(xmlResponse)) {
+                continue;
+            }
+            String candidate = xmlParsingService.extractRoute(xmlResponse);
+            if (!candidate.isEmpty()) {
+                winner = row;
+                route = candidate;
+                break;
+            }
+        }
+
+        QueueStatusResult r = new QueueStatusResult();
+        r.setType(column(winner, 0));
+        r.setWhId(column(winner, 1));
+        r.setOrderNumber(column(winner, 2));
+
+        // Parse error from xml_response; the route was found while picking the winner
+        String xmlResponse = column(winner, 3);
+        if (xmlResponse != null) {
+            r.setErrorText(xmlParsingService.extractErrorFromXml(xmlResponse));
+            r.setRoute(route);
+        }
+
+        // Parse zip from xml_message (consignee info is in the request)
+        String zip = extractZip(column(winner, 4));
+        for (int i = 0; zip == null && i < group.size(); i++) {
+            if (group.get(i) != winner) {
+                zip = extractZip(column(group.get(i), 4));
+            }
+        }
+        r.setZip(zip);
+        return r;
+    }
+
+    /**
+     * Cheap screen for extractRoute: false only when the XML has no CHE_ROUTE element with
+     * non-blank content, so extractRoute would return "" for it. A true can still parse to no
+     * route (malformed XML, or only a later CHE_ROUTE element has text).
+     */
+    static boolean mayHaveRoute(String xml) {
+        if (xml == null) {
+            return false;
+        }
+        int from = 0;
+        int start;
+        while ((start = xml.indexOf("<CHE_ROUTE", from)) >= 0) {
+            int nameEnd = start + "<CHE_ROUTE".length();
+            from = nameEnd;
+            if (nameEnd >= xml.length()) {
+                break;
+            }
+            char next = xml.charAt(nameEnd);
+            if (next != '>' && !Character.isWhitespace(next)) {
+                // Some other element, e.g. CHE_ROUTE_CODE
+                continue;
+            }
+            int tagEnd = xml.indexOf('>', nameEnd);
+            if (tagEnd < 0) {
+                break;
+            }
+            if (xml.charAt(tagEnd - 1) == '/') {
+                // <CHE_ROUTE/>
+                continue;
+            }
+            int close = xml.indexOf("</CHE_ROUTE", tagEnd);
+            String content = xml.substring(tagEnd + 1, close >= 0 ? close : xml.length());
+            if (!content.isBlank()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String extractZip(String xmlMessage) {
+        if (xmlMessage == null) {
+            return null;
+        }
+        Map<String, String> consignee = xmlParsingService.extractConsigneeInfo(xmlMessage);
+        if (consignee != null && consignee.get("postalcode") != null) {
+            String pc = consignee.get("postalcode");
+            return pc.length() >= 5 ? pc.substring(0, 5) : pc;
+        }
+        return null;
+    }
+
+    private static String column(Object[] row, int index) {
+        return row.length > index && row[index] != null ? row[index].toString() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        queueExecutor.shutdownNow();
+    }
 }
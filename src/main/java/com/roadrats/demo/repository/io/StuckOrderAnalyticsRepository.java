@@ -0,0 +1,154 @@
+package com.roadrats.demo.repository.io;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set-based aggregates over the full stuck-order population (same predicate as the rate / rate-hold
+ * queries, without the TOP 1000). Only the small aggregate tables come back over the wire.
+ */
+@Repository
+public class StuckOrderAnalyticsRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(StuckOrderAnalyticsRepository.class);
+
+    @PersistenceContext(unitName = "io")
+    private EntityManager entityManager;
+
+    // Distinct (order, error) pairs after splitting comma-joined error_text, counted per warehouse
+    private static final String ERROR_WAREHOUSE_TEMPLATE = """
+        ;WITH CTE AS (SELECT wh_id, order_number
+        FROM t_order_import_queue oiq
+        WHERE
+            ((inserted_datetime < DATEADD(MINUTE, -10, GETDATE()) AND import_status = 'XML_PARSED')
+            OR (updated_datetime < DATEADD(MINUTE, -10, GETDATE()) AND import_status <> 'XML_PARSED'))
+            AND %s EXISTS (
+                SELECT * FROM dbo.t_cls_rate_hold_queue rhq
+                WHERE rhq.wh_id = oiq.wh_id
+                AND rhq.order_number = oiq.order_number)),
+        ERR AS (SELECT DISTINCT CTE.wh_id, CTE.order_number, LTRIM(RTRIM(s.value)) AS error_text
+            FROM CTE
+            JOIN dbo.t_cls_xml_log cls ON cls.order_number = CTE.order_number AND cls.wh_id = CTE.wh_id
+            CROSS APPLY STRING_SPLIT(cls.error_text, ',') s
+            WHERE cls.error_text IS NOT NULL AND LTRIM(RTRIM(s.value)) <> '')
+        SELECT error_text, ISNULL(wh_id, 'UNKNOWN') AS wh_id, COUNT(*) AS order_count
+        FROM ERR
+        GROUP BY error_text, ISNULL(wh_id, 'UNKNOWN')
+        """;
+
+    // Order counts and queue ages by (warehouse, import_status), per warehouse and overall in one pass.
+    // Like the rate queries' inner join, only orders with a t_cls_xml_log row are counted.
+    // Age is measured from the timestamp the stuck predicate uses for that status.
+    private static final String STATUS_AGE_TEMPLATE = """
+        ;WITH CTE AS (SELECT ISNULL(wh_id, 'UNKNOWN') AS wh_id, ISNULL(import_status, 'UNKNOWN') AS import_status,
+            ISNULL(wh_id, '') + '|' + ISNULL(order_number, '') AS order_key,
+            DATEDIFF(MINUTE, CASE WHEN import_status = 'XML_PARSED' THEN inserted_datetime ELSE updated_datetime END, GETDATE()) AS age_minutes,
+            CASE WHEN EXISTS (
+                SELECT * FROM dbo.t_cls_xml_log cls
+                WHERE cls.wh_id = oiq.wh_id AND cls.order_number = oiq.order_number
+                AND LTRIM(RTRIM(ISNULL(cls.error_text, ''))) <> '') THEN 1 ELSE 0 END AS has_error
+        FROM t_order_import_queue oiq
+        WHERE
+            ((inserted_datetime < DATEADD(MINUTE, -10, GETDATE()) AND import_status = 'XML_PARSED')
+            OR (updated_datetime < DATEADD(MINUTE, -10, GETDATE()) AND import_status <> 'XML_PARSED'))
+            AND %s EXISTS (
+                SELECT * FROM dbo.t_cls_rate_hold_queue rhq
+                WHERE rhq.wh_id = oiq.wh_id
+                AND rhq.order_number = oiq.order_number)
+            AND EXISTS (
+                SELECT * FROM dbo.t_cls_xml_log cls
+                WHERE cls.wh_id = oiq.wh_id AND cls.order_number = oiq.order_number))
+        SELECT wh_id, import_status, GROUPING(wh_id) AS all_warehouses, GROUPING(import_status) AS all_statuses,
+            COUNT(DISTINCT order_key) AS order_count,
+            COUNT(DISTINCT CASE WHEN has_error = 1 THEN order_key END) AS error_count,
+            MIN(age_minutes) AS min_age, MAX(age_minutes) AS max_age, AVG(CAST(age_minutes AS BIGINT)) AS avg_age,
+            COUNT(DISTINCT CASE WHEN age_minutes < 30 THEN order_key END) AS age_under_30m,
+            COUNT(DISTINCT CASE WHEN age_minutes >= 30 AND age_minutes < 60 THEN order_key END) AS age_30m_1h,
+            COUNT(DISTINCT CASE WHEN age_minutes >= 60 AND age_minutes < 240 THEN order_key END) AS age_1h_4h,
+            COUNT(DISTINCT CASE WHEN age_minutes >= 240 AND age_minutes < 1440 THEN order_key END) AS age_4h_24h,
+            COUNT(DISTINCT CASE WHEN age_minutes >= 1440 THEN order_key END) AS age_over_24h
+        FROM CTE
+        GROUP BY GROUPING SETS ((wh_id, import_status), (wh_id), (import_status), ())
+        """;
+
+    public static final String[] AGE_BUCKETS = {"<30m", "30m-1h", "1h-4h", "4h-24h", ">24h"};
+
+    /**
+     * Rows of {errorText, whId, orderCount}.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> getErrorWarehouseCounts(boolean hold) {
+        String label = hold ? "rate hold" : "rate";
+        logger.debug("Executing {} error x warehouse aggregate", label);
+        try {
+            Query query = entityManager.createNativeQuery(ERROR_WAREHOUSE_TEMPLATE.formatted(hold ? "" : "NOT"));
+            List<Object[]> results = (List<Object[]>) query.getResultList();
+
+            List<Map<String, Object>> mapped = new ArrayList<>();
+            for (Object[] row : results) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("errorText", row[0] != null ? row[0].toString() : null);
+                entry.put("whId", row[1] != null ? row[1].toString().trim() : null);
+                entry.put("orderCount", toLong(row[2]));
+                mapped.add(entry);
+            }
+            logger.debug("{} error x warehouse aggregate returned {} rows", label, mapped.size());
+            return mapped;
+        } catch (Exception e) {
+            logger.error("Error executing {} error x warehouse aggregate", label, e);
+            throw new RuntimeException("Failed to execute " + label + " error aggregate: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rows of order/error counts and age stats. whId and/or importStatus are null on the rolled-up
+     * grouping-set rows (per status, per warehouse and the grand total).
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> getStatusAgeCounts(boolean hold) {
+        String label = hold ? "rate hold" : "rate";
+        logger.debug("Executing {} status/age aggregate", label);
+        try {
+            Query query = entityManager.createNativeQuery(STATUS_AGE_TEMPLATE.formatted(hold ? "" : "NOT"));
+            List<Object[]> results = (List<Object[]>) query.getResultList();
+
+            List<Map<String, Object>> mapped = new ArrayList<>();
+            for (Object[] row : results) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                boolean allWarehouses = toLong(row[2]) == 1;
+                boolean allStatuses = toLong(row[3]) == 1;
+                entry.put("whId", allWarehouses || row[0] == null ? null : row[0].toString().trim());
+                entry.put("importStatus", allStatuses || row[1] == null ? null : row[1].toString().trim());
+                entry.put("orderCount", toLong(row[4]));
+                entry.put("ordersWithErrors", toLong(row[5]));
+                entry.put("minAgeMinutes", row[6] != null ? toLong(row[6]) : null);
+                entry.put("maxAgeMinutes", row[7] != null ? toLong(row[7]) : null);
+                entry.put("avgAgeMinutes", row[8] != null ? toLong(row[8]) : null);
+                Map<String, Long> buckets = new LinkedHashMap<>();
+                for (int i = 0; i < AGE_BUCKETS.length; i++) {
+                    buckets.put(AGE_BUCKETS[i], toLong(row[9 + i]));
+                }
+                entry.put("ageBuckets", buckets);
+                mapped.add(entry);
+            }
+            logger.debug("{} status/age aggregate returned {} rows", label, mapped.size());
+            return mapped;
+        } catch (Exception e) {
+            logger.error("Error executing {} status/age aggregate", label, e);
+            throw new RuntimeException("Failed to execute " + label + " status aggregate: " + e.getMessage(), e);
+        }
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+}
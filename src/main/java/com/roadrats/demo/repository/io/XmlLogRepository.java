@@ -8,7 +8,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
 @Repository
@@ -16,6 +21,8 @@ public class XmlLogRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(XmlLogRepository.class);
 
+    private static final DateTimeFormatter LOG_ID_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
     @PersistenceContext(unitName = "io")
     private EntityManager entityManager;
 
@@ -25,11 +32,38 @@ public class XmlLogRepository {
             + "WHERE order_number = :orderNumber AND wh_id = :whId "
             + "ORDER BY insert_datetime DESC";
 
-    @SuppressWarnings("unchecked")
+    // Same rows without the bodies; only their sizes come back
+    private static final String XML_LOG_SLIM_QUERY =
+            "SELECT wh_id, order_number, request_type, request_sproc, DATALENGTH(xml_message), DATALENGTH(xml_response), error_text, insert_datetime "
+            + "FROM dbo.t_cls_xml_log "
+            + "WHERE order_number = :orderNumber AND wh_id = :whId "
+            + "ORDER BY insert_datetime DESC";
+
+    // One body by log id. Matched within +/-2ms so datetime (1/300s) and datetime2 columns both line up.
+    private static final String XML_BODY_QUERY_TEMPLATE =
+            "SELECT TOP 1 %s "
+            + "FROM dbo.t_cls_xml_log "
+            + "WHERE order_number = :orderNumber AND wh_id = :whId "
+            + "AND insert_datetime >= DATEADD(MILLISECOND, -2, CAST(:insertDatetime AS datetime2(3))) "
+            + "AND insert_datetime < DATEADD(MILLISECOND, 2, CAST(:insertDatetime AS datetime2(3))) "
+            + "ORDER BY insert_datetime DESC";
+
+    private static final String XML_MESSAGE_QUERY = XML_BODY_QUERY_TEMPLATE.formatted("xml_message");
+    private static final String XML_RESPONSE_QUERY = XML_BODY_QUERY_TEMPLATE.formatted("xml_response");
+
     public List<XmlLogResult> getXmlLogs(String orderNumber, String whId) {
-        logger.debug("Fetching XML logs for order={}, wh={}", orderNumber, whId);
+        return getXmlLogs(orderNumber, whId, true);
+    }
+
+    /**
+     * XML log rows for an order, newest first. With includeXml=false the bodies are left out
+     * (only their stored sizes and a logId to fetch them with).
+     */
+    @SuppressWarnings("unchecked")
+    public List<XmlLogResult> getXmlLogs(String orderNumber, String whId, boolean includeXml) {
+        logger.debug("Fetching XML logs for order={}, wh={}, includeXml={}", orderNumber, whId, includeXml);
         try {
-            Query query = entityManager.createNativeQuery(XML_LOG_QUERY);
+            Query query = entityManager.createNativeQuery(includeXml ? XML_LOG_QUERY : XML_LOG_SLIM_QUERY);
             query.setParameter("orderNumber", orderNumber);
             query.setParameter("whId", whId);
             List<Object[]> rows = (List<Object[]>) query.getResultList();
@@ -41,12 +75,18 @@ public class XmlLogRepository {
                 r.setOrderNumber(row[1] != null ? row[1].toString() : null);
                 r.setRequestType(row[2] != null ? row[2].toString() : null);
                 r.setRequestSproc(row[3] != null ? row[3].toString() : null);
-                r.setXmlMessage(row[4] != null ? row[4].toString() : null);
-                r.setXmlResponse(row[5] != null ? row[5].toString() : null);
+                if (includeXml) {
+                    r.setXmlMessage(row[4] != null ? row[4].toString() : null);
+                    r.setXmlResponse(row[5] != null ? row[5].toString() : null);
+                } else {
+                    r.setXmlMessageLength(row[4] != null ? ((Number) row[4]).longValue() : null);
+                    r.setXmlResponseLength(row[5] != null ? ((Number) row[5]).longValue() : null);
+                }
                 r.setErrorText(row[6] != null ? row[6].toString() : null);
                 if (row[7] != null) {
                     r.setInsertDatetime(((java.sql.Timestamp) row[7]).toLocalDateTime());
                 }
+                r.setLogId(encodeLogId(r.getWhId(), r.getOrderNumber(), r.getInsertDatetime()));
                 results.add(r);
             }
 
@@ -57,4 +97,51 @@ public class XmlLogRepository {
             throw new RuntimeException("Failed to fetch XML logs: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * A single xml_message (response=false) or xml_response (response=true) body, or null if
+     * the log row no longer exists. Throws IllegalArgumentException for a malformed logId.
+     */
+    @SuppressWarnings("unchecked")
+    public String getXmlBody(String logId, boolean response) {
+        String[] key = decodeLogId(logId);
+        logger.debug("Fetching XML {} for wh={}, order={}, at={}", response ? "response" : "message", key[0], key[1], key[2]);
+        try {
+            Query query = entityManager.createNativeQuery(response ? XML_RESPONSE_QUERY : XML_MESSAGE_QUERY);
+            query.setParameter("whId", key[0]);
+            query.setParameter("orderNumber", key[1]);
+            query.setParameter("insertDatetime", key[2]);
+            List<Object> rows = (List<Object>) query.getResultList();
+            return rows.isEmpty() || rows.get(0) == null ? null : rows.get(0).toString();
+        } catch (Exception e) {
+            logger.error("Error fetching XML body for logId={}: {}", logId, e.getMessage());
+            throw new RuntimeException("Failed to fetch XML body: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opaque URL-safe id for a t_cls_xml_log row: (wh_id, order_number, insert_datetime to the ms).
+     */
+    public static String encodeLogId(String whId, String orderNumber, LocalDateTime insertDatetime) {
+        if (insertDatetime == null) {
+            return null;
+        }
+        String raw = (whId != null ? whId : "") + "\n" + (orderNumber != null ? orderNumber : "")
+                + "\n" + insertDatetime.format(LOG_ID_TIMESTAMP);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeLogId(String logId) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(logId.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid logId: " + logId);
+            }
+            LocalDateTime.parse(parts[2], LOG_ID_TIMESTAMP);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid logId: " + logId, e);
+        }
+    }
 }
@@ -0,0 +1,161 @@
+package com.roadrats.demo.repository.testtools;
+
+import com.roadrats.demo.model.testtools.ColumnarTable;
+import com.roadrats.demo.model.testtools.ColumnarTable.Kind;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Reads a JDBC result set into a {@link ColumnarTable}: integer, float and bit columns go into
+ * primitive arrays via getLong / getDouble / getBoolean, everything else into one Object[] per
+ * column. No per-row maps and no per-row string formatting. Duplicate column names get an
+ * "_index" suffix.
+ */
+public final class ColumnarResultMapper {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private ColumnarResultMapper() {
+    }
+
+    public static ColumnarTable read(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int colCount = meta.getColumnCount();
+
+        List<String> columns = new ArrayList<>(colCount);
+        Kind[] kinds = new Kind[colCount];
+        for (int c = 0; c < colCount; c++) {
+            String name = meta.getColumnLabel(c + 1);
+            if (columns.contains(name)) {
+                name = name + "_" + (c + 1);
+            }
+            columns.add(name);
+            kinds[c] = kindOf(meta.getColumnType(c + 1));
+        }
+
+        Object[] data = new Object[colCount];
+        BitSet[] nulls = new BitSet[colCount];
+        int capacity = INITIAL_CAPACITY;
+        for (int c = 0; c < colCount; c++) {
+            data[c] = allocate(kinds[c], capacity);
+            nulls[c] = new BitSet();
+        }
+
+        int row = 0;
+        while (rs.next()) {
+            if (row == capacity) {
+                capacity *= 2;
+                for (int c = 0; c < colCount; c++) {
+                    data[c] = resize(data[c], capacity);
+                }
+            }
+            for (int c = 0; c < colCount; c++) {
+                int i = c + 1;
+                switch (kinds[c]) {
+                    case INTEGER:
+                        ((long[]) data[c])[row] = rs.getLong(i);
+                        break;
+                    case FLOAT:
+                        ((double[]) data[c])[row] = rs.getDouble(i);
+                        break;
+                    case BOOLEAN:
+                        ((boolean[]) data[c])[row] = rs.getBoolean(i);
+                        break;
+                    case DECIMAL:
+                        ((Object[]) data[c])[row] = rs.getBigDecimal(i);
+                        break;
+                    case STRING:
+                        ((Object[]) data[c])[row] = rs.getString(i);
+                        break;
+                    case BINARY:
+                        // Only whether it is null matters; the value is shown as [binary]
+                        rs.getBinaryStream(i);
+                        break;
+                    default:
+                        ((Object[]) data[c])[row] = rs.getObject(i);
+                        break;
+                }
+                if (rs.wasNull()) {
+                    nulls[c].set(row);
+                }
+            }
+            row++;
+        }
+
+        for (int c = 0; c < colCount; c++) {
+            data[c] = resize(data[c], row);
+        }
+        return new ColumnarTable(columns, kinds, data, nulls, row);
+    }
+
+    /**
+     * Run a parameterized query and read the whole result.
+     */
+    public static ColumnarTable query(Connection conn, int timeoutSeconds, String sql, Object... params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            if (timeoutSeconds > 0) {
+                stmt.setQueryTimeout(timeoutSeconds);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return read(rs);
+            }
+        }
+    }
+
+    private static Kind kindOf(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return Kind.INTEGER;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return Kind.FLOAT;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return Kind.DECIMAL;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return Kind.BOOLEAN;
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return Kind.TIMESTAMP;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return Kind.BINARY;
+            default:
+                return Kind.STRING;
+        }
+    }
+
+    private static Object allocate(Kind kind, int capacity) {
+        switch (kind) {
+            case INTEGER: return new long[capacity];
+            case FLOAT: return new double[capacity];
+            case BOOLEAN: return new boolean[capacity];
+            case BINARY: return new Object[0];
+            default: return new Object[capacity];
+        }
+    }
+
+    private static Object resize(Object array, int length) {
+        if (array instanceof long[] a) return Arrays.copyOf(a, length);
+        if (array instanceof double[] a) return Arrays.copyOf(a, length);
+        if (array instanceof boolean[] a) return Arrays.copyOf(a, length);
+        Object[] a = (Object[]) array;
+        return a.length == 0 ? a : Arrays.copyOf(a, length);
+    }
+}
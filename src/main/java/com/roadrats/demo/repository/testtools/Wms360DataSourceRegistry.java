@@ -0,0 +1,105 @@
+package com.roadrats.demo.repository.testtools;
+
+import com.roadrats.demo.config.Wms360Config;
+import com.roadrats.demo.repository.LeasedPools;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Lazily-created Hikari pool per WMS360 (env, stack) — test/prod x aad/io — so the test tools
+ * pay the TLS + integrated-auth handshake once per pool instead of on every click. The driver's
+ * prepared-statement cache is switched on, and pools unused for
+ * roadrats.wms360.pool.idle-evict-minutes are closed, though never while a connection is
+ * borrowed from them (see {@link LeasedPools}).
+ *
+ * Hikari restores auto-commit and isolation level when a connection is returned, so callers
+ * may keep setting READ UNCOMMITTED or disabling auto-commit per connection.
+ */
+@Component
+public class Wms360DataSourceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(Wms360DataSourceRegistry.class);
+
+    public static final String AAD = "aad";
+    public static final String IO = "io";
+
+    private final Wms360Config config;
+    private final LeasedPools pools = new LeasedPools("WMS360");
+
+    public Wms360DataSourceRegistry(Wms360Config config) {
+        this.config = config;
+    }
+
+    public Connection getAadConnection(String env) throws SQLException {
+        return getConnection(env, AAD);
+    }
+
+    public Connection getIoConnection(String env) throws SQLException {
+        return getConnection(env, IO);
+    }
+
+    /**
+     * Borrow a pooled connection for the given env ("test"/"prod") and stack ("aad"/"io"),
+     * creating the pool on first use.
+     */
+    public Connection getConnection(String env, String stack) throws SQLException {
+        return pools.getConnection(key(env, stack), k -> createPool(env, stack));
+    }
+
+    /**
+     * Close pools that have sat unused past the idle-evict window.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdlePools() {
+        pools.evictIdle(System.currentTimeMillis() - config.getPoolIdleEvictMinutes() * 60_000L);
+    }
+
+    /**
+     * Per-pool metrics, keyed "env/stack" (only pools that are open are listed).
+     */
+    public Map<String, Object> getPoolStats() {
+        return pools.getStats();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        pools.closeAll();
+    }
+
+    private HikariDataSource createPool(String env, String stack) {
+        boolean aad = AAD.equals(stack);
+        String server = aad ? config.getAadServer(env) : config.getIoServer(env);
+        String database = aad ? config.getAadDatabase(env) : config.getIoDatabase(env);
+        logger.info("Creating WMS360 pool {} ({} / {}, max {} connections)", key(env, stack), server, database, config.getPoolMaxSize());
+
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName("wms360-" + key(env, stack).replace('/', '-'));
+        hikari.setJdbcUrl(aad ? config.buildAadJdbcUrl(env) : config.buildIoJdbcUrl(env));
+        hikari.setDriverClassName(config.getDriverClassName());
+        hikari.setMaximumPoolSize(Math.max(1, config.getPoolMaxSize()));
+        hikari.setMinimumIdle(0);
+        hikari.setConnectionTimeout(config.getConnectionTimeout() * 1000L);
+        hikari.setIdleTimeout(Math.max(10_000L, config.getPoolIdleEvictMinutes() * 60_000L));
+        hikari.setMaxLifetime(1800000);
+        hikari.setValidationTimeout(5000);
+        // mssql-jdbc keeps prepared statement handles per connection, so repeat lookups skip sp_prepare
+        hikari.addDataSourceProperty("disableStatementPooling", "false");
+        hikari.addDataSourceProperty("statementPoolingCacheSize", String.valueOf(config.getStatementCacheSize()));
+        // Don't fail fast - an unreachable server shouldn't stop the pool from being created
+        hikari.setInitializationFailTimeout(-1);
+        return new HikariDataSource(hikari);
+    }
+
+    private static String key(String env, String stack) {
+        return (Wms360Config.isProd(env) ? "prod" : "test") + "/" + (AAD.equals(stack) ? AAD : IO);
+    }
+}
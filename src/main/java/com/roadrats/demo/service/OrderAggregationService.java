@@ -2,6 +2,7 @@ package com.roadrats.demo.service;
 
 import com.roadrats.demo.model.io.EnrichedOrderResult;
 import com.roadrats.demo.model.io.OrderImportResult;
+import com.roadrats.demo.repository.io.XmlLogRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -115,6 +116,8 @@ public class OrderAggregationService {
                 .map(OrderImportResult::getXmlResponse)
                 .orElse(xmlResponse);
 
+        enriched.setLogId(XmlLogRepository.encodeLogId(
+                selectedRow.getWhId(), selectedRow.getOrderNumber(), selectedRow.getClsInsertDatetime()));
         enriched.setXmlMessage(xmlMessage);
         enriched.setXmlResponse(xmlResponse);
         enriched.setInsertedDatetime(first.getInsertedDatetime());
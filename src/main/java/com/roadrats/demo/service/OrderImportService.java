@@ -1,27 +1,41 @@
 package com.roadrats.demo.service;
 
+import com.roadrats.demo.model.io.EnrichedOrderPage;
 import com.roadrats.demo.model.io.EnrichedOrderResult;
 import com.roadrats.demo.model.io.OrderImportResult;
 import com.roadrats.demo.repository.io.OrderImportRepository;
+import com.roadrats.demo.repository.io.StuckOrderAnalyticsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 public class OrderImportService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderImportService.class);
 
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    public static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
     private OrderImportRepository orderImportRepository;
 
     @Autowired
     private OrderAggregationService orderAggregationService;
 
+    @Autowired
+    private StuckOrderAnalyticsRepository stuckOrderAnalyticsRepository;
+
     @Transactional(transactionManager = "ioTransactionManager")
     public List<OrderImportResult> getRateQueryResults() {
         logger.debug("Executing rate query...");
@@ -75,5 +89,133 @@ public class OrderImportService {
             throw e;
         }
     }
-}
 
+    @Transactional(transactionManager = "ioTransactionManager", readOnly = true)
+    public EnrichedOrderPage getEnrichedRateQueryPage(String cursor, int pageSize) {
+        return enrichPage(false, cursor, pageSize);
+    }
+
+    @Transactional(transactionManager = "ioTransactionManager", readOnly = true)
+    public EnrichedOrderPage getEnrichedRateHoldQueryPage(String cursor, int pageSize) {
+        return enrichPage(true, cursor, pageSize);
+    }
+
+    /**
+     * Error x warehouse counts, import-status distribution and queue ages over the full stuck
+     * population, aggregated on the IO server. Keeps the totalOrders / errors / warehouses /
+     * ordersWithErrors shape of the old Java-side summary.
+     */
+    @Transactional(transactionManager = "ioTransactionManager", readOnly = true)
+    public Map<String, Object> getStuckOrderAnalytics(boolean hold) {
+        long startTime = System.currentTimeMillis();
+        List<Map<String, Object>> statusRows = stuckOrderAnalyticsRepository.getStatusAgeCounts(hold);
+        List<Map<String, Object>> errorRows = stuckOrderAnalyticsRepository.getErrorWarehouseCounts(hold);
+
+        Map<String, Object> analytics = new LinkedHashMap<>();
+        Map<String, Object> overall = null;
+        List<Map<String, Object>> importStatuses = new ArrayList<>();
+        Map<String, Map<String, Object>> warehouseStats = new TreeMap<>();
+        List<Map<String, Object>> warehouseStatus = new ArrayList<>();
+
+        for (Map<String, Object> row : statusRows) {
+            String whId = (String) row.get("whId");
+            String status = (String) row.get("importStatus");
+            if (whId == null && status == null) {
+                overall = row;
+            } else if (whId == null) {
+                importStatuses.add(row);
+            } else if (status == null) {
+                warehouseStats.put(whId, row);
+            } else {
+                warehouseStatus.add(row);
+            }
+        }
+        importStatuses.sort((a, b) -> Long.compare((long) b.get("orderCount"), (long) a.get("orderCount")));
+
+        // errorText -> (whId -> count), sorted by total count descending
+        Map<String, Map<String, Long>> errorsByTextAndWarehouse = new LinkedHashMap<>();
+        for (Map<String, Object> row : errorRows) {
+            errorsByTextAndWarehouse
+                    .computeIfAbsent((String) row.get("errorText"), k -> new TreeMap<>())
+                    .put((String) row.get("whId"), (Long) row.get("orderCount"));
+        }
+        List<Map<String, Object>> errors = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Long>> entry : errorsByTextAndWarehouse.entrySet()) {
+            Map<String, Object> errorEntry = new LinkedHashMap<>();
+            errorEntry.put("errorText", entry.getKey());
+            errorEntry.put("totalCount", entry.getValue().values().stream().mapToLong(Long::longValue).sum());
+            errorEntry.put("warehouseBreakdown", entry.getValue());
+            errors.add(errorEntry);
+        }
+        errors.sort((a, b) -> Long.compare((long) b.get("totalCount"), (long) a.get("totalCount")));
+
+        analytics.put("totalOrders", overall != null ? overall.get("orderCount") : 0L);
+        analytics.put("ordersWithErrors", overall != null ? overall.get("ordersWithErrors") : 0L);
+        analytics.put("errors", errors);
+        analytics.put("warehouses", warehouseStats.keySet());
+        analytics.put("importStatuses", importStatuses);
+        analytics.put("ages", overall);
+        analytics.put("warehouseStats", warehouseStats.values());
+        analytics.put("warehouseStatusBreakdown", warehouseStatus);
+        analytics.put("queryTimeMs", System.currentTimeMillis() - startTime);
+
+        logger.debug("{} analytics: {} orders, {} distinct errors in {}ms", hold ? "Rate hold" : "Rate",
+                analytics.get("totalOrders"), errors.size(), analytics.get("queryTimeMs"));
+        return analytics;
+    }
+
+    /**
+     * Walk every keyset page and return the whole stuck population (no TOP 1000 cap).
+     */
+    public List<EnrichedOrderResult> getAllEnrichedResults(boolean hold, int pageSize) {
+        List<EnrichedOrderResult> all = new ArrayList<>();
+        String cursor = null;
+        EnrichedOrderPage page;
+        do {
+            page = enrichPage(hold, cursor, pageSize);
+            all.addAll(page.getOrders());
+            cursor = page.getNextCursor();
+        } while (page.isHasMore());
+        return all;
+    }
+
+    private EnrichedOrderPage enrichPage(boolean hold, String cursor, int pageSize) {
+        int size = Math.max(1, Math.min(MAX_PAGE_SIZE, pageSize));
+        String[] after = decodeCursor(cursor);
+        try {
+            OrderImportRepository.RawPage raw = hold
+                    ? orderImportRepository.getRateHoldQueryPage(after[0], after[1], size)
+                    : orderImportRepository.getRateQueryPage(after[0], after[1], size);
+            List<EnrichedOrderResult> enriched = orderAggregationService.aggregateAndEnrich(raw.getRows());
+            boolean hasMore = raw.getOrderCount() >= size;
+            String nextCursor = hasMore ? encodeCursor(raw.getLastWhId(), raw.getLastOrderNumber()) : null;
+            logger.debug("Enriched {} page: {} orders scanned -> {} enriched results, hasMore={}",
+                    hold ? "rate hold" : "rate", raw.getOrderCount(), enriched.size(), hasMore);
+            return new EnrichedOrderPage(enriched, nextCursor, size, hasMore);
+        } catch (Exception e) {
+            logger.error("Error in enrichPage (hold={})", hold, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Cursor is an opaque URL-safe token for the last (wh_id, order_number) returned.
+     */
+    private static String encodeCursor(String whId, String orderNumber) {
+        String raw = (whId != null ? whId : "") + "\n" + (orderNumber != null ? orderNumber : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return new String[] { "", "" };
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", 2);
+            return new String[] { parts[0], parts.length > 1 ? parts[1] : "" };
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -6,17 +6,26 @@ import com.roadrats.demo.repository.cls.RoutingGuideRepository;
 import com.roadrats.demo.repository.io.SaturdayDeliveryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.sql.DataSource;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 /**
  * Orchestrates Saturday delivery checking:
  * 1. Query IO database for 2nd rate orders with ShipperOrigins
- * 2. For each distinct origin, query CLS routing guide for Saturday delivery flags
+ * 2. For each distinct origin, look up Saturday delivery flags in the in-memory eligibility
+ *    cache (or, with the cache disabled, query the CLS routing guide), concurrently, capped below
+ *    the CLS pool size, each query with its own statement timeout
  * 3. Aggregate and return results grouped by service
  *
  * Mirrors the Python process_saturday_deliveries() flow in CLS_Debugger.py
@@ -33,6 +42,44 @@ public class SaturdayDeliveryService {
     @Autowired
     private RoutingGuideRepository routingGuideRepository;
 
+    @Autowired
+    private SaturdayEligibilityCache saturdayEligibilityCache;
+
+    @Autowired
+    @Qualifier("clsDataSource")
+    private DataSource clsDataSource;
+
+    // 0 = derive from the CLS pool size
+    @Value("${roadrats.cls.saturday.max-concurrency:0}")
+    private int maxConcurrency;
+
+    @Value("${roadrats.cls.saturday.origin-timeout-ms:30000}")
+    private int originTimeoutMs;
+
+    @Value("${roadrats.cls.saturday.overall-timeout-ms:120000}")
+    private long overallTimeoutMs;
+
+    // CLS connections left free for other requests while a Saturday check is running
+    private static final int RESERVED_CLS_CONNECTIONS = 2;
+
+    private ExecutorService originExecutor;
+
+    @PostConstruct
+    void initExecutor() {
+        int poolSize = clsDataSource instanceof HikariDataSource
+                ? ((HikariDataSource) clsDataSource).getMaximumPoolSize()
+                : 10;
+        int cap = Math.max(1, poolSize - RESERVED_CLS_CONNECTIONS);
+        int threads = maxConcurrency > 0 ? Math.min(maxConcurrency, cap) : cap;
+        originExecutor = Executors.newFixedThreadPool(threads);
+        logger.info("Saturday delivery checks will query up to {} origins at once (CLS pool size {})", threads, poolSize);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        originExecutor.shutdownNow();
+    }
+
     @Transactional(transactionManager = "ioTransactionManager", readOnly = true)
     public List<RateOrderResult> getRateOrderResults() {
         return saturdayDeliveryRepository.getRateOrderResults();
@@ -82,20 +129,9 @@ public class SaturdayDeliveryService {
             uniqueZipsByOrigin.put(entry.getKey(), uniqueZips);
         }
 
-        // Step 3: Query routing guide for each origin
-        List<SaturdayDeliveryResult> allSaturdayResults = new ArrayList<>();
-        for (Map.Entry<String, List<String>> entry : uniqueZipsByOrigin.entrySet()) {
-            String origin = entry.getKey();
-            List<String> zips = entry.getValue();
-            logger.debug("Querying routing guide for origin={} with {} zips", origin, zips.size());
-
-            try {
-                List<SaturdayDeliveryResult> originResults = routingGuideRepository.getSaturdayDeliveryByOrigin(origin, zips);
-                allSaturdayResults.addAll(originResults);
-            } catch (Exception e) {
-                logger.error("Error querying routing guide for origin={}: {}", origin, e.getMessage());
-            }
-        }
+        // Step 3: Query routing guide for each origin (bounded concurrency, partial results on failure)
+        Map<String, String> failedOrigins = new TreeMap<>();
+        List<SaturdayDeliveryResult> allSaturdayResults = queryOrigins(uniqueZipsByOrigin, failedOrigins);
 
         // Step 4: Group by service and aggregate postal codes
         Map<String, List<String>> groupedByService = allSaturdayResults.stream()
@@ -112,13 +148,60 @@ public class SaturdayDeliveryService {
 
         response.put("totalRateOrders", rateResults.size());
         response.put("originsChecked", uniqueZipsByOrigin.size());
+        response.put("originsFailed", failedOrigins);
+        response.put("source", saturdayEligibilityCache.isEnabled() ? "cache" : "routing-guide");
+        response.put("partial", !failedOrigins.isEmpty());
         response.put("saturdayDeliveries", allSaturdayResults);
         response.put("totalSaturdayFlags", allSaturdayResults.size());
         response.put("groupedByService", groupedByService);
 
-        logger.info("Saturday delivery check complete: {} results across {} services",
-                allSaturdayResults.size(), groupedByService.size());
+        logger.info("Saturday delivery check complete: {} results across {} services ({} of {} origins failed)",
+                allSaturdayResults.size(), groupedByService.size(), failedOrigins.size(), uniqueZipsByOrigin.size());
 
         return response;
     }
+
+    /**
+     * Fan the per-origin routing-guide queries out over the origin executor. Each query carries
+     * its own statement timeout; anything not back by the overall deadline is cancelled. Origins
+     * that fail or time out are recorded in failedOrigins and the rest are still returned.
+     */
+    private List<SaturdayDeliveryResult> queryOrigins(Map<String, List<String>> zipsByOrigin,
+                                                      Map<String, String> failedOrigins) {
+        Map<String, Future<List<SaturdayDeliveryResult>>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : zipsByOrigin.entrySet()) {
+            String origin = entry.getKey();
+            List<String> zips = entry.getValue();
+            futures.put(origin, originExecutor.submit(() -> {
+                if (saturdayEligibilityCache.isEnabled()) {
+                    return saturdayEligibilityCache.lookup(origin, zips);
+                }
+                logger.debug("Querying routing guide for origin={} with {} zips", origin, zips.size());
+                return routingGuideRepository.getSaturdayDeliveryByOrigin(origin, zips, originTimeoutMs);
+            }));
+        }
+
+        List<SaturdayDeliveryResult> results = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + overallTimeoutMs;
+        for (Map.Entry<String, Future<List<SaturdayDeliveryResult>>> entry : futures.entrySet()) {
+            String origin = entry.getKey();
+            try {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                results.addAll(entry.getValue().get(remaining, TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                logger.warn("Routing guide query for origin={} did not finish within {}ms", origin, overallTimeoutMs);
+                failedOrigins.put(origin, "Timed out");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                entry.getValue().cancel(true);
+                failedOrigins.put(origin, "Interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.error("Error querying routing guide for origin={}: {}", origin, cause.getMessage());
+                failedOrigins.put(origin, cause.getMessage());
+            }
+        }
+        return results;
+    }
 }
@@ -0,0 +1,196 @@
+package com.roadrats.demo.service;
+
+import com.roadrats.demo.model.cls.SaturdayDeliveryResult;
+import com.roadrats.demo.repository.cls.RoutingGuideRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory Saturday delivery eligibility per origin, so a check is a bit test instead of a
+ * routing-guide query. For each origin and (service, transit days) there is a bitset over
+ * the 5-digit zip space (100k bits, ~12 KB) marking SATURDAYDELIVERY_FLAG = 1. Postal codes
+ * that aren't exactly 5 digits (Canadian, ZIP+4) are kept in a small exact-match map, so
+ * answers match the old POSTALCODE IN (...) lookup.
+ *
+ * An origin is loaded the first time it is asked for. A background job re-fingerprints each
+ * loaded routing guide and swaps in a fresh copy when it changed.
+ */
+@Service
+public class SaturdayEligibilityCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaturdayEligibilityCache.class);
+
+    private static final int ZIP_SPACE = 100_000;
+
+    @Autowired
+    private RoutingGuideRepository routingGuideRepository;
+
+    @Value("${roadrats.cls.saturday.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${roadrats.cls.saturday.cache.load-timeout-ms:120000}")
+    private int loadTimeoutMs;
+
+    private final Map<String, OriginEligibility> byOrigin = new ConcurrentHashMap<>();
+    private final Map<String, Object> loadLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Immutable snapshot of one origin's routing guide. Bitsets are keyed service -> transitDays.
+     */
+    private static final class OriginEligibility {
+        final String fingerprint;
+        final LocalDateTime loadedAt;
+        final Map<String, Map<String, BitSet>> bits = new TreeMap<>();
+        final Map<String, List<SaturdayDeliveryResult>> irregular = new HashMap<>();
+        int rows;
+
+        OriginEligibility(String fingerprint) {
+            this.fingerprint = fingerprint;
+            this.loadedAt = LocalDateTime.now();
+        }
+
+        void add(SaturdayDeliveryResult r) {
+            if (r.getPostalCode() == null || r.getService() == null) {
+                return;
+            }
+            rows++;
+            String postalCode = r.getPostalCode().trim();
+            int zip = zipIndex(postalCode);
+            if (zip < 0) {
+                irregular.computeIfAbsent(postalCode.toUpperCase(), k -> new ArrayList<>()).add(r);
+                return;
+            }
+            bits.computeIfAbsent(r.getService(), k -> new TreeMap<>())
+                    .computeIfAbsent(r.getTransitDays() != null ? r.getTransitDays() : "", k -> new BitSet(ZIP_SPACE))
+                    .set(zip);
+        }
+
+        void lookup(String postalCode, List<SaturdayDeliveryResult> out) {
+            int zip = zipIndex(postalCode);
+            if (zip < 0) {
+                out.addAll(irregular.getOrDefault(postalCode.toUpperCase(), Collections.emptyList()));
+                return;
+            }
+            for (Map.Entry<String, Map<String, BitSet>> service : bits.entrySet()) {
+                for (Map.Entry<String, BitSet> transit : service.getValue().entrySet()) {
+                    if (transit.getValue().get(zip)) {
+                        out.add(new SaturdayDeliveryResult(postalCode, service.getKey(),
+                                transit.getKey().isEmpty() ? null : transit.getKey()));
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Saturday-flagged (postalCode, service, transitDays) rows for the given zips, loading the
+     * origin's routing guide on first use.
+     */
+    public List<SaturdayDeliveryResult> lookup(String origin, List<String> postalCodes) {
+        OriginEligibility eligibility = byOrigin.get(origin);
+        if (eligibility == null) {
+            eligibility = loadIfAbsent(origin);
+        }
+        List<SaturdayDeliveryResult> results = new ArrayList<>();
+        for (String postalCode : postalCodes) {
+            if (postalCode != null) {
+                eligibility.lookup(postalCode.trim(), results);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Re-fingerprint every cached origin and reload the ones whose routing guide changed.
+     */
+    @Scheduled(initialDelayString = "${roadrats.cls.saturday.cache.refresh-ms:900000}",
+               fixedDelayString = "${roadrats.cls.saturday.cache.refresh-ms:900000}")
+    public void refresh() {
+        if (!enabled || byOrigin.isEmpty()) {
+            return;
+        }
+        int reloaded = 0;
+        for (Map.Entry<String, OriginEligibility> entry : byOrigin.entrySet()) {
+            String origin = entry.getKey();
+            try {
+                String fingerprint = routingGuideRepository.getSaturdayFlagsFingerprint(origin);
+                if (!Objects.equals(fingerprint, entry.getValue().fingerprint)) {
+                    byOrigin.put(origin, load(origin, fingerprint));
+                    reloaded++;
+                }
+            } catch (Exception e) {
+                logger.warn("Saturday eligibility refresh failed for origin={}, keeping cached copy: {}", origin, e.getMessage());
+            }
+        }
+        logger.debug("Saturday eligibility refresh: {} of {} origins reloaded", reloaded, byOrigin.size());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        Map<String, Object> origins = new TreeMap<>();
+        for (Map.Entry<String, OriginEligibility> entry : byOrigin.entrySet()) {
+            OriginEligibility e = entry.getValue();
+            Map<String, Object> originStats = new LinkedHashMap<>();
+            originStats.put("rows", e.rows);
+            originStats.put("services", e.bits.keySet());
+            originStats.put("bitsets", e.bits.values().stream().mapToInt(Map::size).sum());
+            originStats.put("irregularPostalCodes", e.irregular.size());
+            originStats.put("loadedAt", e.loadedAt);
+            origins.put(entry.getKey(), originStats);
+        }
+        stats.put("origins", origins);
+        return stats;
+    }
+
+    private OriginEligibility loadIfAbsent(String origin) {
+        synchronized (loadLocks.computeIfAbsent(origin, k -> new Object())) {
+            OriginEligibility existing = byOrigin.get(origin);
+            if (existing != null) {
+                return existing;
+            }
+            OriginEligibility loaded = load(origin, routingGuideRepository.getSaturdayFlagsFingerprint(origin));
+            byOrigin.put(origin, loaded);
+            return loaded;
+        }
+    }
+
+    private OriginEligibility load(String origin, String fingerprint) {
+        long startTime = System.currentTimeMillis();
+        OriginEligibility eligibility = new OriginEligibility(fingerprint);
+        routingGuideRepository.forEachSaturdayFlag(origin, loadTimeoutMs, eligibility::add);
+        logger.info("Loaded Saturday eligibility for origin={}: {} flagged rows, {} services in {}ms",
+                origin, eligibility.rows, eligibility.bits.size(), System.currentTimeMillis() - startTime);
+        return eligibility;
+    }
+
+    /**
+     * 0..99999 for an exactly-5-digit postal code, otherwise -1.
+     */
+    private static int zipIndex(String postalCode) {
+        if (postalCode.length() != 5) {
+            return -1;
+        }
+        int zip = 0;
+        for (int i = 0; i < 5; i++) {
+            char c = postalCode.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            zip = zip * 10 + (c - '0');
+        }
+        return zip;
+    }
+}
@@ -0,0 +1,290 @@
+package com.roadrats.demo.service;
+
+import com.roadrats.demo.model.io.EnrichedOrderResult;
+import com.roadrats.demo.model.io.QueueStatusResult;
+import com.roadrats.demo.model.io.StuckOrderChangeEvent;
+import com.roadrats.demo.repository.io.QueueStatusRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls the rate, rate-hold and CLS queue-status snapshots in the background and diffs each one
+ * against the previous poll, keyed by (whId, orderNumber, queue). Orders entering or leaving a
+ * stuck set, or whose error text changed, are kept in a bounded recent-events buffer and pushed
+ * to Server-Sent Event subscribers.
+ *
+ * Polling only runs while someone is watching: an SSE subscriber is connected, or the poll
+ * endpoint was read within idle-after-ms. When nobody is, the baselines are dropped and the
+ * next poll after someone returns only re-establishes them.
+ */
+@Service
+public class StuckOrderChangeFeedService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StuckOrderChangeFeedService.class);
+
+    public static final String ENTERED = "ENTERED";
+    public static final String LEFT = "LEFT";
+    public static final String ERROR_CHANGED = "ERROR_CHANGED";
+
+    @Autowired
+    private OrderImportService orderImportService;
+
+    @Autowired
+    private QueueStatusRepository queueStatusRepository;
+
+    @Value("${roadrats.cls.change-feed.enabled:true}")
+    private boolean enabled;
+
+    @Value("${roadrats.cls.change-feed.buffer-size:500}")
+    private int bufferSize;
+
+    @Value("${roadrats.cls.change-feed.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${roadrats.cls.change-feed.idle-after-ms:300000}")
+    private long idleAfterMs;
+
+    // queue -> ("whId|orderNumber" -> errorText) as of the previous poll
+    private final Map<String, Map<String, String>> lastSnapshots = new HashMap<>();
+    private final Deque<StuckOrderChangeEvent> recentEvents = new ArrayDeque<>();
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile LocalDateTime lastPollAt;
+    private volatile long lastReadMillis;
+    // Highest event id already pushed to subscribers; guarded by this
+    private long broadcastThroughId;
+
+    @Scheduled(initialDelayString = "${roadrats.cls.change-feed.initial-delay-ms:30000}",
+               fixedDelayString = "${roadrats.cls.change-feed.poll-interval-ms:60000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        if (!isWatched()) {
+            // Each poll re-enriches every stuck order; don't do that for nobody
+            resetBaselines();
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        List<StuckOrderChangeEvent> events = new ArrayList<>();
+
+        try {
+            events.addAll(observe("rate-query", enrichedSnapshot(orderImportService.getAllEnrichedResults(false, OrderImportService.MAX_PAGE_SIZE))));
+        } catch (Exception e) {
+            logger.warn("Change feed: rate query snapshot failed, keeping previous baseline: {}", e.getMessage());
+        }
+
+        try {
+            events.addAll(observe("rate-hold-query", enrichedSnapshot(orderImportService.getAllEnrichedResults(true, OrderImportService.MAX_PAGE_SIZE))));
+        } catch (Exception e) {
+            logger.warn("Change feed: rate hold query snapshot failed, keeping previous baseline: {}", e.getMessage());
+        }
+
+        try {
+            Map<String, String> failures = new LinkedHashMap<>();
+            Map<String, List<QueueStatusResult>> queues = queueStatusRepository.getAllQueueStatuses(failures);
+            for (Map.Entry<String, List<QueueStatusResult>> entry : queues.entrySet()) {
+                if (failures.containsKey(entry.getKey())) {
+                    logger.warn("Change feed: queue '{}' snapshot failed, keeping previous baseline: {}",
+                            entry.getKey(), failures.get(entry.getKey()));
+                    continue;
+                }
+                events.addAll(observe(entry.getKey(), queueSnapshot(entry.getValue())));
+            }
+        } catch (Exception e) {
+            logger.warn("Change feed: queue status snapshot failed, keeping previous baseline: {}", e.getMessage());
+        }
+
+        lastPollAt = LocalDateTime.now();
+        broadcast(events);
+        logger.debug("Change feed poll produced {} events in {}ms", events.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Diff a fresh snapshot for one queue against the previous one and record the resulting events.
+     * The first snapshot seen for a queue only establishes the baseline.
+     */
+    synchronized List<StuckOrderChangeEvent> observe(String queue, Map<String, String> current) {
+        Map<String, String> previous = lastSnapshots.put(queue, current);
+        if (previous == null) {
+            return Collections.emptyList();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<StuckOrderChangeEvent> events = new ArrayList<>();
+
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            String key = entry.getKey();
+            if (!previous.containsKey(key)) {
+                events.add(newEvent(ENTERED, queue, key, entry.getValue(), null, now));
+            } else if (!Objects.equals(previous.get(key), entry.getValue())) {
+                events.add(newEvent(ERROR_CHANGED, queue, key, entry.getValue(), previous.get(key), now));
+            }
+        }
+        for (Map.Entry<String, String> entry : previous.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                events.add(newEvent(LEFT, queue, entry.getKey(), null, entry.getValue(), now));
+            }
+        }
+
+        for (StuckOrderChangeEvent event : events) {
+            event.setId(sequence.incrementAndGet());
+            recentEvents.addLast(event);
+        }
+        while (recentEvents.size() > Math.max(1, bufferSize)) {
+            recentEvents.removeFirst();
+        }
+        return events;
+    }
+
+    /**
+     * Register a new SSE subscriber, replaying buffered events newer than lastEventId (if given).
+     * Replay and registration happen under the lock broadcast copies the subscriber list under:
+     * the replay covers everything already broadcast, and anything recorded but not yet broadcast
+     * reaches the emitter through broadcast.
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+
+        int replayed = 0;
+        synchronized (this) {
+            if (lastEventId != null) {
+                try {
+                    for (StuckOrderChangeEvent event : recentEvents) {
+                        if (event.getId() > lastEventId && event.getId() <= broadcastThroughId) {
+                            send(emitter, event);
+                            replayed++;
+                        }
+                    }
+                } catch (IOException e) {
+                    emitter.completeWithError(e);
+                    return emitter;
+                }
+            }
+            emitters.add(emitter);
+        }
+        logger.info("Change feed subscriber added ({} active, {} replayed)", emitters.size(), replayed);
+        return emitter;
+    }
+
+    /**
+     * Buffered events with id greater than sinceId, oldest first. Counts as someone watching
+     * the feed, so polling resumes (or keeps going) for idle-after-ms.
+     */
+    public synchronized List<StuckOrderChangeEvent> getRecentEvents(long sinceId) {
+        lastReadMillis = System.currentTimeMillis();
+        List<StuckOrderChangeEvent> events = new ArrayList<>();
+        for (StuckOrderChangeEvent event : recentEvents) {
+            if (event.getId() > sinceId) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    public long getLatestEventId() {
+        return sequence.get();
+    }
+
+    public LocalDateTime getLastPollAt() {
+        return lastPollAt;
+    }
+
+    public int getSubscriberCount() {
+        return emitters.size();
+    }
+
+    /**
+     * True while an SSE subscriber is connected or the feed was read within idle-after-ms.
+     */
+    public boolean isWatched() {
+        return !emitters.isEmpty() || System.currentTimeMillis() - lastReadMillis < idleAfterMs;
+    }
+
+    private synchronized void resetBaselines() {
+        if (!lastSnapshots.isEmpty()) {
+            lastSnapshots.clear();
+            logger.info("Change feed idle (no subscribers or readers); pausing polls");
+        }
+    }
+
+    /**
+     * Push events to the current subscribers. Only the bookkeeping runs under the lock; the sends
+     * happen outside it, so a slow client can't hold up observe or getRecentEvents. A subscriber
+     * registered after the copy was made counts as having joined after these events.
+     */
+    private void broadcast(List<StuckOrderChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<SseEmitter> targets;
+        synchronized (this) {
+            broadcastThroughId = Math.max(broadcastThroughId, events.get(events.size() - 1).getId());
+            targets = new ArrayList<>(emitters);
+        }
+        for (SseEmitter emitter : targets) {
+            try {
+                for (StuckOrderChangeEvent event : events) {
+                    send(emitter, event);
+                }
+            } catch (Exception e) {
+                logger.debug("Dropping change feed subscriber: {}", e.getMessage());
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private void send(SseEmitter emitter, StuckOrderChangeEvent event) throws IOException {
+        emitter.send(SseEmitter.event()
+                .id(String.valueOf(event.getId()))
+                .name("stuck-change")
+                .data(event));
+    }
+
+    private Map<String, String> enrichedSnapshot(List<EnrichedOrderResult> results) {
+        Map<String, String> snapshot = new HashMap<>();
+        for (EnrichedOrderResult r : results) {
+            snapshot.put(key(r.getWhId(), r.getOrderNumber()), normalizeError(r.getErrorText()));
+        }
+        return snapshot;
+    }
+
+    private Map<String, String> queueSnapshot(List<QueueStatusResult> results) {
+        Map<String, String> snapshot = new HashMap<>();
+        for (QueueStatusResult r : results) {
+            snapshot.put(key(r.getWhId(), r.getOrderNumber()), normalizeError(r.getErrorText()));
+        }
+        return snapshot;
+    }
+
+    private static StuckOrderChangeEvent newEvent(String changeType, String queue, String key,
+                                                  String errorText, String previousErrorText, LocalDateTime now) {
+        String[] parts = key.split("\\|", 2);
+        String whId = parts[0].isEmpty() ? null : parts[0];
+        String orderNumber = parts.length > 1 && !parts[1].isEmpty() ? parts[1] : null;
+        return new StuckOrderChangeEvent(changeType, queue, whId, orderNumber, errorText, previousErrorText, now);
+    }
+
+    private static String key(String whId, String orderNumber) {
+        return (whId != null ? whId : "") + "|" + (orderNumber != null ? orderNumber : "");
+    }
+
+    private static String normalizeError(String errorText) {
+        return errorText == null || errorText.isBlank() ? null : errorText.trim();
+    }
+}
@@ -10,7 +10,15 @@ import org.xml.sax.InputSource;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -156,6 +164,28 @@ public class XmlParsingService {
         }
     }
 
+    /**
+     * Write xml to out re-indented. Bodies that don't parse are written unchanged.
+     */
+    public void prettyPrint(String xml, Writer out) throws IOException {
+        if (xml == null || xml.isBlank()) {
+            return;
+        }
+        StringWriter formatted = new StringWriter(xml.length() + xml.length() / 4);
+        try {
+            Document doc = parseXml(xml);
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+            transformer.transform(new DOMSource(doc), new StreamResult(formatted));
+        } catch (Exception e) {
+            logger.debug("Could not pretty-print XML, returning it as-is: {}", e.getMessage());
+            out.write(xml);
+            return;
+        }
+        out.write(formatted.toString());
+    }
+
     private Document parseXml(String xml) throws Exception {
         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         // Disable external entities for security
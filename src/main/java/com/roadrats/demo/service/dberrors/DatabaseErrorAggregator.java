@@ -0,0 +1,309 @@
+package com.roadrats.demo.service.dberrors;
+
+import com.roadrats.demo.config.DatabaseErrorsConfig;
+import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Groups database errors by fingerprint (resource_name plus details/call_stack with numbers,
+ * GUIDs, hex and quoted literals stripped) and keeps per-fingerprint counts in fixed time
+ * buckets, split by server and machine. Fed incrementally by {@link DatabaseErrorCollector},
+ * so a top-N request is answered from counters rather than by re-reading raw rows.
+ */
+@Service
+public class DatabaseErrorAggregator implements DatabaseErrorCollector.Listener {
+
+    private static final int MAX_NORMALIZED_LENGTH = 2000;
+    private static final int MAX_MACHINES_PER_FINGERPRINT = 10;
+
+    private static final Pattern GUID = Pattern.compile("\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b");
+    private static final Pattern HEX = Pattern.compile("\\b0x[0-9a-fA-F]+\\b");
+    private static final Pattern QUOTED = Pattern.compile("'[^']*'");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final DatabaseErrorsConfig config;
+    private final long bucketMinutes;
+    private final Map<String, Fingerprint> fingerprints = new HashMap<>();
+
+    /**
+     * Counts for one time bucket of one fingerprint.
+     */
+    private static final class Bucket {
+        int count;
+        LocalDateTime firstUtc;
+        final Map<String, Integer> byServer = new HashMap<>();
+        final Map<String, Integer> byMachine = new HashMap<>();
+        // Earliest row in the bucket per server / machine, for a filtered firstSeenUtc
+        final Map<String, LocalDateTime> firstByServer = new HashMap<>();
+        final Map<String, LocalDateTime> firstByMachine = new HashMap<>();
+    }
+
+    /**
+     * One distinct error shape. Buckets are keyed by bucket index (minutes since epoch / width).
+     */
+    private static final class Fingerprint {
+        final String id;
+        final String resourceName;
+        final String normalizedDetails;
+        final String normalizedCallStack;
+        final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+        DatabaseErrorEntry latest;
+        // Latest row per server / machine, so a filtered top-N shows a sample from that server or machine
+        final Map<String, DatabaseErrorEntry> latestByServer = new HashMap<>();
+        final Map<String, DatabaseErrorEntry> latestByMachine = new HashMap<>();
+
+        Fingerprint(String id, String resourceName, String normalizedDetails, String normalizedCallStack) {
+            this.id = id;
+            this.resourceName = resourceName;
+            this.normalizedDetails = normalizedDetails;
+            this.normalizedCallStack = normalizedCallStack;
+        }
+    }
+
+    public DatabaseErrorAggregator(DatabaseErrorsConfig config, DatabaseErrorCollector collector) {
+        this.config = config;
+        this.bucketMinutes = Math.max(1, config.getAggregationBucketMinutes());
+        collector.addListener(this);
+    }
+
+    @Override
+    public synchronized void onAppended(String server, List<DatabaseErrorEntry> rows) {
+        for (DatabaseErrorEntry entry : rows) {
+            if (entry.getLoggedOnUtc() == null) {
+                continue;
+            }
+            String details = normalize(entry.getDetails());
+            String callStack = normalize(entry.getCallStack());
+            String resource = resourceOf(entry);
+            String id = fingerprintId(resource, details, callStack);
+
+            Fingerprint fp = fingerprints.computeIfAbsent(id, k -> new Fingerprint(k, resource, details, callStack));
+            Bucket bucket = fp.buckets.computeIfAbsent(bucketIndex(entry.getLoggedOnUtc()), k -> new Bucket());
+            String machine = entry.getMachineId() != null ? entry.getMachineId() : "";
+            bucket.count++;
+            bucket.byServer.merge(server, 1, Integer::sum);
+            bucket.byMachine.merge(machine, 1, Integer::sum);
+            bucket.firstUtc = earlier(bucket.firstUtc, entry.getLoggedOnUtc());
+            bucket.firstByServer.merge(server, entry.getLoggedOnUtc(), DatabaseErrorAggregator::earlier);
+            bucket.firstByMachine.merge(machine, entry.getLoggedOnUtc(), DatabaseErrorAggregator::earlier);
+
+            fp.latest = newer(fp.latest, entry);
+            fp.latestByServer.merge(server, entry, DatabaseErrorAggregator::newer);
+            fp.latestByMachine.merge(machine, entry, DatabaseErrorAggregator::newer);
+        }
+        evict();
+    }
+
+    /**
+     * Top fingerprints by count over the last days, optionally restricted to one server and/or
+     * machine. Each carries a sparkline of per-bucket counts (oldest first) across the window;
+     * firstSeenUtc and lastSeenUtc are the first and latest matching rows within it.
+     */
+    public synchronized Map<String, Object> getTop(int days, int limit, String server, String machine) {
+        int clampedDays = Math.max(1, Math.min(DatabaseErrorCollector.WINDOW_DAYS, days));
+        long lastBucket = bucketIndex(nowUtc());
+        long firstBucket = bucketIndex(nowUtc().minusDays(clampedDays));
+        int width = (int) (lastBucket - firstBucket + 1);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        long totalErrors = 0;
+        for (Fingerprint fp : fingerprints.values()) {
+            int[] sparkline = new int[width];
+            Map<String, Integer> servers = new TreeMap<>();
+            Map<String, Integer> machines = new HashMap<>();
+            long count = 0;
+            LocalDateTime firstSeen = null;
+            for (Map.Entry<Long, Bucket> b : fp.buckets.tailMap(firstBucket, true).entrySet()) {
+                Bucket bucket = b.getValue();
+                int n = countFor(bucket, server, machine);
+                if (n == 0) {
+                    continue;
+                }
+                sparkline[(int) Math.min(width - 1, b.getKey() - firstBucket)] += n;
+                count += n;
+                if (firstSeen == null) {
+                    firstSeen = firstFor(bucket, server, machine);
+                }
+                if (machine == null) {
+                    bucket.byServer.forEach((s, c) -> { if (server == null || server.equals(s)) servers.merge(s, c, Integer::sum); });
+                }
+                if (server == null) {
+                    bucket.byMachine.forEach((m, c) -> { if (machine == null || machine.equals(m)) machines.merge(m, c, Integer::sum); });
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            totalErrors += count;
+
+            DatabaseErrorEntry sample = sampleFor(fp, server, machine);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("fingerprint", fp.id);
+            row.put("resourceName", fp.resourceName);
+            row.put("count", count);
+            row.put("details", fp.normalizedDetails);
+            row.put("callStack", fp.normalizedCallStack);
+            row.put("sampleDetails", sample.getDetails());
+            row.put("firstSeenUtc", firstSeen);
+            row.put("lastSeenUtc", sample.getLoggedOnUtc());
+            row.put("servers", servers);
+            row.put("topMachines", topN(machines, MAX_MACHINES_PER_FINGERPRINT));
+            row.put("sparkline", sparkline);
+            rows.add(row);
+        }
+
+        int distinct = rows.size();
+        rows.sort(Comparator.comparingLong((Map<String, Object> r) -> (Long) r.get("count")).reversed());
+        if (limit > 0 && rows.size() > limit) {
+            rows = new ArrayList<>(rows.subList(0, limit));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        // Counts only cover rows the collector has seen; nothing is aggregated when it's off
+        result.put("collectorEnabled", config.isCollectorEnabled());
+        result.put("days", clampedDays);
+        result.put("bucketMinutes", bucketMinutes);
+        result.put("sparklineStartUtc", bucketStart(firstBucket));
+        result.put("totalErrors", totalErrors);
+        result.put("distinctFingerprints", distinct);
+        result.put("fingerprints", rows);
+        return result;
+    }
+
+    /**
+     * Fingerprint id of a single row (same id the aggregation groups it under).
+     */
+    static String fingerprint(DatabaseErrorEntry entry) {
+        return fingerprintId(resourceOf(entry), normalize(entry.getDetails()), normalize(entry.getCallStack()));
+    }
+
+    /**
+     * Strip the parts of an error text that vary between occurrences of the same error.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String s = GUID.matcher(text).replaceAll("<guid>");
+        s = HEX.matcher(s).replaceAll("<hex>");
+        s = QUOTED.matcher(s).replaceAll("'?'");
+        s = NUMBER.matcher(s).replaceAll("#");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+        return s.length() > MAX_NORMALIZED_LENGTH ? s.substring(0, MAX_NORMALIZED_LENGTH) : s;
+    }
+
+    private void evict() {
+        long cutoff = bucketIndex(nowUtc().minusDays(DatabaseErrorCollector.WINDOW_DAYS));
+        Iterator<Fingerprint> it = fingerprints.values().iterator();
+        while (it.hasNext()) {
+            Fingerprint fp = it.next();
+            SortedMap<Long, Bucket> expired = fp.buckets.headMap(cutoff);
+            if (expired.isEmpty()) {
+                continue;
+            }
+            expired.clear();
+            if (fp.buckets.isEmpty()) {
+                it.remove();
+                continue;
+            }
+            fp.latestByServer.values().removeIf(e -> bucketIndex(e.getLoggedOnUtc()) < cutoff);
+            fp.latestByMachine.values().removeIf(e -> bucketIndex(e.getLoggedOnUtc()) < cutoff);
+        }
+    }
+
+    /**
+     * Latest row of the fingerprint matching the server/machine filters. A fingerprint only
+     * reaches this with a non-zero filtered count, so a matching row was seen in the window.
+     */
+    private static DatabaseErrorEntry sampleFor(Fingerprint fp, String server, String machine) {
+        DatabaseErrorEntry sample = null;
+        if (machine != null) {
+            sample = fp.latestByMachine.get(machine);
+            if (sample != null && server != null && !server.equals(sample.getServerName())) {
+                sample = fp.latestByServer.get(server);
+            }
+        } else if (server != null) {
+            sample = fp.latestByServer.get(server);
+        }
+        return sample != null ? sample : fp.latest;
+    }
+
+    /**
+     * Earliest row of the bucket matching the filters, the same way {@link #countFor} counts them.
+     */
+    private static LocalDateTime firstFor(Bucket bucket, String server, String machine) {
+        if (machine != null) {
+            return bucket.firstByMachine.get(machine);
+        }
+        if (server != null) {
+            return bucket.firstByServer.get(server);
+        }
+        return bucket.firstUtc;
+    }
+
+    private static LocalDateTime earlier(LocalDateTime current, LocalDateTime candidate) {
+        return current == null || candidate.isBefore(current) ? candidate : current;
+    }
+
+    private static DatabaseErrorEntry newer(DatabaseErrorEntry current, DatabaseErrorEntry candidate) {
+        return current == null || !candidate.getLoggedOnUtc().isBefore(current.getLoggedOnUtc()) ? candidate : current;
+    }
+
+    private static int countFor(Bucket bucket, String server, String machine) {
+        if (server == null && machine == null) {
+            return bucket.count;
+        }
+        if (machine == null) {
+            return bucket.byServer.getOrDefault(server, 0);
+        }
+        if (server == null) {
+            return bucket.byMachine.getOrDefault(machine, 0);
+        }
+        // Buckets don't keep the server x machine cross product; a machine belongs to one server
+        return bucket.byServer.containsKey(server) ? bucket.byMachine.getOrDefault(machine, 0) : 0;
+    }
+
+    private static Map<String, Integer> topN(Map<String, Integer> counts, int n) {
+        Map<String, Integer> top = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(n)
+                .forEach(e -> top.put(e.getKey(), e.getValue()));
+        return top;
+    }
+
+    private long bucketIndex(LocalDateTime utc) {
+        return utc.toEpochSecond(ZoneOffset.UTC) / 60 / bucketMinutes;
+    }
+
+    private LocalDateTime bucketStart(long index) {
+        return LocalDateTime.ofEpochSecond(index * bucketMinutes * 60, 0, ZoneOffset.UTC);
+    }
+
+    private static String resourceOf(DatabaseErrorEntry entry) {
+        return entry.getResourceName() != null ? entry.getResourceName() : "";
+    }
+
+    private static String fingerprintId(String resource, String details, String callStack) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] hash = sha1.digest((resource + "\n" + details + "\n" + callStack).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static LocalDateTime nowUtc() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+}
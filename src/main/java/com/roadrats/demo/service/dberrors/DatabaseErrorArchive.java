@@ -0,0 +1,439 @@
+package com.roadrats.demo.service.dberrors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roadrats.demo.config.DatabaseErrorsConfig;
+import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local, append-only archive of collected database errors, so lookbacks past the collector's
+ * 7-day window never touch the SQL servers. Rows are partitioned by UTC day and server:
+ *
+ *   {dir}/{yyyy-MM-dd}/{server}.ndjson.gz   one gzip member of NDJSON rows per appended batch
+ *   {dir}/{yyyy-MM-dd}/{server}.idx         one line per batch: minUtc, maxUtc, rows, fingerprints,
+ *                                           and the member's start and end byte offsets
+ *
+ * Members are read one at a time from their indexed byte ranges, so a damaged member only loses
+ * its own batch. Bytes past the last indexed member (a crash mid-append) are truncated before
+ * the next append. Segments indexed before offsets were recorded are read as one stream.
+ *
+ * The .idx files are loaded at startup and kept in memory, so a query only opens segments
+ * whose day, time range and fingerprint set can match. Day directories past
+ * roadrats.dberrors.archive.retention-days are deleted.
+ */
+@Service
+public class DatabaseErrorArchive implements DatabaseErrorCollector.Listener {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseErrorArchive.class);
+
+    private static final String DATA_SUFFIX = ".ndjson.gz";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final DatabaseErrorsConfig config;
+    private final ObjectMapper objectMapper;
+    private final Path root;
+
+    // day -> server -> segment summary
+    private final Map<LocalDate, Map<String, Segment>> segments = new ConcurrentHashMap<>();
+    // Newest archived logged_on_utc per server, so a collector backfill after restart isn't re-archived
+    private final Map<String, LocalDateTime> archivedThrough = new ConcurrentHashMap<>();
+    private final Map<String, Object> writeLocks = new ConcurrentHashMap<>();
+
+    /**
+     * In-memory summary of one (day, server) segment, merged from its .idx lines.
+     */
+    private static final class Segment {
+        final Path data;
+        final Path index;
+        LocalDateTime minUtc;
+        LocalDateTime maxUtc;
+        long rows;
+        final Set<String> fingerprints = new HashSet<>();
+        // [start, end) byte range of each indexed gzip member; null once an index line without offsets is seen
+        List<long[]> members = new ArrayList<>();
+
+        Segment(Path data, Path index) {
+            this.data = data;
+            this.index = index;
+        }
+
+        synchronized void include(LocalDateTime min, LocalDateTime max, long count, Collection<String> fps,
+                                  long start, long end) {
+            minUtc = minUtc == null || min.isBefore(minUtc) ? min : minUtc;
+            maxUtc = maxUtc == null || max.isAfter(maxUtc) ? max : maxUtc;
+            rows += count;
+            fingerprints.addAll(fps);
+            if (members != null) {
+                if (start < 0) {
+                    members = null;
+                } else {
+                    members.add(new long[]{start, end});
+                }
+            }
+        }
+
+        // End of the last indexed member, or -1 when offsets aren't known
+        synchronized long indexedLength() {
+            if (members == null) return -1;
+            return members.isEmpty() ? 0 : members.get(members.size() - 1)[1];
+        }
+
+        synchronized List<long[]> membersSnapshot() {
+            return members == null ? null : new ArrayList<>(members);
+        }
+
+        synchronized boolean mayMatch(LocalDateTime fromUtc, LocalDateTime toUtc, String fingerprint) {
+            if (minUtc == null) return false;
+            if (fromUtc != null && maxUtc.isBefore(fromUtc)) return false;
+            if (toUtc != null && !minUtc.isBefore(toUtc)) return false;
+            return fingerprint == null || fingerprints.contains(fingerprint);
+        }
+    }
+
+    public DatabaseErrorArchive(DatabaseErrorsConfig config, DatabaseErrorCollector collector, ObjectMapper objectMapper) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.root = Paths.get(config.getArchiveDir());
+        if (config.isArchiveEnabled()) {
+            collector.addListener(this);
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isArchiveEnabled();
+    }
+
+    /**
+     * Load every segment index under the archive directory.
+     */
+    @PostConstruct
+    public void loadIndexes() {
+        if (!isEnabled() || !Files.isDirectory(root)) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        int loaded = 0;
+        try (Stream<Path> days = Files.list(root)) {
+            for (Path dayDir : (Iterable<Path>) days::iterator) {
+                LocalDate day = parseDay(dayDir.getFileName().toString());
+                if (day == null) {
+                    continue;
+                }
+                try (Stream<Path> files = Files.list(dayDir)) {
+                    for (Path indexFile : (Iterable<Path>) files::iterator) {
+                        String name = indexFile.getFileName().toString();
+                        if (name.endsWith(INDEX_SUFFIX)) {
+                            loadIndex(day, indexFile);
+                            loaded++;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to load database-errors archive indexes from {}: {}", root, e.getMessage());
+        }
+        logger.info("Loaded {} database-errors archive segment(s) from {} in {}ms", loaded, root, System.currentTimeMillis() - startTime);
+    }
+
+    @Override
+    public void onAppended(String server, List<DatabaseErrorEntry> rows) {
+        LocalDateTime through = archivedThrough.get(server);
+        Map<LocalDate, List<DatabaseErrorEntry>> byDay = new TreeMap<>();
+        for (DatabaseErrorEntry entry : rows) {
+            LocalDateTime utc = entry.getLoggedOnUtc();
+            if (utc != null && (through == null || utc.isAfter(through))) {
+                byDay.computeIfAbsent(utc.toLocalDate(), k -> new ArrayList<>()).add(entry);
+            }
+        }
+        if (byDay.isEmpty()) {
+            return;
+        }
+        synchronized (writeLocks.computeIfAbsent(server, k -> new Object())) {
+            for (Map.Entry<LocalDate, List<DatabaseErrorEntry>> day : byDay.entrySet()) {
+                try {
+                    appendSegment(server, day.getKey(), day.getValue());
+                } catch (IOException e) {
+                    // The rows stay in the collector's window; the archive just has a gap for this batch
+                    logger.warn("Failed to archive {} row(s) for {} on {}: {}", day.getValue().size(), server, day.getKey(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Archived rows in [fromUtc, toUtc), newest first, optionally for one server and/or fingerprint.
+     * Reads whole days newest to oldest and stops once limit rows (0 = no limit) are collected;
+     * rows tied with the last one on logged_on_utc are included too. Only the member list is
+     * taken under the segment lock, so reads never hold up the collector's appends.
+     */
+    public List<DatabaseErrorEntry> query(LocalDateTime fromUtc, LocalDateTime toUtc, String server,
+                                          String fingerprint, int limit) {
+        List<LocalDate> days = new ArrayList<>(segments.keySet());
+        days.sort(Comparator.reverseOrder());
+
+        List<DatabaseErrorEntry> results = new ArrayList<>();
+        for (LocalDate day : days) {
+            if (fromUtc != null && day.isBefore(fromUtc.toLocalDate())) break;
+            if (toUtc != null && day.isAfter(toUtc.toLocalDate())) continue;
+
+            List<DatabaseErrorEntry> dayRows = new ArrayList<>();
+            for (Map.Entry<String, Segment> entry : segments.getOrDefault(day, Map.of()).entrySet()) {
+                if (server != null && !server.equalsIgnoreCase(entry.getKey())) continue;
+                Segment segment = entry.getValue();
+                if (!segment.mayMatch(fromUtc, toUtc, fingerprint)) continue;
+                readSegment(segment.data, segment.membersSnapshot(), row -> {
+                    LocalDateTime utc = row.getLoggedOnUtc();
+                    if (utc == null) return;
+                    if (fromUtc != null && utc.isBefore(fromUtc)) return;
+                    if (toUtc != null && !utc.isBefore(toUtc)) return;
+                    if (fingerprint != null && !fingerprint.equals(DatabaseErrorAggregator.fingerprint(row))) return;
+                    dayRows.add(row);
+                });
+            }
+            dayRows.sort(Comparator.comparing(DatabaseErrorEntry::getLoggedOnUtc).reversed());
+            results.addAll(dayRows);
+            if (limit > 0 && results.size() >= limit) {
+                // Keep every row sharing the last timestamp, so "before that timestamp" is a clean next page
+                int end = limit;
+                LocalDateTime last = results.get(limit - 1).getLoggedOnUtc();
+                while (end < results.size() && results.get(end).getLoggedOnUtc().equals(last)) {
+                    end++;
+                }
+                return new ArrayList<>(results.subList(0, end));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Delete day partitions older than the retention period.
+     */
+    @Scheduled(initialDelay = 60000, fixedDelay = 3600000)
+    public void enforceRetention() {
+        if (!isEnabled()) {
+            return;
+        }
+        LocalDate oldestKept = LocalDate.now(ZoneOffset.UTC).minusDays(Math.max(1, config.getArchiveRetentionDays()));
+        for (LocalDate day : new ArrayList<>(segments.keySet())) {
+            if (!day.isBefore(oldestKept)) {
+                continue;
+            }
+            Map<String, Segment> removed = segments.remove(day);
+            try {
+                for (Segment segment : removed.values()) {
+                    synchronized (segment) {
+                        Files.deleteIfExists(segment.data);
+                        Files.deleteIfExists(segment.index);
+                    }
+                }
+                Files.deleteIfExists(root.resolve(day.toString()));
+                logger.info("Removed database-errors archive partition {} (retention {} days)", day, config.getArchiveRetentionDays());
+            } catch (IOException e) {
+                logger.warn("Failed to remove archive partition {}: {}", day, e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("dir", root.toAbsolutePath().toString());
+        stats.put("retentionDays", config.getArchiveRetentionDays());
+        long rows = 0;
+        long bytes = 0;
+        int segmentCount = 0;
+        for (Map<String, Segment> day : segments.values()) {
+            for (Segment segment : day.values()) {
+                segmentCount++;
+                synchronized (segment) {
+                    rows += segment.rows;
+                }
+                try {
+                    bytes += Files.size(segment.data);
+                } catch (IOException ignored) {
+                    // Removed by retention while we were looking
+                }
+            }
+        }
+        stats.put("segments", segmentCount);
+        stats.put("rows", rows);
+        stats.put("bytes", bytes);
+        stats.put("oldestDay", segments.keySet().stream().min(Comparator.naturalOrder()).orElse(null));
+        stats.put("archivedThroughUtc", new TreeMap<>(archivedThrough));
+        return stats;
+    }
+
+    // Caller holds the server's write lock; rows are all on one UTC day
+    private void appendSegment(String server, LocalDate day, List<DatabaseErrorEntry> rows) throws IOException {
+        Segment segment = segmentFor(day, server);
+        LocalDateTime min = null;
+        LocalDateTime max = null;
+        Set<String> fingerprints = new TreeSet<>();
+
+        synchronized (segment) {
+            Files.createDirectories(segment.data.getParent());
+            long size = Files.exists(segment.data) ? Files.size(segment.data) : 0;
+            long start = segment.indexedLength();
+            if (start < 0) {
+                start = size;
+            } else if (size > start) {
+                // Torn or unindexed member from an earlier failed append; its rows were never marked archived
+                logger.warn("Dropping {} unindexed byte(s) at the end of archive segment {}", size - start, segment.data);
+                truncate(segment.data, start);
+            }
+            // Each batch is its own gzip member, indexed by byte range
+            try (OutputStream file = Files.newOutputStream(segment.data, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                 Writer out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(file), StandardCharsets.UTF_8))) {
+                for (DatabaseErrorEntry entry : rows) {
+                    out.write(objectMapper.writeValueAsString(entry));
+                    out.write('\n');
+                    LocalDateTime utc = entry.getLoggedOnUtc();
+                    min = min == null || utc.isBefore(min) ? utc : min;
+                    max = max == null || utc.isAfter(max) ? utc : max;
+                    fingerprints.add(DatabaseErrorAggregator.fingerprint(entry));
+                }
+            } catch (IOException e) {
+                truncate(segment.data, start);
+                throw e;
+            }
+            long end = Files.size(segment.data);
+            String indexLine = min + "\t" + max + "\t" + rows.size() + "\t" + String.join(",", fingerprints)
+                    + "\t" + start + "\t" + end + "\n";
+            Files.writeString(segment.index, indexLine, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            segment.include(min, max, rows.size(), fingerprints, start, end);
+        }
+        archivedThrough.merge(server, max, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    private Segment segmentFor(LocalDate day, String server) {
+        return segments.computeIfAbsent(day, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(server, k -> {
+                    Path dayDir = root.resolve(day.toString());
+                    String base = fileSafe(server);
+                    return new Segment(dayDir.resolve(base + DATA_SUFFIX), dayDir.resolve(base + INDEX_SUFFIX));
+                });
+    }
+
+    private void loadIndex(LocalDate day, Path indexFile) throws IOException {
+        String name = indexFile.getFileName().toString();
+        String base = name.substring(0, name.length() - INDEX_SUFFIX.length());
+        Path data = indexFile.resolveSibling(base + DATA_SUFFIX);
+
+        // The real server name is in the rows; read it from the first one
+        String server = null;
+        try (BufferedReader reader = openSegment(data)) {
+            String first = reader.readLine();
+            if (first != null) {
+                server = objectMapper.readValue(first, DatabaseErrorEntry.class).getServerName();
+            }
+        } catch (IOException e) {
+            logger.warn("Skipping unreadable archive segment {}: {}", data, e.getMessage());
+        }
+        if (server == null) {
+            return;
+        }
+
+        Segment segment = new Segment(data, indexFile);
+        for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t", -1);
+            if (parts.length < 3) {
+                continue;
+            }
+            LocalDateTime min = LocalDateTime.parse(parts[0]);
+            LocalDateTime max = LocalDateTime.parse(parts[1]);
+            List<String> fps = parts.length >= 4 && !parts[3].isEmpty() ? Arrays.asList(parts[3].split(",")) : List.of();
+            // Lines written before member offsets were recorded have only four columns
+            long start = parts.length >= 6 ? Long.parseLong(parts[4]) : -1;
+            long end = parts.length >= 6 ? Long.parseLong(parts[5]) : -1;
+            segment.include(min, max, Long.parseLong(parts[2]), fps, start, end);
+            archivedThrough.merge(server, max, (a, b) -> a.isAfter(b) ? a : b);
+        }
+        segments.computeIfAbsent(day, k -> new ConcurrentHashMap<>()).put(server, segment);
+    }
+
+    /**
+     * Read the given members of a segment (null = the whole file as one stream, for segments
+     * indexed without offsets). A member that fails to inflate or parse is skipped on its own.
+     */
+    private void readSegment(Path data, List<long[]> members, Consumer<DatabaseErrorEntry> consumer) {
+        if (members == null) {
+            try (BufferedReader reader = openSegment(data)) {
+                readLines(reader, consumer);
+            } catch (EOFException e) {
+                // Truncated last member (e.g. crash mid-append); keep what was read
+                logger.warn("Archive segment {} ends early: {}", data, e.getMessage());
+            } catch (IOException e) {
+                logger.warn("Failed to read archive segment {}: {}", data, e.getMessage());
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+            for (long[] member : members) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) (member[1] - member[0]));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, member[0] + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(
+                        new ByteArrayInputStream(buffer.array(), 0, buffer.position())), StandardCharsets.UTF_8))) {
+                    readLines(reader, consumer);
+                } catch (IOException e) {
+                    logger.warn("Skipping damaged member at byte {} of archive segment {}: {}", member[0], data, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to read archive segment {}: {}", data, e.getMessage());
+        }
+    }
+
+    private void readLines(BufferedReader reader, Consumer<DatabaseErrorEntry> consumer) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            consumer.accept(objectMapper.readValue(line, DatabaseErrorEntry.class));
+        }
+    }
+
+    private static void truncate(Path data, long length) throws IOException {
+        if (Files.exists(data)) {
+            try (FileChannel channel = FileChannel.open(data, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+        }
+    }
+
+    private static BufferedReader openSegment(Path data) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(data)), StandardCharsets.UTF_8));
+    }
+
+    private static LocalDate parseDay(String name) {
+        try {
+            return LocalDate.parse(name);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String fileSafe(String server) {
+        return server.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,302 @@
+package com.roadrats.demo.service.dberrors;
+
+import com.roadrats.demo.config.DatabaseErrorsConfig;
+import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import com.roadrats.demo.repository.dberrors.DatabaseErrorRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * Background collector that keeps the last 7 days of database errors in memory per server.
+ * Each poll reads only rows newer than that server's logged_on_utc high-water mark and
+ * appends them to a time-ordered buffer; rows older than the window are evicted.
+ * Queries for any days value (1-7) are answered from the buffer once a server's initial
+ * backfill has completed.
+ */
+@Service
+public class DatabaseErrorCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseErrorCollector.class);
+
+    public static final int WINDOW_DAYS = 7;
+    private static final int BATCH_SIZE = 5000;
+    private static final long POLL_TIMEOUT_MINUTES = 5;
+
+    private final DatabaseErrorsConfig config;
+    private final DatabaseErrorRepository repository;
+    private final ServerCircuitBreaker breaker;
+    private final ExecutorService pollExecutor;
+    private final Map<String, ServerBuffer> buffers = new ConcurrentHashMap<>();
+    // Last poll submitted per server; a server is skipped while its previous poll is still running
+    private final Map<String, Future<?>> inFlight = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Notified with each batch of newly collected rows (oldest first), after it has been
+     * appended to the server's buffer. Every row is delivered exactly once.
+     */
+    public interface Listener {
+        void onAppended(String server, List<DatabaseErrorEntry> rows);
+    }
+
+    /**
+     * One server's window, oldest first. Guarded by its own monitor; DB reads happen outside it.
+     */
+    private static final class ServerBuffer {
+        final ArrayDeque<DatabaseErrorEntry> entries = new ArrayDeque<>();
+        LocalDateTime highWaterMark;
+        boolean ready;
+        LocalDateTime lastPollAt;
+        long lastPollMs;
+        int lastPollRows;
+        String lastError;
+    }
+
+    public DatabaseErrorCollector(DatabaseErrorsConfig config, DatabaseErrorRepository repository,
+                                  ServerCircuitBreaker breaker) {
+        this.config = config;
+        this.repository = repository;
+        this.breaker = breaker;
+        this.pollExecutor = Executors.newFixedThreadPool(Math.max(1, config.getServers().size()));
+    }
+
+    @Scheduled(initialDelay = 5000, fixedDelayString = "${roadrats.dberrors.collector.poll-interval-ms:30000}")
+    public void poll() {
+        if (!config.isCollectorEnabled()) {
+            return;
+        }
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        for (String server : config.getServers()) {
+            if (!breaker.allowRequest(server)) {
+                // Circuit open; the breaker's own probe decides when to try again
+                continue;
+            }
+            Future<?> previous = inFlight.get(server);
+            if (previous != null && !previous.isDone()) {
+                logger.debug("Collector poll for {} skipped: previous poll still running", server);
+                continue;
+            }
+            Future<?> future = pollExecutor.submit(() -> pollServer(server));
+            inFlight.put(server, future);
+            futures.put(server, future);
+        }
+        for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get(POLL_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            } catch (TimeoutException e) {
+                logger.warn("Collector poll for {} still running after {} minutes", entry.getKey(), POLL_TIMEOUT_MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.warn("Collector poll for {} failed: {}", entry.getKey(), e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Read everything past the server's high-water mark in batches and append it to its buffer.
+     * The buffer is trimmed to the window and max-entries-per-server after every batch, so a
+     * 7-day backfill never holds more than the cap plus one batch. A batch is only appended if
+     * the mark is still the one this poll read from, so a concurrent poll can't add rows twice.
+     */
+    void pollServer(String server) {
+        ServerBuffer buffer = buffers.computeIfAbsent(server, k -> new ServerBuffer());
+        long startTime = System.currentTimeMillis();
+        LocalDateTime floor = nowUtc().minusDays(WINDOW_DAYS);
+        LocalDateTime expected;
+        LocalDateTime mark;
+        synchronized (buffer) {
+            expected = buffer.highWaterMark;
+            mark = expected != null && expected.isAfter(floor) ? expected : floor;
+        }
+
+        int appended = 0;
+        try {
+            boolean full;
+            do {
+                List<DatabaseErrorEntry> batch = repository.queryServerSince(server, mark, BATCH_SIZE);
+                full = batch.size() >= BATCH_SIZE;
+                batch.removeIf(e -> e.getLoggedOnUtc() == null);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                if (full) {
+                    // TOP may have cut through the last timestamp's rows: read that timestamp in
+                    // full, since the next "> mark" read can't come back for the rest
+                    LocalDateTime last = trimTrailingTies(batch);
+                    batch.addAll(repository.queryServerAt(server, last));
+                }
+                mark = batch.get(batch.size() - 1).getLoggedOnUtc();
+                boolean superseded;
+                synchronized (buffer) {
+                    superseded = !Objects.equals(buffer.highWaterMark, expected);
+                    if (!superseded) {
+                        buffer.entries.addAll(batch);
+                        buffer.highWaterMark = mark;
+                        evict(buffer, nowUtc().minusDays(WINDOW_DAYS));
+                    }
+                }
+                if (superseded) {
+                    logger.warn("Collector poll for {} dropped a batch: another poll moved the high-water mark", server);
+                    break;
+                }
+                expected = mark;
+                appended += batch.size();
+                notifyListeners(server, batch);
+            } while (full);
+
+            synchronized (buffer) {
+                evict(buffer, nowUtc().minusDays(WINDOW_DAYS));
+                buffer.ready = true;
+                buffer.lastError = null;
+                buffer.lastPollRows = appended;
+            }
+            breaker.recordSuccess(server);
+        } catch (Exception e) {
+            synchronized (buffer) {
+                buffer.lastError = e.getMessage();
+            }
+            breaker.recordFailure(server, e);
+            logger.warn("Collector poll for {} failed after {} new rows: {}", server, appended, e.getMessage());
+        } finally {
+            synchronized (buffer) {
+                buffer.lastPollAt = LocalDateTime.now();
+                buffer.lastPollMs = System.currentTimeMillis() - startTime;
+            }
+        }
+        if (appended > 0) {
+            logger.debug("Collector appended {} rows for {} in {}ms", appended, server, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * True once the server's 7-day backfill has completed, so reads can be served from memory.
+     */
+    public boolean isReady(String server) {
+        ServerBuffer buffer = buffers.get(server);
+        if (buffer == null) {
+            return false;
+        }
+        synchronized (buffer) {
+            return buffer.ready;
+        }
+    }
+
+    /**
+     * Newest-first errors for a server logged within the last days, up to limit rows.
+     */
+    public List<DatabaseErrorEntry> getRecent(String server, int days, int limit) {
+        return getRecent(server, days, limit, e -> true);
+    }
+
+    /**
+     * Newest-first errors for a server logged within the last days that pass the predicate,
+     * up to limit matching rows.
+     */
+    public List<DatabaseErrorEntry> getRecent(String server, int days, int limit, Predicate<DatabaseErrorEntry> predicate) {
+        ServerBuffer buffer = buffers.get(server);
+        if (buffer == null) {
+            return new ArrayList<>();
+        }
+        LocalDateTime cutoff = nowUtc().minusDays(Math.max(1, Math.min(WINDOW_DAYS, days)));
+        List<DatabaseErrorEntry> results = new ArrayList<>();
+        synchronized (buffer) {
+            Iterator<DatabaseErrorEntry> it = buffer.entries.descendingIterator();
+            while (it.hasNext() && results.size() < limit) {
+                DatabaseErrorEntry entry = it.next();
+                if (entry.getLoggedOnUtc().isBefore(cutoff)) {
+                    break;
+                }
+                if (predicate.test(entry)) {
+                    results.add(entry);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Per-server buffer size, high-water mark and last poll outcome.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        for (String server : config.getServers()) {
+            ServerBuffer buffer = buffers.get(server);
+            Map<String, Object> serverStatus = new LinkedHashMap<>();
+            if (buffer == null) {
+                serverStatus.put("ready", false);
+            } else {
+                synchronized (buffer) {
+                    serverStatus.put("ready", buffer.ready);
+                    serverStatus.put("entries", buffer.entries.size());
+                    serverStatus.put("highWaterMarkUtc", buffer.highWaterMark);
+                    serverStatus.put("lastPollAt", buffer.lastPollAt);
+                    serverStatus.put("lastPollMs", buffer.lastPollMs);
+                    serverStatus.put("lastPollRows", buffer.lastPollRows);
+                    serverStatus.put("lastError", buffer.lastError);
+                }
+            }
+            status.put(server, serverStatus);
+        }
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pollExecutor.shutdownNow();
+    }
+
+    private void notifyListeners(String server, List<DatabaseErrorEntry> rows) {
+        List<DatabaseErrorEntry> view = Collections.unmodifiableList(rows);
+        for (Listener listener : listeners) {
+            try {
+                listener.onAppended(server, view);
+            } catch (Exception e) {
+                logger.warn("Collector listener {} failed for {}: {}", listener.getClass().getSimpleName(), server, e.getMessage());
+            }
+        }
+    }
+
+    private void evict(ServerBuffer buffer, LocalDateTime cutoff) {
+        while (!buffer.entries.isEmpty() && buffer.entries.peekFirst().getLoggedOnUtc().isBefore(cutoff)) {
+            buffer.entries.pollFirst();
+        }
+        int max = Math.max(1, config.getCollectorMaxEntriesPerServer());
+        while (buffer.entries.size() > max) {
+            buffer.entries.pollFirst();
+        }
+    }
+
+    /**
+     * A full batch may end part-way through rows sharing one logged_on_utc. Drop every row of
+     * that last timestamp (possibly the whole batch) and return it, so the caller can read that
+     * timestamp's rows in full.
+     */
+    static LocalDateTime trimTrailingTies(List<DatabaseErrorEntry> batch) {
+        LocalDateTime last = batch.get(batch.size() - 1).getLoggedOnUtc();
+        int end = batch.size();
+        while (end > 0 && batch.get(end - 1).getLoggedOnUtc().equals(last)) {
+            end--;
+        }
+        batch.subList(end, batch.size()).clear();
+        return last;
+    }
+
+    private static LocalDateTime nowUtc() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,322 @@
+package com.roadrats.demo.service.dberrors;
+
+import com.roadrats.demo.config.DatabaseErrorsConfig;
+import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over details, call_stack and arguments of the collected error
+ * window. Fed incrementally by {@link DatabaseErrorCollector}; each row gets an increasing doc
+ * id and its tokens are appended to per-term posting lists (so lists stay sorted). Queries are
+ * ANDed terms and "quoted phrases": candidates come from intersecting posting lists, and
+ * phrases are then confirmed against the row text.
+ *
+ * Rows older than the window, or past roadrats.dberrors.search.max-docs (oldest first), are
+ * dropped; posting lists are compacted once enough of their ids are dead.
+ */
+@Service
+public class DatabaseErrorSearchIndex implements DatabaseErrorCollector.Listener {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseErrorSearchIndex.class);
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    private final int maxDocs;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final TreeMap<Integer, DatabaseErrorEntry> docs = new TreeMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private int nextDocId;
+    private long deadPostings;
+    private long totalPostings;
+
+    /**
+     * Ascending doc ids for one term. Ids of evicted docs linger until the next compaction.
+     */
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+
+    public DatabaseErrorSearchIndex(DatabaseErrorsConfig config, DatabaseErrorCollector collector) {
+        this.maxDocs = Math.max(1000, config.getSearchMaxDocs());
+        collector.addListener(this);
+    }
+
+    @Override
+    public void onAppended(String server, List<DatabaseErrorEntry> rows) {
+        lock.writeLock().lock();
+        try {
+            for (DatabaseErrorEntry entry : rows) {
+                int id = nextDocId++;
+                docs.put(id, entry);
+                Set<String> terms = new HashSet<>();
+                tokenize(entry.getDetails(), terms);
+                tokenize(entry.getCallStack(), terms);
+                tokenize(entry.getArguments(), terms);
+                for (String term : terms) {
+                    postings.computeIfAbsent(term, k -> new Postings()).add(id);
+                }
+                totalPostings += terms.size();
+            }
+            while (docs.size() > maxDocs) {
+                removeDoc(docs.firstKey());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Newest-first rows matching every term and phrase in the query, within the optional
+     * server / machine / [fromUtc, toUtc) filters.
+     *
+     * @throws IllegalArgumentException if the query has no searchable terms
+     */
+    public Map<String, Object> search(String query, String server, String machine,
+                                      LocalDateTime fromUtc, LocalDateTime toUtc, int limit) {
+        long startTime = System.nanoTime();
+        List<String> phrases = new ArrayList<>();
+        Set<String> terms = new LinkedHashSet<>();
+        parseQuery(query, terms, phrases);
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Query needs at least one term of " + MIN_TOKEN_LENGTH + "+ letters or digits");
+        }
+
+        List<DatabaseErrorEntry> matches = new ArrayList<>();
+        int indexedDocs;
+        lock.readLock().lock();
+        try {
+            indexedDocs = docs.size();
+            List<Postings> lists = new ArrayList<>();
+            for (String term : terms) {
+                Postings p = postings.get(term);
+                if (p == null) {
+                    lists.clear();
+                    break;
+                }
+                lists.add(p);
+            }
+            if (!lists.isEmpty()) {
+                // Walk the shortest list and probe the others
+                lists.sort(Comparator.comparingInt(p -> p.size));
+                Postings shortest = lists.get(0);
+                for (int i = 0; i < shortest.size; i++) {
+                    int id = shortest.ids[i];
+                    DatabaseErrorEntry entry = docs.get(id);
+                    if (entry == null || !inAll(lists, id)) {
+                        continue;
+                    }
+                    if (matchesFilters(entry, server, machine, fromUtc, toUtc) && containsPhrases(entry, phrases)) {
+                        matches.add(entry);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(Comparator.comparing(DatabaseErrorEntry::getLoggedOnUtc,
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        int totalMatches = matches.size();
+        if (limit > 0 && matches.size() > limit) {
+            matches = new ArrayList<>(matches.subList(0, limit));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("query", query);
+        result.put("terms", terms);
+        result.put("phrases", phrases);
+        result.put("totalMatches", totalMatches);
+        result.put("indexedDocs", indexedDocs);
+        result.put("tookMs", (System.nanoTime() - startTime) / 1_000_000.0);
+        result.put("errors", matches);
+        return result;
+    }
+
+    /**
+     * Drop rows that have aged out of the collector window, then compact posting lists if
+     * more than a quarter of their ids point at removed rows.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        LocalDateTime cutoff = LocalDateTime.now(ZoneOffset.UTC).minusDays(DatabaseErrorCollector.WINDOW_DAYS);
+        lock.writeLock().lock();
+        try {
+            List<Integer> expired = new ArrayList<>();
+            for (Map.Entry<Integer, DatabaseErrorEntry> doc : docs.entrySet()) {
+                LocalDateTime utc = doc.getValue().getLoggedOnUtc();
+                if (utc == null || utc.isBefore(cutoff)) {
+                    expired.add(doc.getKey());
+                }
+            }
+            expired.forEach(this::removeDoc);
+            if (deadPostings > totalPostings / 4) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("docs", docs.size());
+            stats.put("maxDocs", maxDocs);
+            stats.put("terms", postings.size());
+            stats.put("postings", totalPostings);
+            stats.put("deadPostings", deadPostings);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock
+    private void removeDoc(int id) {
+        DatabaseErrorEntry entry = docs.remove(id);
+        if (entry == null) {
+            return;
+        }
+        Set<String> terms = new HashSet<>();
+        tokenize(entry.getDetails(), terms);
+        tokenize(entry.getCallStack(), terms);
+        tokenize(entry.getArguments(), terms);
+        deadPostings += terms.size();
+    }
+
+    // Caller holds the write lock
+    private void compact() {
+        long startTime = System.currentTimeMillis();
+        Iterator<Postings> it = postings.values().iterator();
+        long live = 0;
+        while (it.hasNext()) {
+            Postings p = it.next();
+            int kept = 0;
+            for (int i = 0; i < p.size; i++) {
+                if (docs.containsKey(p.ids[i])) {
+                    p.ids[kept++] = p.ids[i];
+                }
+            }
+            p.size = kept;
+            if (kept == 0) {
+                it.remove();
+            } else if (p.ids.length > kept * 4) {
+                p.ids = Arrays.copyOf(p.ids, Math.max(4, kept));
+            }
+            live += kept;
+        }
+        logger.debug("Compacted search index: {} -> {} postings in {}ms", totalPostings, live, System.currentTimeMillis() - startTime);
+        totalPostings = live;
+        deadPostings = 0;
+    }
+
+    private static boolean inAll(List<Postings> lists, int id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesFilters(DatabaseErrorEntry entry, String server, String machine,
+                                          LocalDateTime fromUtc, LocalDateTime toUtc) {
+        if (server != null && !server.equalsIgnoreCase(entry.getServerName())) return false;
+        if (machine != null && !machine.equalsIgnoreCase(entry.getMachineId())) return false;
+        LocalDateTime utc = entry.getLoggedOnUtc();
+        if (fromUtc != null && (utc == null || utc.isBefore(fromUtc))) return false;
+        if (toUtc != null && (utc == null || !utc.isBefore(toUtc))) return false;
+        return true;
+    }
+
+    private static boolean containsPhrases(DatabaseErrorEntry entry, List<String> phrases) {
+        if (phrases.isEmpty()) {
+            return true;
+        }
+        String text = (nullToEmpty(entry.getDetails()) + "\n" + nullToEmpty(entry.getCallStack()) + "\n"
+                + nullToEmpty(entry.getArguments())).toLowerCase(Locale.ROOT);
+        for (String phrase : phrases) {
+            if (!text.contains(phrase)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split a query into index terms and lowercased "quoted phrases" (whose words are terms too).
+     */
+    private static void parseQuery(String query, Set<String> terms, List<String> phrases) {
+        if (query == null) {
+            return;
+        }
+        int i = 0;
+        while (i < query.length()) {
+            int quote = query.indexOf('"', i);
+            if (quote < 0) {
+                tokenize(query.substring(i), terms);
+                break;
+            }
+            tokenize(query.substring(i, quote), terms);
+            int close = query.indexOf('"', quote + 1);
+            String phrase = close < 0 ? query.substring(quote + 1) : query.substring(quote + 1, close);
+            String normalized = phrase.trim().toLowerCase(Locale.ROOT);
+            if (!normalized.isEmpty()) {
+                phrases.add(normalized);
+                tokenize(normalized, terms);
+            }
+            i = close < 0 ? query.length() : close + 1;
+        }
+    }
+
+    /**
+     * Lowercased runs of letters, digits and underscores (so dbo.usp_ship_order gives "dbo" and
+     * "usp_ship_order").
+     */
+    private static void tokenize(String text, Set<String> out) {
+        if (text == null) {
+            return;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_');
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                int len = i - start;
+                if (len >= MIN_TOKEN_LENGTH && len <= MAX_TOKEN_LENGTH) {
+                    out.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static String nullToEmpty(String s) {
+        return s != null ? s : "";
+    }
+}
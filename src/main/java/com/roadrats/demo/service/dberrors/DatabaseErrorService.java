@@ -2,13 +2,27 @@ package com.roadrats.demo.service.dberrors;
 
 import com.roadrats.demo.config.DatabaseErrorsConfig;
 import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import com.roadrats.demo.model.dberrors.DatabaseErrorFilter;
+import com.roadrats.demo.model.dberrors.DatabaseErrorPage;
 import com.roadrats.demo.repository.dberrors.DatabaseErrorRepository;
+import com.roadrats.demo.repository.dberrors.ServerDataSourceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 /**
  * Service that orchestrates querying multiple SQL Server instances
@@ -21,11 +35,29 @@ public class DatabaseErrorService {
 
     private final DatabaseErrorsConfig config;
     private final DatabaseErrorRepository repository;
+    private final ServerDataSourceRegistry dataSources;
+    private final DatabaseErrorCollector collector;
+    private final DatabaseErrorAggregator aggregator;
+    private final DatabaseErrorSearchIndex searchIndex;
+    private final DatabaseErrorArchive archive;
+    private final ServerCircuitBreaker breaker;
     private final ExecutorService executorService;
 
-    public DatabaseErrorService(DatabaseErrorsConfig config, DatabaseErrorRepository repository) {
+    // Same per-server cap the live ERROR_QUERY applies (TOP 10000)
+    private static final int MAX_ROWS_PER_SERVER = 10000;
+
+    public DatabaseErrorService(DatabaseErrorsConfig config, DatabaseErrorRepository repository,
+                                ServerDataSourceRegistry dataSources, DatabaseErrorCollector collector,
+                                DatabaseErrorAggregator aggregator, DatabaseErrorSearchIndex searchIndex,
+                                DatabaseErrorArchive archive, ServerCircuitBreaker breaker) {
         this.config = config;
         this.repository = repository;
+        this.dataSources = dataSources;
+        this.collector = collector;
+        this.aggregator = aggregator;
+        this.searchIndex = searchIndex;
+        this.archive = archive;
+        this.breaker = breaker;
         // Thread pool sized to the number of servers we'll query in parallel
         this.executorService = Executors.newFixedThreadPool(
                 Math.max(1, Runtime.getRuntime().availableProcessors())
@@ -33,63 +65,435 @@ public class DatabaseErrorService {
     }
 
     /**
-     * Query all configured servers in parallel for database errors.
+     * Query all configured servers in parallel for database errors. Servers whose collector
+     * buffer is ready are answered from memory; the rest are queried live.
      *
      * @param days number of days to look back (1-7, clamped)
      * @return aggregated and sorted list of errors from all servers
      */
     public List<DatabaseErrorEntry> queryAllServers(int days) {
+        return queryAllServers(days, 0, null, DatabaseErrorFilter.NONE).getErrors();
+    }
+
+    /**
+     * Scatter-gather across all servers under one overall deadline, then k-way merge the
+     * per-server lists (each already newest first) into a single newest-first page.
+     * Servers that miss the deadline or fail are reported in serverStatuses and the page is
+     * marked partial; everything that did come back is still returned.
+     *
+     * @param days   number of days to look back (1-7, clamped)
+     * @param limit  max rows in the page (0 = no limit)
+     * @param cursor nextCursor from the previous page, or null for the first page
+     * @param filter row filters, pushed into SQL for live servers
+     */
+    public DatabaseErrorPage queryAllServers(int days, int limit, String cursor, DatabaseErrorFilter filter) {
         // Clamp days to 1-7
         int clampedDays = Math.max(1, Math.min(7, days));
         List<String> servers = config.getServers();
+        MergePosition after = MergePosition.decode(cursor);
 
-        logger.info("Querying {} server(s) for database errors (days={}): {}", servers.size(), clampedDays, servers);
+        logger.info("Querying {} server(s) for database errors (days={}, filter: {}): {}", servers.size(), clampedDays, filter, servers);
 
-        // Submit parallel queries
-        Map<String, Future<List<DatabaseErrorEntry>>> futures = new LinkedHashMap<>();
-        for (String server : servers) {
-            futures.put(server, executorService.submit(() -> repository.queryServer(server, clampedDays)));
+        Map<String, Map<String, Object>> serverStatuses = new LinkedHashMap<>();
+        Map<String, List<DatabaseErrorEntry>> perServer = scatter(servers,
+                server -> queryServer(server, clampedDays, filter), List::size, serverStatuses);
+        boolean partial = perServer.size() < servers.size();
+
+        DatabaseErrorPage page = merge(perServer, after, limit);
+        page.setServerStatuses(serverStatuses);
+        page.setPartial(partial);
+
+        logger.info("Query complete. Returned {} errors{}. Server statuses: {}",
+                page.getErrors().size(), page.getNextCursor() != null ? " (more available)" : "", serverStatuses);
+        return page;
+    }
+
+    /**
+     * Error counts per time bucket across all servers. Each live server groups in SQL and
+     * returns one row per bucket; servers served from the collector are bucketed in memory.
+     * Buckets with no errors are omitted.
+     */
+    public Map<String, Object> histogramAllServers(int days, int bucketMinutes, DatabaseErrorFilter filter) {
+        int clampedDays = Math.max(1, Math.min(7, days));
+        int width = Math.max(1, Math.min(1440, bucketMinutes));
+        List<String> servers = config.getServers();
+        long startTime = System.currentTimeMillis();
+
+        Map<String, Map<String, Object>> serverStatuses = new LinkedHashMap<>();
+        Map<String, Map<Long, Long>> perServer = scatter(servers,
+                server -> histogramServer(server, clampedDays, width, filter), Map::size, serverStatuses);
+
+        // Merge the small per-server aggregates
+        TreeMap<Long, Map<String, Long>> merged = new TreeMap<>();
+        long total = 0;
+        for (Map.Entry<String, Map<Long, Long>> server : perServer.entrySet()) {
+            for (Map.Entry<Long, Long> bucket : server.getValue().entrySet()) {
+                merged.computeIfAbsent(bucket.getKey(), k -> new TreeMap<>()).put(server.getKey(), bucket.getValue());
+                total += bucket.getValue();
+            }
         }
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (Map.Entry<Long, Map<String, Long>> bucket : merged.entrySet()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("startUtc", DatabaseErrorRepository.HISTOGRAM_EPOCH.plusMinutes(bucket.getKey() * width));
+            row.put("count", bucket.getValue().values().stream().mapToLong(Long::longValue).sum());
+            row.put("byServer", bucket.getValue());
+            buckets.add(row);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mode", "histogram");
+        result.put("days", clampedDays);
+        result.put("bucketMinutes", width);
+        result.put("totalErrors", total);
+        result.put("partial", perServer.size() < servers.size());
+        result.put("serverStatuses", serverStatuses);
+        result.put("queryTimeMs", System.currentTimeMillis() - startTime);
+        result.put("buckets", buckets);
+        return result;
+    }
+
+    private Map<Long, Long> histogramServer(String server, int days, int width, DatabaseErrorFilter filter) {
+        if (servedFromMemory(server)) {
+            Map<Long, Long> counts = new TreeMap<>();
+            for (DatabaseErrorEntry entry : collector.getRecent(server, days, Integer.MAX_VALUE, filter::matches)) {
+                long minutes = Duration.between(DatabaseErrorRepository.HISTOGRAM_EPOCH, entry.getLoggedOnUtc()).toMinutes();
+                counts.merge(Math.floorDiv(minutes, width), 1L, Long::sum);
+            }
+            return counts;
+        }
+        return live(server, () -> repository.queryHistogram(server, days, width, filter));
+    }
+
+    private boolean servedFromMemory(String server) {
+        return config.isCollectorEnabled() && collector.isReady(server);
+    }
+
+    /**
+     * Run a live query against a server through its circuit breaker: refused while the circuit
+     * is open, and the outcome counts towards opening or closing it. A call that scatter has
+     * already given up on (and counted as a timeout) is interrupted, and its late outcome is
+     * not recorded again.
+     */
+    private <T> T live(String server, Supplier<T> query) {
+        if (!breaker.allowRequest(server)) {
+            throw new IllegalStateException("Server " + server + " is unavailable (circuit open)");
+        }
+        try {
+            T result = query.get();
+            if (!Thread.currentThread().isInterrupted()) {
+                breaker.recordSuccess(server);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (!Thread.currentThread().isInterrupted()) {
+                breaker.recordFailure(server, e);
+            }
+            throw e;
+        }
+    }
 
-        // Collect results
-        List<DatabaseErrorEntry> allResults = new ArrayList<>();
-        Map<String, String> serverStatuses = new LinkedHashMap<>();
+    /**
+     * Run task for every server in parallel and collect the results that arrive before the
+     * overall query deadline. Each server gets an entry in statuses (OK / TIMEOUT / ERROR,
+     * rows, source); servers missing from the returned map failed or timed out.
+     */
+    private <T> Map<String, T> scatter(List<String> servers, Function<String, T> task, ToIntFunction<T> rows,
+                                       Map<String, Map<String, Object>> statuses) {
+        // Submit parallel queries, skipping servers that need a live query while their circuit is open
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        for (String server : servers) {
+            if (!servedFromMemory(server) && !breaker.allowRequest(server)) {
+                statuses.put(server, breaker.unavailableStatus(server));
+                continue;
+            }
+            futures.put(server, executorService.submit(() -> task.apply(server)));
+        }
 
-        for (Map.Entry<String, Future<List<DatabaseErrorEntry>>> entry : futures.entrySet()) {
+        // Collect whatever is back by the deadline
+        long deadline = System.currentTimeMillis() + config.getQueryDeadlineMs();
+        Map<String, T> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
             String server = entry.getKey();
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("source", servedFromMemory(server) ? "memory" : "live");
             try {
-                List<DatabaseErrorEntry> serverResults = entry.getValue().get(60, TimeUnit.SECONDS);
-                allResults.addAll(serverResults);
-                serverStatuses.put(server, "OK (" + serverResults.size() + " rows)");
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                T result = entry.getValue().get(remaining, TimeUnit.MILLISECONDS);
+                results.put(server, result);
+                status.put("status", "OK");
+                status.put("rows", rows.applyAsInt(result));
             } catch (TimeoutException e) {
                 logger.error("Timeout querying server {}", server);
-                serverStatuses.put(server, "TIMEOUT");
-            } catch (Exception e) {
-                logger.error("Error querying server {}: {}", server, e.getMessage(), e);
-                serverStatuses.put(server, "ERROR: " + e.getMessage());
+                // Counted here once; the cancelled call in live() doesn't record it again. If the
+                // call finished meanwhile, live() already recorded its outcome.
+                if (entry.getValue().cancel(true)) {
+                    breaker.recordFailure(server, "Timed out after " + config.getQueryDeadlineMs() + "ms");
+                }
+                status.put("status", "TIMEOUT");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                entry.getValue().cancel(true);
+                status.put("status", "ERROR");
+                status.put("error", "Interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.error("Error querying server {}: {}", server, cause.getMessage(), cause);
+                status.put("status", "ERROR");
+                status.put("error", cause.getMessage());
+            }
+            statuses.put(server, status);
+        }
+        return results;
+    }
+
+    /**
+     * K-way merge of newest-first per-server lists, starting after the cursor position.
+     * Order is logged_on_utc DESC, then server name, then row id, so rows tied on time come out
+     * in the same order on every page whatever order each server returned them in.
+     */
+    static DatabaseErrorPage merge(Map<String, List<DatabaseErrorEntry>> perServer, MergePosition after, int limit) {
+        PriorityQueue<MergeHead> heads = new PriorityQueue<>();
+        for (Map.Entry<String, List<DatabaseErrorEntry>> entry : perServer.entrySet()) {
+            List<MergeRow> rows = new ArrayList<>(entry.getValue().size());
+            for (DatabaseErrorEntry row : entry.getValue()) {
+                rows.add(new MergeRow(row));
+            }
+            rows.sort(NEWEST_FIRST);
+            MergeHead head = new MergeHead(entry.getKey(), rows, after);
+            if (head.hasCurrent()) {
+                heads.add(head);
+            }
+        }
+
+        List<DatabaseErrorEntry> merged = new ArrayList<>();
+        MergePosition last = after;
+        while (!heads.isEmpty() && (limit <= 0 || merged.size() < limit)) {
+            MergeHead head = heads.poll();
+            MergeRow row = head.current();
+            merged.add(row.entry);
+            // Only byte-identical rows share a row id; count them so the cursor can step past each
+            last = last != null && last.compareTo(row, head.server) == 0
+                    ? new MergePosition(row.time, head.server, row.id, last.tie + 1)
+                    : new MergePosition(row.time, head.server, row.id, 1);
+            head.advance();
+            if (head.hasCurrent()) {
+                heads.add(head);
+            }
+        }
+
+        String nextCursor = !heads.isEmpty() && last != null ? last.encode() : null;
+        return new DatabaseErrorPage(merged, nextCursor, null, false);
+    }
+
+    private static final Comparator<MergeRow> NEWEST_FIRST =
+            Comparator.comparing((MergeRow row) -> row.time).reversed().thenComparing(row -> row.id);
+
+    private static LocalDateTime sortKey(DatabaseErrorEntry entry) {
+        if (entry.getLoggedOnUtc() != null) return entry.getLoggedOnUtc();
+        if (entry.getLoggedOnLocal() != null) return entry.getLoggedOnLocal();
+        return LocalDateTime.MIN;
+    }
+
+    /**
+     * Stable id for a row: a hash of every column. t_log_message has no key, and the servers'
+     * ORDER BY logged_on_utc leaves ties in no particular order, so this is the tiebreaker.
+     */
+    static String rowId(DatabaseErrorEntry entry) {
+        String content = entry.getLoggedOnUtc() + "\u0001" + entry.getLoggedOnLocal() + "\u0001" + entry.getMachineId()
+                + "\u0001" + entry.getUserId() + "\u0001" + entry.getResourceName() + "\u0001" + entry.getDetails()
+                + "\u0001" + entry.getCallStack() + "\u0001" + entry.getArguments();
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(sha1.digest(content.getBytes(StandardCharsets.UTF_8)), 0, 10);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A row with its merge sort key and row id computed once.
+     */
+    private static final class MergeRow {
+        final DatabaseErrorEntry entry;
+        final LocalDateTime time;
+        final String id;
+
+        MergeRow(DatabaseErrorEntry entry) {
+            this.entry = entry;
+            this.time = sortKey(entry);
+            this.id = rowId(entry);
+        }
+    }
+
+    /**
+     * Merge order of two rows: negative when (time1, server1, id1) comes first.
+     */
+    private static int order(LocalDateTime time1, String server1, String id1,
+                             LocalDateTime time2, String server2, String id2) {
+        int cmp = time2.compareTo(time1);
+        if (cmp != 0) return cmp;
+        cmp = server1.compareTo(server2);
+        return cmp != 0 ? cmp : id1.compareTo(id2);
+    }
+
+    /**
+     * Where a merge stopped: the last emitted row's sort key, server and row id, and how many
+     * identical rows (same id) had been emitted. Encoded as an opaque URL-safe cursor.
+     */
+    static final class MergePosition {
+        final LocalDateTime key;
+        final String server;
+        final String rowId;
+        final int tie;
+
+        MergePosition(LocalDateTime key, String server, String rowId, int tie) {
+            this.key = key;
+            this.server = server;
+            this.rowId = rowId;
+            this.tie = tie;
+        }
+
+        // Negative when this position comes before the row in merge order
+        int compareTo(MergeRow row, String rowServer) {
+            return order(key, server, rowId, row.time, rowServer, row.id);
+        }
+
+        String encode() {
+            String raw = key + "\n" + server + "\n" + rowId + "\n" + tie;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static MergePosition decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8).split("\n", 4);
+                return new MergePosition(LocalDateTime.parse(parts[0]), parts[1], parts[2], Integer.parseInt(parts[3]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
             }
         }
+    }
 
-        // Log summary
-        logger.info("Query complete. Total errors: {}. Server statuses: {}", allResults.size(), serverStatuses);
+    /**
+     * One server's list in the merge heap, positioned just past the cursor.
+     */
+    private static final class MergeHead implements Comparable<MergeHead> {
+        final String server;
+        final List<MergeRow> rows;
+        int index;
 
-        // Sort by logged_on_local DESC (most recent first)
-        allResults.sort((a, b) -> {
-            if (a.getLoggedOnLocal() == null && b.getLoggedOnLocal() == null) return 0;
-            if (a.getLoggedOnLocal() == null) return 1;
-            if (b.getLoggedOnLocal() == null) return -1;
-            return b.getLoggedOnLocal().compareTo(a.getLoggedOnLocal());
-        });
+        MergeHead(String server, List<MergeRow> rows, MergePosition after) {
+            this.server = server;
+            this.rows = rows;
+            if (after != null) {
+                int sameIdSeen = 0;
+                while (index < rows.size()) {
+                    int cmp = after.compareTo(rows.get(index), server);
+                    boolean alreadyEmitted = cmp > 0 || (cmp == 0 && sameIdSeen++ < after.tie);
+                    if (!alreadyEmitted) {
+                        break;
+                    }
+                    index++;
+                }
+            }
+        }
 
-        return allResults;
+        boolean hasCurrent() {
+            return index < rows.size();
+        }
+
+        MergeRow current() {
+            return rows.get(index);
+        }
+
+        void advance() {
+            index++;
+        }
+
+        @Override
+        public int compareTo(MergeHead other) {
+            MergeRow mine = current();
+            MergeRow theirs = other.current();
+            return order(mine.time, server, mine.id, theirs.time, other.server, theirs.id);
+        }
     }
 
     /**
      * Query a single specific server.
      */
     public List<DatabaseErrorEntry> queryServer(String server, int days) {
+        return queryServer(server, days, DatabaseErrorFilter.NONE);
+    }
+
+    /**
+     * Query a single server with row filters (applied before the per-server row cap).
+     */
+    public List<DatabaseErrorEntry> queryServer(String server, int days, DatabaseErrorFilter filter) {
         int clampedDays = Math.max(1, Math.min(7, days));
-        return repository.queryServer(server, clampedDays);
+        if (servedFromMemory(server)) {
+            return collector.getRecent(server, clampedDays, MAX_ROWS_PER_SERVER, filter::matches);
+        }
+        return live(server, () -> repository.queryServer(server, clampedDays, filter));
+    }
+
+    /**
+     * Background collector state per server.
+     */
+    public Map<String, Object> getCollectorStatus() {
+        return collector.getStatus();
+    }
+
+    /**
+     * Top-N error fingerprints with per-bucket sparklines, from the incremental aggregation.
+     */
+    public Map<String, Object> getTopFingerprints(int days, int limit, String server, String machine) {
+        Map<String, Object> result = aggregator.getTop(days, limit, server, machine);
+        result.put("collector", collector.getStatus());
+        return result;
+    }
+
+    /**
+     * Full-text search over the collected window (details, call_stack, arguments).
+     * days bounds the time range when fromUtc isn't given.
+     */
+    public Map<String, Object> search(String query, String server, String machine, int days,
+                                      LocalDateTime fromUtc, LocalDateTime toUtc, int limit) {
+        LocalDateTime from = fromUtc != null ? fromUtc
+                : LocalDateTime.now(ZoneOffset.UTC).minusDays(Math.max(1, Math.min(7, days)));
+        Map<String, Object> result = searchIndex.search(query, server, machine, from, toUtc, limit);
+        result.put("index", searchIndex.getStats());
+        return result;
+    }
+
+    /**
+     * Rows from the local archive, newest first: [now - days, now) or an explicit [fromUtc, toUtc).
+     * Never touches the SQL servers. nextTo, when present, is the toUtc for the next page.
+     */
+    public Map<String, Object> queryArchive(int days, LocalDateTime fromUtc, LocalDateTime toUtc,
+                                            String server, String fingerprint, int limit) {
+        if (!archive.isEnabled()) {
+            throw new IllegalStateException("Database-errors archive is disabled (roadrats.dberrors.archive.enabled)");
+        }
+        long startTime = System.currentTimeMillis();
+        int clampedDays = Math.max(1, Math.min(config.getArchiveRetentionDays(), days));
+        LocalDateTime from = fromUtc != null ? fromUtc : LocalDateTime.now(ZoneOffset.UTC).minusDays(clampedDays);
+        List<DatabaseErrorEntry> rows = archive.query(from, toUtc, server, fingerprint, limit);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("fromUtc", from);
+        result.put("toUtc", toUtc);
+        result.put("totalErrors", rows.size());
+        result.put("nextTo", limit > 0 && rows.size() >= limit ? rows.get(rows.size() - 1).getLoggedOnUtc() : null);
+        result.put("queryTimeMs", System.currentTimeMillis() - startTime);
+        result.put("errors", rows);
+        return result;
+    }
+
+    public Map<String, Object> getArchiveStats() {
+        return archive.getStats();
     }
 
     /**
@@ -100,35 +504,74 @@ public class DatabaseErrorService {
     }
 
     /**
-     * Test connectivity to all configured servers.
+     * Per-server connection pool metrics.
+     */
+    public Map<String, Object> getPoolStats() {
+        return dataSources.getPoolStats();
+    }
+
+    /**
+     * Test connectivity to all configured servers in parallel, bounded by the connection
+     * timeout. Outcomes feed the circuit breakers.
      */
     public Map<String, String> testAllConnections() {
-        Map<String, String> results = new LinkedHashMap<>();
+        Map<String, Future<String>> futures = new LinkedHashMap<>();
         for (String server : config.getServers()) {
-            results.put(server, repository.testConnection(server));
+            futures.put(server, executorService.submit(() -> repository.testConnection(server)));
+        }
+
+        long deadline = System.currentTimeMillis() + (config.getConnectionTimeout() + 5) * 1000L;
+        Map<String, String> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<String>> entry : futures.entrySet()) {
+            String server = entry.getKey();
+            String result;
+            try {
+                result = entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                result = String.format("Failed to connect to %s: timed out", server);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = String.format("Failed to connect to %s: interrupted", server);
+            } catch (ExecutionException e) {
+                result = String.format("Failed to connect to %s: %s", server, e.getCause().getMessage());
+            }
+            if (result.startsWith("Connected")) {
+                breaker.recordSuccess(server);
+            } else {
+                breaker.recordFailure(server, result);
+            }
+            results.put(server, result);
         }
         return results;
     }
 
     /**
-     * Generate CSV content from a list of database error entries.
+     * Circuit breaker state per server.
+     */
+    public Map<String, Object> getHealth() {
+        return breaker.getStatus();
+    }
+
+    /**
+     * Write database error entries as CSV, one row at a time, so exports never
+     * buffer the whole file in memory.
      */
-    public String generateCsv(List<DatabaseErrorEntry> entries) {
-        StringBuilder sb = new StringBuilder();
+    public void writeCsv(Iterator<DatabaseErrorEntry> entries, Writer out) throws IOException {
         // Header
-        sb.append("Server,Time,Machine,User,Resource,Details,CallStack,Arguments\n");
+        out.write("Server,Time,Machine,User,Resource,Details,CallStack,Arguments\n");
         // Rows
-        for (DatabaseErrorEntry entry : entries) {
-            sb.append(escapeCsv(entry.getServerName())).append(',');
-            sb.append(escapeCsv(entry.getLoggedOnLocal() != null ? entry.getLoggedOnLocal().toString() : "")).append(',');
-            sb.append(escapeCsv(entry.getMachineId())).append(',');
-            sb.append(escapeCsv(entry.getUserId())).append(',');
-            sb.append(escapeCsv(entry.getResourceName())).append(',');
-            sb.append(escapeCsv(entry.getDetails())).append(',');
-            sb.append(escapeCsv(entry.getCallStack())).append(',');
-            sb.append(escapeCsv(entry.getArguments())).append('\n');
-        }
-        return sb.toString();
+        while (entries.hasNext()) {
+            DatabaseErrorEntry entry = entries.next();
+            out.write(escapeCsv(entry.getServerName())); out.write(',');
+            out.write(escapeCsv(entry.getLoggedOnLocal() != null ? entry.getLoggedOnLocal().toString() : "")); out.write(',');
+            out.write(escapeCsv(entry.getMachineId())); out.write(',');
+            out.write(escapeCsv(entry.getUserId())); out.write(',');
+            out.write(escapeCsv(entry.getResourceName())); out.write(',');
+            out.write(escapeCsv(entry.getDetails())); out.write(',');
+            out.write(escapeCsv(entry.getCallStack())); out.write(',');
+            out.write(escapeCsv(entry.getArguments())); out.write('\n');
+        }
     }
 
     private String escapeCsv(String value) {
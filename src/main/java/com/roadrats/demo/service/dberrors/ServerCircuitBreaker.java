@@ -0,0 +1,195 @@
+package com.roadrats.demo.service.dberrors;
+
+import com.roadrats.demo.config.DatabaseErrorsConfig;
+import com.roadrats.demo.repository.dberrors.DatabaseErrorRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Per-server circuit breaker for the database-errors servers. After failure-threshold
+ * consecutive failures a server is OPEN: callers skip it immediately instead of waiting for
+ * connect and query timeouts. Once open-ms has passed, a background probe moves it to
+ * HALF_OPEN and pings it; success closes the circuit, failure re-opens it for another period.
+ * User requests never act as the probe.
+ */
+@Service
+public class ServerCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerCircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final DatabaseErrorsConfig config;
+    private final DatabaseErrorRepository repository;
+    private final ExecutorService probeExecutor;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    private static final class Circuit {
+        State state = State.CLOSED;
+        int consecutiveFailures;
+        long openUntilMillis;
+        String lastError;
+        LocalDateTime lastFailureAt;
+        LocalDateTime lastStateChangeAt = LocalDateTime.now();
+    }
+
+    public ServerCircuitBreaker(DatabaseErrorsConfig config, DatabaseErrorRepository repository) {
+        this.config = config;
+        this.repository = repository;
+        this.probeExecutor = Executors.newFixedThreadPool(Math.max(1, config.getServers().size()));
+    }
+
+    /**
+     * True when calls to the server should go ahead (circuit CLOSED).
+     */
+    public boolean allowRequest(String server) {
+        Circuit circuit = circuit(server);
+        synchronized (circuit) {
+            return circuit.state == State.CLOSED;
+        }
+    }
+
+    public void recordSuccess(String server) {
+        Circuit circuit = circuit(server);
+        synchronized (circuit) {
+            circuit.consecutiveFailures = 0;
+            if (circuit.state != State.CLOSED) {
+                logger.info("Circuit for {} closed", server);
+                circuit.state = State.CLOSED;
+                circuit.lastStateChangeAt = LocalDateTime.now();
+            }
+        }
+    }
+
+    /**
+     * Record a failed call, counting it only when it is connection-level (see isConnectionFailure).
+     * A bad query or mapping bug says nothing about whether the server is reachable.
+     */
+    public void recordFailure(String server, Throwable error) {
+        if (isConnectionFailure(error)) {
+            recordFailure(server, error.getMessage());
+        } else {
+            logger.debug("Not counting non-connection failure against {}: {}", server, error.getMessage());
+        }
+    }
+
+    public void recordFailure(String server, String error) {
+        Circuit circuit = circuit(server);
+        synchronized (circuit) {
+            circuit.consecutiveFailures++;
+            circuit.lastError = error;
+            circuit.lastFailureAt = LocalDateTime.now();
+            if (circuit.state == State.HALF_OPEN
+                    || (circuit.state == State.CLOSED && circuit.consecutiveFailures >= Math.max(1, config.getBreakerFailureThreshold()))) {
+                if (circuit.state == State.CLOSED) {
+                    logger.warn("Circuit for {} opened after {} consecutive failures: {}", server, circuit.consecutiveFailures, error);
+                }
+                circuit.state = State.OPEN;
+                circuit.openUntilMillis = System.currentTimeMillis() + config.getBreakerOpenMs();
+                circuit.lastStateChangeAt = LocalDateTime.now();
+            }
+        }
+    }
+
+    /**
+     * Short status for a server that was skipped because its circuit is open.
+     */
+    public Map<String, Object> unavailableStatus(String server) {
+        Circuit circuit = circuit(server);
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("status", "UNAVAILABLE");
+        synchronized (circuit) {
+            status.put("circuit", circuit.state);
+            status.put("error", circuit.lastError);
+            status.put("since", circuit.lastStateChangeAt);
+        }
+        return status;
+    }
+
+    /**
+     * Ping every OPEN server whose open period has elapsed, in parallel.
+     */
+    @Scheduled(fixedDelayString = "${roadrats.dberrors.breaker.probe-interval-ms:10000}")
+    public void probeOpenCircuits() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Circuit> entry : circuits.entrySet()) {
+            Circuit circuit = entry.getValue();
+            synchronized (circuit) {
+                if (circuit.state != State.OPEN || circuit.openUntilMillis > now) {
+                    continue;
+                }
+                circuit.state = State.HALF_OPEN;
+                circuit.lastStateChangeAt = LocalDateTime.now();
+            }
+            String server = entry.getKey();
+            probeExecutor.submit(() -> probe(server));
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        for (String server : config.getServers()) {
+            Circuit circuit = circuit(server);
+            Map<String, Object> serverStatus = new LinkedHashMap<>();
+            synchronized (circuit) {
+                serverStatus.put("state", circuit.state);
+                serverStatus.put("consecutiveFailures", circuit.consecutiveFailures);
+                serverStatus.put("lastError", circuit.lastError);
+                serverStatus.put("lastFailureAt", circuit.lastFailureAt);
+                serverStatus.put("since", circuit.lastStateChangeAt);
+            }
+            status.put(server, serverStatus);
+        }
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        probeExecutor.shutdownNow();
+    }
+
+    private void probe(String server) {
+        try {
+            repository.ping(server);
+            recordSuccess(server);
+        } catch (Exception e) {
+            logger.debug("Probe for {} failed: {}", server, e.getMessage());
+            recordFailure(server, e.getMessage());
+        }
+    }
+
+    /**
+     * True when error (or any cause) is a connection failure or timeout: pool/connect failures
+     * (SQLTransientConnectionException, SQLNonTransientConnectionException, ConnectException) or
+     * a statement/socket timeout.
+     */
+    static boolean isConnectionFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof SQLTransientConnectionException
+                    || t instanceof SQLNonTransientConnectionException
+                    || t instanceof SQLTimeoutException
+                    || t instanceof TimeoutException
+                    || t instanceof SocketTimeoutException
+                    || t instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Circuit circuit(String server) {
+        return circuits.computeIfAbsent(server, k -> new Circuit());
+    }
+}
@@ -0,0 +1,193 @@
+package com.roadrats.demo.service.testtools;
+
+import com.roadrats.demo.config.Wms360Config;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Lookup for a whole list of OMS numbers, order numbers or container ids (e.g. a failed wave).
+ * Ids are resolved together with set-based queries, then each resolved order runs the chosen
+ * diagnostic groups, at most roadrats.wms360.bulk.concurrency orders at a time. Results are
+ * handed to the caller in completion order so they can be streamed as NDJSON lines.
+ */
+@Service
+public class BulkOrderLookupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkOrderLookupService.class);
+
+    private final Wms360Config config;
+    private final OrderLookupService orderLookupService;
+    private final ExecutorService bulkExecutor;
+
+    public BulkOrderLookupService(Wms360Config config, OrderLookupService orderLookupService) {
+        this.config = config;
+        this.orderLookupService = orderLookupService;
+        this.bulkExecutor = Executors.newFixedThreadPool(Math.max(1, config.getBulkConcurrency()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkExecutor.shutdownNow();
+    }
+
+    /**
+     * Distinct, trimmed ids from the first column of a CSV (quotes stripped), skipping the
+     * first line when hasHeader is set.
+     */
+    public static List<String> readIdsFromCsv(InputStream in, boolean hasHeader) throws IOException {
+        List<String> ids = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                if (first && hasHeader) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                int comma = line.indexOf(',');
+                String cell = (comma >= 0 ? line.substring(0, comma) : line).trim();
+                if (cell.length() >= 2 && cell.startsWith("\"") && cell.endsWith("\"")) {
+                    cell = cell.substring(1, cell.length() - 1).trim();
+                }
+                ids.add(cell);
+            }
+        }
+        return normalizeIds(ids);
+    }
+
+    /**
+     * Trimmed, non-blank ids in first-seen order without duplicates.
+     */
+    public static List<String> normalizeIds(Collection<String> ids) {
+        LinkedHashSet<String> distinct = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (id != null && !id.isBlank()) {
+                distinct.add(id.trim());
+            }
+        }
+        return new ArrayList<>(distinct);
+    }
+
+    /**
+     * Check a bulk request, so callers can reject it before they start streaming.
+     *
+     * @throws IllegalArgumentException if type is not oms/order/container, there are no ids or
+     *                                  too many, or warehouseId is missing for order/container ids
+     */
+    public void validate(String type, List<String> ids, String warehouseId) {
+        if (!List.of("oms", "order", "container").contains(type)) {
+            throw new IllegalArgumentException("type must be oms, order or container");
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one id is required");
+        }
+        if (ids.size() > config.getBulkMaxIds()) {
+            throw new IllegalArgumentException("At most " + config.getBulkMaxIds() + " ids per bulk lookup (got " + ids.size() + ")");
+        }
+        if (!"oms".equals(type) && (warehouseId == null || warehouseId.isBlank())) {
+            throw new IllegalArgumentException("warehouseId is required for order/container bulk lookup");
+        }
+    }
+
+    /**
+     * Resolve the ids and run diagnostics for every resolved order, passing each result line to
+     * sink as soon as it is ready. Lines are, in order: one "resolved" summary, one "order" line
+     * per resolved order or unresolved id, then one "done" line. sink is only called from the
+     * calling thread.
+     *
+     * @throws IllegalArgumentException see {@link #validate}
+     */
+    public void lookupAll(String type, List<String> ids, String warehouseId, String stack, String env,
+                          Set<String> groups, Consumer<Map<String, Object>> sink) throws Exception {
+        validate(type, ids, warehouseId);
+
+        long startTime = System.currentTimeMillis();
+        List<Map<String, Object>> targets = orderLookupService.resolveBulk(type, ids, warehouseId, stack, env);
+
+        List<Map<String, Object>> runnable = new ArrayList<>();
+        List<Object> unresolved = new ArrayList<>();
+        for (Map<String, Object> target : targets) {
+            if (target.containsKey("error")) {
+                unresolved.add(target.get("input"));
+            } else {
+                runnable.add(target);
+            }
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("type", "resolved");
+        summary.put("requested", ids.size());
+        summary.put("orders", runnable.size());
+        summary.put("unresolved", unresolved);
+        summary.put("resolveMs", System.currentTimeMillis() - startTime);
+        sink.accept(summary);
+
+        for (Map<String, Object> target : targets) {
+            if (target.containsKey("error")) {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("type", "order");
+                line.putAll(target);
+                sink.accept(line);
+            }
+        }
+
+        CompletionService<Map<String, Object>> completion = new ExecutorCompletionService<>(bulkExecutor);
+        List<Future<Map<String, Object>>> futures = new ArrayList<>();
+        for (Map<String, Object> target : runnable) {
+            futures.add(completion.submit(() -> lookupOne(target, stack, env, groups)));
+        }
+        int failed = 0;
+        try {
+            for (int i = 0; i < runnable.size(); i++) {
+                try {
+                    sink.accept(completion.take().get());
+                } catch (ExecutionException e) {
+                    failed++;
+                    logger.warn("Bulk lookup task failed: {}", e.getCause().getMessage());
+                }
+            }
+        } finally {
+            // Client went away or the sink failed: don't keep querying for nobody
+            futures.forEach(f -> f.cancel(true));
+        }
+
+        Map<String, Object> done = new LinkedHashMap<>();
+        done.put("type", "done");
+        done.put("orders", runnable.size() - failed);
+        done.put("failed", failed);
+        done.put("elapsedMs", System.currentTimeMillis() - startTime);
+        sink.accept(done);
+        logger.info("Bulk {} lookup of {} ids ({} orders) finished in {}ms", type, ids.size(), runnable.size(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    private Map<String, Object> lookupOne(Map<String, Object> target, String stack, String env, Set<String> groups) {
+        long startTime = System.currentTimeMillis();
+        Map<String, Object> result = orderLookupService.lookupOrderGrouped(
+                (String) target.get("warehouseId"),
+                (String) target.get("orderNumber"),
+                (String) target.get("containerId"),
+                stack, env, groups);
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", "order");
+        line.putAll(target);
+        if (result.containsKey("error")) {
+            line.put("error", result.get("error"));
+        }
+        line.put("groups", result.get("groups"));
+        line.put("elapsedMs", System.currentTimeMillis() - startTime);
+        return line;
+    }
+}
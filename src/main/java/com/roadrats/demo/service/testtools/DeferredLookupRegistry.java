@@ -0,0 +1,157 @@
+package com.roadrats.demo.service.testtools;
+
+import com.roadrats.demo.config.Wms360Config;
+import com.roadrats.demo.model.testtools.ColumnarTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Slow diagnostic tables of a lookup that are still running after the fast tables were
+ * returned. Each lookup with deferred tables gets a token; clients either poll
+ * {@link #poll} with the number of tables they already have, or subscribe over SSE and receive
+ * a "table" event per finished table and a final "done" event. Tokens are dropped
+ * roadrats.wms360.lookup.deferred-ttl-seconds after they were created.
+ */
+@Service
+public class DeferredLookupRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeferredLookupRegistry.class);
+
+    private final Wms360Config config;
+    private final Map<String, Sections> byToken = new ConcurrentHashMap<>();
+
+    /**
+     * Deferred tables of one lookup. Guarded by itself.
+     */
+    static final class Sections {
+        final String token = UUID.randomUUID().toString();
+        final long createdMillis = System.currentTimeMillis();
+        final Set<String> pending;
+        final List<Map<String, Object>> tables = new ArrayList<>();
+        // Subscriber -> the format it asked for (tables are sent in that form)
+        final Map<SseEmitter, String> emitters = new ConcurrentHashMap<>();
+        boolean done;
+
+        Sections(Collection<String> keys) {
+            this.pending = new LinkedHashSet<>(keys);
+        }
+    }
+
+    public DeferredLookupRegistry(Wms360Config config) {
+        this.config = config;
+    }
+
+    Sections create(Collection<String> keys) {
+        Sections sections = new Sections(keys);
+        byToken.put(sections.token, sections);
+        return sections;
+    }
+
+    /**
+     * Record a finished table (ignored if a table with that name was already published) and push
+     * it to subscribers.
+     */
+    void publish(Sections sections, Map<String, Object> table) {
+        // Sent under the lock so a subscriber replaying the list never gets a table twice
+        synchronized (sections) {
+            if (sections.done || !sections.pending.remove(String.valueOf(table.get("name")))) {
+                return;
+            }
+            sections.tables.add(table);
+            for (Map.Entry<SseEmitter, String> entry : sections.emitters.entrySet()) {
+                SseEmitter emitter = entry.getKey();
+                try {
+                    emitter.send(SseEmitter.event().name("table").data(ColumnarTable.withFormat(table, entry.getValue())));
+                } catch (Exception e) {
+                    sections.emitters.remove(emitter);
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+    }
+
+    void finish(Sections sections) {
+        synchronized (sections) {
+            sections.done = true;
+            for (SseEmitter emitter : sections.emitters.keySet()) {
+                try {
+                    emitter.send(SseEmitter.event().name("done").data(Map.of("token", sections.token)));
+                    emitter.complete();
+                } catch (Exception e) {
+                    emitter.completeWithError(e);
+                }
+            }
+            sections.emitters.clear();
+        }
+    }
+
+    /**
+     * Tables finished after the first {@code since}, the keys still pending and whether all are in;
+     * null for an unknown or expired token.
+     */
+    public Map<String, Object> poll(String token, int since) {
+        Sections sections = byToken.get(token);
+        if (sections == null) {
+            return null;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        synchronized (sections) {
+            int from = Math.max(0, Math.min(since, sections.tables.size()));
+            result.put("token", token);
+            result.put("done", sections.done);
+            result.put("pending", new ArrayList<>(sections.pending));
+            result.put("tables", new ArrayList<>(sections.tables.subList(from, sections.tables.size())));
+            result.put("next", sections.tables.size());
+        }
+        return result;
+    }
+
+    /**
+     * SSE stream of the token's tables in the given format (see {@link ColumnarTable#withFormat}):
+     * already finished ones are replayed first. Null for an unknown or expired token.
+     */
+    public SseEmitter subscribe(String token, String format) {
+        Sections sections = byToken.get(token);
+        if (sections == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(config.getLookupSlowDeadlineMs() + 30_000L);
+        emitter.onCompletion(() -> sections.emitters.remove(emitter));
+        emitter.onTimeout(() -> sections.emitters.remove(emitter));
+        emitter.onError(e -> sections.emitters.remove(emitter));
+
+        // Replayed and registered under the lock, like publish/finish send, so no newer table or
+        // "done" can reach the emitter before the replay or complete it while replaying
+        synchronized (sections) {
+            try {
+                for (Map<String, Object> table : sections.tables) {
+                    emitter.send(SseEmitter.event().name("table").data(ColumnarTable.withFormat(table, format)));
+                }
+                if (sections.done) {
+                    emitter.send(SseEmitter.event().name("done").data(Map.of("token", token)));
+                    emitter.complete();
+                } else {
+                    sections.emitters.put(emitter, format != null ? format : "");
+                }
+            } catch (IOException | IllegalStateException e) {
+                sections.emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - config.getLookupDeferredTtlSeconds() * 1000L;
+        byToken.values().removeIf(s -> s.createdMillis < cutoff);
+        logger.debug("{} deferred lookups held", byToken.size());
+    }
+}
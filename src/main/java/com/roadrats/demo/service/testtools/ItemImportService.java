@@ -1,6 +1,9 @@
 package com.roadrats.demo.service.testtools;
 
 import com.roadrats.demo.config.Wms360Config;
+import com.roadrats.demo.model.testtools.ColumnarTable;
+import com.roadrats.demo.repository.testtools.ColumnarResultMapper;
+import com.roadrats.demo.repository.testtools.Wms360DataSourceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -19,10 +22,12 @@ public class ItemImportService {
     private static final Logger logger = LoggerFactory.getLogger(ItemImportService.class);
 
     private final Wms360Config config;
+    private final Wms360DataSourceRegistry dataSources;
     private final HttpClient httpClient;
 
-    public ItemImportService(Wms360Config config) {
+    public ItemImportService(Wms360Config config, Wms360DataSourceRegistry dataSources) {
         this.config = config;
+        this.dataSources = dataSources;
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(15))
                 .build();
@@ -34,18 +39,9 @@ public class ItemImportService {
      */
     public Map<String, Object> lookupItem(String itemNumber, String warehouseId, String env) {
         Map<String, Object> result = new LinkedHashMap<>();
-        String jdbcUrl = config.buildAadJdbcUrl(env);
         logger.info("lookupItem: item={}, wh={}, env={}", itemNumber, warehouseId, env);
 
-        try {
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            result.put("success", false);
-            result.put("error", "JDBC driver not found: " + e.getMessage());
-            return result;
-        }
-
-        try (Connection conn = DriverManager.getConnection(jdbcUrl)) {
+        try (Connection conn = dataSources.getAadConnection(env)) {
             result.put("connection", config.getAadServer(env) + " / " + config.getAadDatabase(env));
             result.put("environment", env);
 
@@ -56,20 +52,12 @@ public class ItemImportService {
                     ? "SELECT TOP 100 * FROM t_item_master WHERE item_number = ? AND wh_id = ?"
                     : "SELECT TOP 100 * FROM t_item_master WHERE item_number = ?";
 
-            List<Map<String, Object>> itemRows = new ArrayList<>();
+            ColumnarTable itemRows;
             try (PreparedStatement ps = conn.prepareStatement(itemSql)) {
                 ps.setString(1, itemNumber.trim());
                 if (hasWh) ps.setString(2, warehouseId.trim());
                 try (ResultSet rs = ps.executeQuery()) {
-                    ResultSetMetaData meta = rs.getMetaData();
-                    int cols = meta.getColumnCount();
-                    while (rs.next()) {
-                        Map<String, Object> row = new LinkedHashMap<>();
-                        for (int i = 1; i <= cols; i++) {
-                            row.put(meta.getColumnLabel(i), rs.getObject(i));
-                        }
-                        itemRows.add(row);
-                    }
+                    itemRows = ColumnarResultMapper.read(rs);
                 }
             }
             result.put("itemMaster", itemRows);
@@ -79,20 +67,12 @@ public class ItemImportService {
                     ? "SELECT TOP 100 * FROM t_item_uom WHERE item_number = ? AND wh_id = ?"
                     : "SELECT TOP 100 * FROM t_item_uom WHERE item_number = ?";
 
-            List<Map<String, Object>> uomRows = new ArrayList<>();
+            ColumnarTable uomRows;
             try (PreparedStatement ps = conn.prepareStatement(uomSql)) {
                 ps.setString(1, itemNumber.trim());
                 if (hasWh) ps.setString(2, warehouseId.trim());
                 try (ResultSet rs = ps.executeQuery()) {
-                    ResultSetMetaData meta = rs.getMetaData();
-                    int cols = meta.getColumnCount();
-                    while (rs.next()) {
-                        Map<String, Object> row = new LinkedHashMap<>();
-                        for (int i = 1; i <= cols; i++) {
-                            row.put(meta.getColumnLabel(i), rs.getObject(i));
-                        }
-                        uomRows.add(row);
-                    }
+                    uomRows = ColumnarResultMapper.read(rs);
                 }
             }
             result.put("itemUom", uomRows);
@@ -105,9 +85,9 @@ public class ItemImportService {
                         : "Item " + itemNumber + " not found in any warehouse");
             } else {
                 Set<String> warehouses = new LinkedHashSet<>();
-                for (Map<String, Object> row : itemRows) {
-                    Object wh = row.get("wh_id");
-                    if (wh != null) warehouses.add(wh.toString().trim());
+                for (int r = 0; r < itemRows.getRowCount(); r++) {
+                    String wh = itemRows.getString(r, "wh_id");
+                    if (wh != null) warehouses.add(wh);
                 }
                 result.put("warehouses", warehouses);
                 result.put("message", "Item " + itemNumber + " found in " + warehouses.size() + " warehouse(s): " + String.join(", ", warehouses));
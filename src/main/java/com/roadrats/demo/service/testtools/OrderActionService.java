@@ -1,6 +1,9 @@
 package com.roadrats.demo.service.testtools;
 
 import com.roadrats.demo.config.Wms360Config;
+import com.roadrats.demo.model.testtools.ColumnarTable;
+import com.roadrats.demo.repository.testtools.ColumnarResultMapper;
+import com.roadrats.demo.repository.testtools.Wms360DataSourceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -14,9 +17,13 @@ public class OrderActionService {
     private static final Logger logger = LoggerFactory.getLogger(OrderActionService.class);
 
     private final Wms360Config config;
+    private final Wms360DataSourceRegistry dataSources;
+    private final OrderLookupCache lookupCache;
 
-    public OrderActionService(Wms360Config config) {
+    public OrderActionService(Wms360Config config, Wms360DataSourceRegistry dataSources, OrderLookupCache lookupCache) {
         this.config = config;
+        this.dataSources = dataSources;
+        this.lookupCache = lookupCache;
     }
 
     /**
@@ -28,15 +35,7 @@ public class OrderActionService {
         String jdbcUrl = config.buildAadJdbcUrl(env);
         logger.info("resolveOrder: type={}, value={}, wh={}, env={}, url={}", searchType, searchValue, warehouseId, env, jdbcUrl);
 
-        try {
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            result.put("success", false);
-            result.put("error", "JDBC driver not found: " + e.getMessage());
-            return result;
-        }
-
-        try (Connection conn = DriverManager.getConnection(jdbcUrl)) {
+        try (Connection conn = dataSources.getAadConnection(env)) {
             String orderNumber = null;
             String containerId = null;
             String resolvedWhId = warehouseId;
@@ -109,7 +108,7 @@ public class OrderActionService {
 
             // Step 3: Fetch pick_container rows
             if (orderNumber != null) {
-                List<Map<String, Object>> pickContainers = queryTable(conn,
+                ColumnarTable pickContainers = queryTable(conn,
                     "SELECT * FROM t_pick_container WHERE wh_id = ? AND order_number = ?",
                     resolvedWhId, orderNumber);
                 result.put("pickContainers", pickContainers);
@@ -117,7 +116,7 @@ public class OrderActionService {
 
             // Step 4: Fetch pick_detail rows
             if (orderNumber != null) {
-                List<Map<String, Object>> pickDetails = queryTable(conn,
+                ColumnarTable pickDetails = queryTable(conn,
                     "SELECT * FROM t_pick_detail WHERE wh_id = ? AND order_number = ?",
                     resolvedWhId, orderNumber);
                 result.put("pickDetails", pickDetails);
@@ -125,7 +124,7 @@ public class OrderActionService {
 
             // Step 5: Fetch t_order info
             if (orderNumber != null) {
-                List<Map<String, Object>> orders = queryTable(conn,
+                ColumnarTable orders = queryTable(conn,
                     "SELECT * FROM t_order WHERE wh_id = ? AND order_number = ?",
                     resolvedWhId, orderNumber);
                 result.put("orders", orders);
@@ -133,12 +132,12 @@ public class OrderActionService {
 
             // Step 6: Check existing setup (t_hu_master, t_stored_item)
             if (containerId != null) {
-                List<Map<String, Object>> huMaster = queryTable(conn,
+                ColumnarTable huMaster = queryTable(conn,
                     "SELECT * FROM t_hu_master WHERE wh_id = ? AND hu_id = ?",
                     resolvedWhId, containerId);
                 result.put("huMaster", huMaster);
 
-                List<Map<String, Object>> storedItems = queryTable(conn,
+                ColumnarTable storedItems = queryTable(conn,
                     "SELECT * FROM t_stored_item WHERE wh_id = ? AND hu_id = ?",
                     resolvedWhId, containerId);
                 result.put("storedItems", storedItems);
@@ -177,19 +176,10 @@ public class OrderActionService {
             return result;
         }
 
-        String jdbcUrl = config.buildAadJdbcUrl(env);
         logger.info("setupOrderData: wh={}, order={}, type={}, container={}, itemOverride={}, qtyOverride={}",
             warehouseId, orderNumber, setupType, containerId, itemOverride, quantityOverride);
 
-        try {
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            result.put("success", false);
-            result.put("error", "JDBC driver not found: " + e.getMessage());
-            return result;
-        }
-
-        try (Connection conn = DriverManager.getConnection(jdbcUrl)) {
+        try (Connection conn = dataSources.getAadConnection(env)) {
             conn.setAutoCommit(false);
 
             // Get pick_container data (filtered to specific container if provided)
@@ -197,11 +187,11 @@ public class OrderActionService {
             if (containerId != null && !containerId.isEmpty()) {
                 containers = queryTable(conn,
                     "SELECT container_id, order_number, wh_id, container_type FROM t_pick_container WHERE wh_id = ? AND order_number = ? AND container_id = ?",
-                    warehouseId, orderNumber, containerId);
+                    warehouseId, orderNumber, containerId).toRowMaps();
             } else {
                 containers = queryTable(conn,
                     "SELECT container_id, order_number, wh_id, container_type FROM t_pick_container WHERE wh_id = ? AND order_number = ?",
-                    warehouseId, orderNumber);
+                    warehouseId, orderNumber).toRowMaps();
             }
 
             if (containers.isEmpty()) {
@@ -215,11 +205,11 @@ public class OrderActionService {
             if (containerId != null && !containerId.isEmpty()) {
                 details = queryTable(conn,
                     "SELECT pick_id, item_number, planned_quantity, container_id, order_number, wh_id FROM t_pick_detail WHERE wh_id = ? AND order_number = ? AND container_id = ?",
-                    warehouseId, orderNumber, containerId);
+                    warehouseId, orderNumber, containerId).toRowMaps();
             } else {
                 details = queryTable(conn,
                     "SELECT pick_id, item_number, planned_quantity, container_id, order_number, wh_id FROM t_pick_detail WHERE wh_id = ? AND order_number = ?",
-                    warehouseId, orderNumber);
+                    warehouseId, orderNumber).toRowMaps();
             }
 
             int huInserted = 0;
@@ -326,14 +316,14 @@ public class OrderActionService {
 
             // Query back the full state for this order
             String verifyCid = (containerId != null && !containerId.isEmpty()) ? containerId : "";
-            List<Map<String, Object>> verifyHum = queryTable(conn,
+            ColumnarTable verifyHum = queryTable(conn,
                 "SELECT TOP 100 * FROM t_hu_master WHERE wh_id = ? AND (hu_id = ? OR control_number = ?)",
                 warehouseId, verifyCid, orderNumber);
-            List<Map<String, Object>> verifySto = queryTable(conn,
+            ColumnarTable verifySto = queryTable(conn,
                 "SELECT TOP 100 * FROM t_stored_item WHERE wh_id = ? AND hu_id IN " +
                 "(SELECT hu_id FROM t_hu_master WHERE wh_id = ? AND (hu_id = ? OR control_number = ?))",
                 warehouseId, warehouseId, verifyCid, orderNumber);
-            debugLog.add("POST-SETUP: " + verifyHum.size() + " HUM rows, " + verifySto.size() + " STO rows");
+            debugLog.add("POST-SETUP: " + verifyHum.getRowCount() + " HUM rows, " + verifySto.getRowCount() + " STO rows");
 
             String typeLabel = "normal".equals(setupType) ? "Normal" : "short_ship".equals(setupType) ? "Short Ship" : "Floor Deny";
             result.put("success", true);
@@ -357,6 +347,8 @@ public class OrderActionService {
             result.put("error", "Database error: " + e.getMessage());
         }
 
+        lookupCache.invalidateOrder(env, warehouseId, orderNumber);
+
         return result;
     }
 
@@ -378,18 +370,15 @@ public class OrderActionService {
             return result;
         }
 
-        String jdbcUrl = config.buildAadJdbcUrl(env);
         logger.info("sendFulfillmentEvent: wh={}, container={}, status={}", warehouseId, containerId, statusCode);
 
-        try {
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            result.put("success", false);
-            result.put("error", "JDBC driver not found: " + e.getMessage());
-            return result;
-        }
+        String orderNumber = null;
+        try (Connection conn = dataSources.getAadConnection(env)) {
+            ColumnarTable owner = queryTable(conn,
+                "SELECT TOP 1 order_number FROM t_pick_container WHERE wh_id = ? AND container_id = ?",
+                warehouseId, containerId);
+            orderNumber = owner.isEmpty() ? null : owner.getString(0, "order_number");
 
-        try (Connection conn = DriverManager.getConnection(jdbcUrl)) {
             // Build and execute the fulfillment status update via dynamic SQL
             // since we need to declare a table variable and call the proc
             String sql =
@@ -438,27 +427,12 @@ public class OrderActionService {
             result.put("error", "Database error: " + e.getMessage());
         }
 
+        lookupCache.invalidateContainer(env, warehouseId, containerId, orderNumber);
+
         return result;
     }
 
-    private List<Map<String, Object>> queryTable(Connection conn, String sql, String... params) throws SQLException {
-        List<Map<String, Object>> rows = new ArrayList<>();
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            for (int i = 0; i < params.length; i++) {
-                ps.setString(i + 1, params[i]);
-            }
-            try (ResultSet rs = ps.executeQuery()) {
-                ResultSetMetaData meta = rs.getMetaData();
-                int colCount = meta.getColumnCount();
-                while (rs.next()) {
-                    Map<String, Object> row = new LinkedHashMap<>();
-                    for (int i = 1; i <= colCount; i++) {
-                        row.put(meta.getColumnLabel(i), rs.getObject(i));
-                    }
-                    rows.add(row);
-                }
-            }
-        }
-        return rows;
+    private ColumnarTable queryTable(Connection conn, String sql, String... params) throws SQLException {
+        return ColumnarResultMapper.query(conn, 0, sql, (Object[]) params);
     }
 }
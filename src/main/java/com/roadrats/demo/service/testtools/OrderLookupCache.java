@@ -0,0 +1,184 @@
+package com.roadrats.demo.service.testtools;
+
+import com.roadrats.demo.config.Wms360Config;
+import com.roadrats.demo.model.testtools.ColumnarTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Short-lived cache of order-lookup diagnostic tables, keyed by (env, stack, wh, order,
+ * container, groups), so re-opening the same panel while stepping through a test doesn't rerun
+ * every query. Entries live for roadrats.wms360.lookup.cache.ttl-seconds (0 turns the cache
+ * off), at most roadrats.wms360.lookup.cache.max-entries are kept (least recently used go first).
+ *
+ * Ship, setup and fulfillment actions call {@link #invalidateOrder} / {@link #invalidateContainer}
+ * so a lookup after an action always goes back to the database. Each entry remembers the
+ * containers that appeared in its tables, so a container action also drops lookups that were
+ * made by order number.
+ */
+@Service
+public class OrderLookupCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderLookupCache.class);
+
+    private final Wms360Config config;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long invalidations;
+
+    private static final class Entry {
+        final String env;
+        final String warehouseId;
+        final String orderNumber;
+        final Set<String> containerIds;
+        final List<Map<String, Object>> tables;
+        final long createdMillis = System.currentTimeMillis();
+
+        Entry(String env, String warehouseId, String orderNumber, Set<String> containerIds, List<Map<String, Object>> tables) {
+            this.env = env;
+            this.warehouseId = warehouseId;
+            this.orderNumber = orderNumber;
+            this.containerIds = containerIds;
+            this.tables = tables;
+        }
+    }
+
+    public OrderLookupCache(Wms360Config config) {
+        this.config = config;
+    }
+
+    public boolean isEnabled() {
+        return config.getLookupCacheTtlSeconds() > 0;
+    }
+
+    /**
+     * Cached tables for the key, or null. cachedAtOut (if given) receives the entry's creation time.
+     */
+    public synchronized List<Map<String, Object>> get(String env, String stack, String warehouseId, String orderNumber,
+                                                      String containerId, Set<String> groups, long[] cachedAtOut) {
+        if (!isEnabled()) {
+            return null;
+        }
+        String key = key(env, stack, warehouseId, orderNumber, containerId, groups);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.createdMillis > config.getLookupCacheTtlSeconds() * 1000L) {
+            entries.remove(key);
+            return null;
+        }
+        if (cachedAtOut != null && cachedAtOut.length > 0) {
+            cachedAtOut[0] = entry.createdMillis;
+        }
+        return new ArrayList<>(entry.tables);
+    }
+
+    /**
+     * Take before running the queries and pass to {@link #put}, so results that were in flight
+     * while an action invalidated the cache are not stored.
+     */
+    public synchronized long token() {
+        return invalidations;
+    }
+
+    public synchronized void put(String env, String stack, String warehouseId, String orderNumber, String containerId,
+                                 Set<String> groups, List<Map<String, Object>> tables, long token) {
+        if (!isEnabled() || orderNumber == null || token != invalidations) {
+            return;
+        }
+        Set<String> containers = new HashSet<>();
+        if (containerId != null) {
+            containers.add(containerId);
+        }
+        for (Map<String, Object> table : tables) {
+            if (table.get("table") instanceof ColumnarTable t) {
+                for (int r = 0; r < t.getRowCount(); r++) {
+                    String container = t.getString(r, "container_id");
+                    if (container != null) {
+                        containers.add(container);
+                    }
+                }
+            }
+        }
+        entries.put(key(env, stack, warehouseId, orderNumber, containerId, groups),
+                new Entry(Wms360Config.isProd(env) ? "prod" : "test", warehouseId, orderNumber, containers, List.copyOf(tables)));
+        int max = Math.max(1, config.getLookupCacheMaxEntries());
+        Iterator<String> eldest = entries.keySet().iterator();
+        while (entries.size() > max && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drop every cached lookup of the order (any stack, container or group selection).
+     */
+    public synchronized void invalidateOrder(String env, String warehouseId, String orderNumber) {
+        invalidations++;
+        String nEnv = Wms360Config.isProd(env) ? "prod" : "test";
+        int removed = removeIf(e -> e.env.equals(nEnv) && Objects.equals(e.warehouseId, warehouseId)
+                && Objects.equals(e.orderNumber, orderNumber));
+        if (removed > 0) {
+            logger.debug("Invalidated {} cached lookup(s) for {}/{}/{}", removed, nEnv, warehouseId, orderNumber);
+        }
+    }
+
+    /**
+     * Drop every cached lookup of the container's order: orderNumber (the caller's resolution of
+     * the container, may be null) plus the order of any entry whose key or tables mention the
+     * container. Lookups of that order by order number or for other groups go too, not just the
+     * entries whose rows list the container.
+     */
+    public synchronized void invalidateContainer(String env, String warehouseId, String containerId, String orderNumber) {
+        invalidations++;
+        String nEnv = Wms360Config.isProd(env) ? "prod" : "test";
+        Set<String> orders = new HashSet<>();
+        if (orderNumber != null) {
+            orders.add(orderNumber.trim());
+        }
+        for (Entry e : entries.values()) {
+            if (e.env.equals(nEnv) && Objects.equals(e.warehouseId, warehouseId)
+                    && containerId != null && e.containerIds.contains(containerId.trim())) {
+                orders.add(e.orderNumber);
+            }
+        }
+        int removed = removeIf(e -> e.env.equals(nEnv) && Objects.equals(e.warehouseId, warehouseId)
+                && (orders.contains(e.orderNumber)
+                    || containerId != null && e.containerIds.contains(containerId.trim())));
+        if (removed > 0) {
+            logger.debug("Invalidated {} cached lookup(s) for container {}/{}/{} (orders {})",
+                    removed, nEnv, warehouseId, containerId, orders);
+        }
+    }
+
+    // Caller holds the monitor
+    private int removeIf(Predicate<Entry> predicate) {
+        int removed = 0;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (predicate.test(it.next())) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private static String key(String env, String stack, String warehouseId, String orderNumber, String containerId,
+                              Set<String> groups) {
+        String groupKey = "";
+        if (groups != null && !groups.isEmpty()) {
+            TreeSet<String> sorted = new TreeSet<>();
+            groups.forEach(g -> sorted.add(g.trim().toLowerCase(Locale.ROOT)));
+            groupKey = String.join(",", sorted);
+        }
+        return (Wms360Config.isProd(env) ? "prod" : "test") + "|" + stack + "|" + warehouseId + "|" + orderNumber
+                + "|" + containerId + "|" + groupKey;
+    }
+}
@@ -1,12 +1,21 @@
 package com.roadrats.demo.service.testtools;
 
 import com.roadrats.demo.config.Wms360Config;
+import com.roadrats.demo.model.testtools.ColumnarTable;
+import com.roadrats.demo.repository.testtools.ColumnarResultMapper;
+import com.roadrats.demo.repository.testtools.Wms360DataSourceRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -14,16 +23,81 @@ public class OrderLookupService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderLookupService.class);
 
-    private final Wms360Config config;
+    private static final int BULK_RESOLVE_CHUNK = 500;
 
-    public OrderLookupService(Wms360Config config) {
+    private final Wms360Config config;
+    private final Wms360DataSourceRegistry dataSources;
+    private final OrderLookupCache lookupCache;
+    private final DeferredLookupRegistry deferredLookups;
+    private final ExecutorService lookupExecutor;
+    private final ExecutorService bulkQueryExecutor;
+    private final Lane interactiveLane;
+    private final Lane bulkLane;
+    private final ExecutorService deferredQueryExecutor;
+    private final Lane deferredLane;
+    // Deferred lookups running at once; one waiter thread each, bounded by lookup.slow-deadline-ms
+    private final Semaphore deferredRuns;
+    private final ExecutorService deferredExecutor;
+
+    public OrderLookupService(Wms360Config config, Wms360DataSourceRegistry dataSources, OrderLookupCache lookupCache,
+                              DeferredLookupRegistry deferredLookups) {
         this.config = config;
+        this.dataSources = dataSources;
+        this.lookupCache = lookupCache;
+        this.deferredLookups = deferredLookups;
+        // Enough workers for both stacks of a lookup at full parallelism
+        this.lookupExecutor = Executors.newFixedThreadPool(Math.max(2, config.getLookupParallelism() * 2));
+        // Bulk runs never hold a whole pool: at least one connection per (env, stack) stays free
+        int bulkConnections = Math.max(1, Math.min(config.getBulkMaxConnections(), config.getPoolMaxSize() - 1));
+        this.bulkQueryExecutor = Executors.newFixedThreadPool(Math.max(1, config.getBulkConcurrency()) * bulkConnections * 2);
+        this.interactiveLane = new Lane(lookupExecutor, 0);
+        this.bulkLane = new Lane(bulkQueryExecutor, bulkConnections);
+        // Slow queries get their own threads and a couple of connections, not lookupExecutor's
+        int maxDeferred = Math.max(1, config.getLookupDeferredMaxRuns());
+        int deferredConnections = Math.max(1, Math.min(config.getLookupDeferredMaxConnections(), config.getPoolMaxSize() - 1));
+        this.deferredQueryExecutor = Executors.newFixedThreadPool(maxDeferred * deferredConnections * 2);
+        this.deferredLane = new Lane(deferredQueryExecutor, deferredConnections);
+        this.deferredRuns = new Semaphore(maxDeferred);
+        this.deferredExecutor = Executors.newFixedThreadPool(maxDeferred);
+    }
+
+    /**
+     * Threads and connection permits a {@link DiagnosticRun} draws from. Interactive lookups use
+     * lookupExecutor with no extra limit; bulk runs use their own threads and at most
+     * maxConnections connections per (env, stack), so a large bulk run can't starve single lookups.
+     */
+    private static final class Lane {
+        final ExecutorService executor;
+        final int maxConnections;
+        final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+        Lane(ExecutorService executor, int maxConnections) {
+            this.executor = executor;
+            this.maxConnections = maxConnections;
+        }
+
+        /**
+         * Connection permits for env/stack, or null when the lane has no limit of its own.
+         */
+        Semaphore permits(String env, String stack) {
+            if (maxConnections <= 0) {
+                return null;
+            }
+            return permits.computeIfAbsent(env + "|" + stack, k -> new Semaphore(maxConnections, true));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lookupExecutor.shutdownNow();
+        bulkQueryExecutor.shutdownNow();
+        deferredQueryExecutor.shutdownNow();
+        deferredExecutor.shutdownNow();
     }
 
     /**
      * @param stack "aad", "io", or "both"
      */
-    @SuppressWarnings("unchecked")
     public Map<String, Object> lookupOrder(String searchType, String searchValue, String warehouseId, String stack, String env) {
         Map<String, Object> response = new LinkedHashMap<>();
         response.put("searchType", searchType);
@@ -31,13 +105,6 @@ public class OrderLookupService {
         response.put("stack", stack);
         response.put("queriedAt", new java.util.Date().toString());
 
-        try {
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            response.put("error", "JDBC driver not found: " + e.getMessage());
-            return response;
-        }
-
         boolean queryAad = "aad".equals(stack) || "both".equals(stack);
         boolean queryIo = "io".equals(stack) || "both".equals(stack);
 
@@ -53,12 +120,11 @@ public class OrderLookupService {
         }
 
         // Resolve identifiers on the primary stack
-        String resolveUrl = queryAad ? config.buildAadJdbcUrl(env) : config.buildIoJdbcUrl(env);
         String orderNumber = null;
         String containerId = null;
         String resolvedWhId = warehouseId;
 
-        try (Connection conn = DriverManager.getConnection(resolveUrl)) {
+        try (Connection conn = dataSources.getConnection(env, queryAad ? Wms360DataSourceRegistry.AAD : Wms360DataSourceRegistry.IO)) {
             conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
 
             switch (searchType) {
@@ -66,7 +132,7 @@ public class OrderLookupService {
                     Map<String, Object> omsResult = executeQuery(conn,
                         "SELECT TOP 1 order_number, wh_id FROM t_order_detail WHERE oms_order_number = ?",
                         searchValue);
-                    List<Map<String, Object>> omsRows = (List<Map<String, Object>>) omsResult.get("rows");
+                    List<Map<String, Object>> omsRows = rows(omsResult);
                     if (!omsRows.isEmpty()) {
                         orderNumber = String.valueOf(omsRows.get(0).get("order_number"));
                         resolvedWhId = String.valueOf(omsRows.get(0).get("wh_id"));
@@ -78,7 +144,7 @@ public class OrderLookupService {
                     Map<String, Object> cResult = executeQuery(conn,
                         "SELECT TOP 1 order_number FROM t_pick_container WHERE wh_id = ? AND container_id = ?",
                         warehouseId, searchValue);
-                    List<Map<String, Object>> cRows = (List<Map<String, Object>>) cResult.get("rows");
+                    List<Map<String, Object>> cRows = rows(cResult);
                     if (!cRows.isEmpty()) {
                         orderNumber = String.valueOf(cRows.get(0).get("order_number"));
                     }
@@ -90,7 +156,7 @@ public class OrderLookupService {
                     Map<String, Object> oResult = executeQuery(conn,
                         "SELECT TOP 1 container_id FROM t_pick_container WHERE wh_id = ? AND order_number = ?",
                         warehouseId, searchValue);
-                    List<Map<String, Object>> oRows = (List<Map<String, Object>>) oResult.get("rows");
+                    List<Map<String, Object>> oRows = rows(oResult);
                     if (!oRows.isEmpty()) {
                         containerId = String.valueOf(oRows.get(0).get("container_id"));
                     }
@@ -112,29 +178,8 @@ public class OrderLookupService {
 
         logger.info("Resolved: wh={}, order={}, container={}, stack={}", resolvedWhId, orderNumber, containerId, stack);
 
-        List<Map<String, Object>> tables = new ArrayList<>();
-
-        if (queryAad) {
-            try (Connection conn = DriverManager.getConnection(config.buildAadJdbcUrl(env))) {
-                conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
-                tables.addAll(buildAadTables(conn, orderNumber, containerId, resolvedWhId));
-            } catch (SQLException e) {
-                logger.error("AAD connection failed", e);
-                tables.add(errorTable("aad_connection", "AAD Connection Error", "AAD", "Connection",
-                    "Failed to connect to " + config.getAadServer(env) + ": " + e.getMessage()));
-            }
-        }
-
-        if (queryIo) {
-            try (Connection conn = DriverManager.getConnection(config.buildIoJdbcUrl(env))) {
-                conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
-                tables.addAll(buildIoTables(conn, orderNumber, containerId, resolvedWhId));
-            } catch (SQLException e) {
-                logger.error("IO connection failed", e);
-                tables.add(errorTable("io_connection", "IO Connection Error", "IO", "Connection",
-                    "Failed to connect to " + config.getIoServer(env) + ": " + e.getMessage()));
-            }
-        }
+        List<Map<String, Object>> tables = runStacks(response, env, queryAad, queryIo, orderNumber, containerId, resolvedWhId, null,
+                false);
 
         response.put("tables", tables);
         logger.info("Order lookup complete: {} tables returned for stack={}", tables.size(), stack);
@@ -157,13 +202,6 @@ public class OrderLookupService {
         response.put("stack", stack);
         response.put("environment", env);
 
-        try {
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            response.put("error", "JDBC driver not found: " + e.getMessage());
-            return response;
-        }
-
         String oms = emptyToNull(omsOrderNumber);
         String ord = emptyToNull(orderNumber);
         String cont = emptyToNull(containerId);
@@ -188,24 +226,40 @@ public class OrderLookupService {
             response.put("ioConnection", config.getIoServer(env) + " / " + config.getIoDatabase(env));
         }
 
-        LinkedHashSet<KeyRow> merged = new LinkedHashSet<>();
+        // IO resolves on the lookup pool while AAD runs here; rows merge AAD first either way
+        Future<Set<KeyRow>> ioKeys = useIo
+                ? lookupExecutor.submit(() -> resolveKeysOnStack(env, Wms360DataSourceRegistry.IO, oms, ord, cont, wh))
+                : null;
 
-        try {
-            if (useAad) {
-                try (Connection conn = DriverManager.getConnection(config.buildAadJdbcUrl(env))) {
-                    conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
-                    merged.addAll(resolveKeysOnConnection(conn, oms, ord, cont, wh));
-                }
+        LinkedHashSet<KeyRow> merged = new LinkedHashSet<>();
+        Map<String, String> stackErrors = new LinkedHashMap<>();
+        if (useAad) {
+            try {
+                merged.addAll(resolveKeysOnStack(env, Wms360DataSourceRegistry.AAD, oms, ord, cont, wh));
+            } catch (SQLException e) {
+                stackErrors.put(Wms360DataSourceRegistry.AAD, e.getMessage());
             }
-            if (useIo) {
-                try (Connection conn = DriverManager.getConnection(config.buildIoJdbcUrl(env))) {
-                    conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
-                    merged.addAll(resolveKeysOnConnection(conn, oms, ord, cont, wh));
-                }
+        }
+        if (ioKeys != null) {
+            try {
+                merged.addAll(ioKeys.get(config.getLookupDeadlineMs(), TimeUnit.MILLISECONDS));
+            } catch (ExecutionException e) {
+                stackErrors.put(Wms360DataSourceRegistry.IO, e.getCause().getMessage());
+            } catch (TimeoutException e) {
+                ioKeys.cancel(true);
+                stackErrors.put(Wms360DataSourceRegistry.IO, "Timed out after " + config.getLookupDeadlineMs() + "ms");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stackErrors.put(Wms360DataSourceRegistry.IO, "Interrupted");
             }
-        } catch (SQLException e) {
-            response.put("error", "Resolution failed: " + e.getMessage());
-            return response;
+        }
+        if (!stackErrors.isEmpty()) {
+            int requested = (useAad ? 1 : 0) + (useIo ? 1 : 0);
+            if (stackErrors.size() == requested) {
+                response.put("error", "Resolution failed: " + String.join("; ", stackErrors.values()));
+                return response;
+            }
+            response.put("stackErrors", stackErrors);
         }
 
         List<Map<String, Object>> keyRows = new ArrayList<>();
@@ -229,6 +283,32 @@ public class OrderLookupService {
             String containerId,
             String stack,
             String env) {
+        return lookupOrderGrouped(warehouseId, orderNumber, containerId, stack, env, null, false);
+    }
+
+    /**
+     * Grouped lookup for a bulk run, limited to the named diagnostic groups (case-insensitive;
+     * null or empty runs all). Every table is in the response (nothing deferred), and queries
+     * run on the bulk threads and connection permits rather than the interactive ones.
+     */
+    public Map<String, Object> lookupOrderGrouped(
+            String warehouseId,
+            String orderNumber,
+            String containerId,
+            String stack,
+            String env,
+            Set<String> groups) {
+        return lookupOrderGrouped(warehouseId, orderNumber, containerId, stack, env, groups, true);
+    }
+
+    private Map<String, Object> lookupOrderGrouped(
+            String warehouseId,
+            String orderNumber,
+            String containerId,
+            String stack,
+            String env,
+            Set<String> groups,
+            boolean bulk) {
         Map<String, Object> response = new LinkedHashMap<>();
         response.put("queriedAt", new java.util.Date().toString());
         response.put("stack", stack);
@@ -237,13 +317,6 @@ public class OrderLookupService {
         response.put("orderNumber", orderNumber);
         response.put("containerId", containerId);
 
-        try {
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            response.put("error", "JDBC driver not found: " + e.getMessage());
-            return response;
-        }
-
         if (warehouseId == null || warehouseId.isEmpty() || orderNumber == null || orderNumber.isEmpty()) {
             response.put("error", "warehouseId and orderNumber are required for grouped lookup");
             return response;
@@ -259,31 +332,122 @@ public class OrderLookupService {
             response.put("ioConnection", config.getIoServer(env) + " / " + config.getIoDatabase(env));
         }
 
-        List<Map<String, Object>> flat = new ArrayList<>();
+        List<Map<String, Object>> flat = runStacks(response, env, queryAad, queryIo, orderNumber, containerId, warehouseId, groups,
+                bulk);
 
-        if (queryAad) {
-            try (Connection conn = DriverManager.getConnection(config.buildAadJdbcUrl(env))) {
-                conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
-                flat.addAll(buildAadTables(conn, orderNumber, containerId, warehouseId));
-            } catch (SQLException e) {
-                flat.add(errorTable("aad_connection", "AAD Connection Error", "AAD", "Connection",
-                    "Failed to connect to " + config.getAadServer(env) + ": " + e.getMessage()));
+        response.put("groups", partitionTablesIntoGroups(flat));
+        response.put("tables", flat);
+        return response;
+    }
+
+    /**
+     * Resolve many OMS numbers, order numbers or container ids at once with IN-list queries
+     * (chunks of {@value #BULK_RESOLVE_CHUNK}) on the primary stack, instead of one query per id.
+     * Returns one entry per (input, order) in input order: input, warehouseId, orderNumber,
+     * containerId, omsOrderNumber, or input plus error when nothing matched.
+     *
+     * @param type "oms", "order" or "container"; order and container need warehouseId
+     */
+    public List<Map<String, Object>> resolveBulk(String type, List<String> values, String warehouseId,
+                                                 String stack, String env) throws SQLException {
+        // Keyed by bulkMatchKey: SQL Server compares case-insensitively and ignores trailing spaces
+        Map<String, String> inputByKey = new LinkedHashMap<>();
+        Map<String, List<Map<String, Object>>> byInput = new LinkedHashMap<>();
+        for (String v : values) {
+            String key = bulkMatchKey(v);
+            if (inputByKey.putIfAbsent(key, v) == null) {
+                byInput.put(key, new ArrayList<>());
             }
         }
 
-        if (queryIo) {
-            try (Connection conn = DriverManager.getConnection(config.buildIoJdbcUrl(env))) {
-                conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
-                flat.addAll(buildIoTables(conn, orderNumber, containerId, warehouseId));
-            } catch (SQLException e) {
-                flat.add(errorTable("io_connection", "IO Connection Error", "IO", "Connection",
-                    "Failed to connect to " + config.getIoServer(env) + ": " + e.getMessage()));
+        String primary = "io".equals(stack) ? Wms360DataSourceRegistry.IO : Wms360DataSourceRegistry.AAD;
+        Semaphore permits = bulkLane.permits(env, primary);
+        try {
+            if (!permits.tryAcquire(config.getLookupDeadlineMs(), TimeUnit.MILLISECONDS)) {
+                throw new SQLException("No " + primary + " connection free for bulk resolution within "
+                        + config.getLookupDeadlineMs() + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a bulk connection", e);
+        }
+        try (Connection conn = dataSources.getConnection(env, primary)) {
+            conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
+            List<String> inputs = new ArrayList<>(inputByKey.values());
+            for (int from = 0; from < inputs.size(); from += BULK_RESOLVE_CHUNK) {
+                List<String> chunk = inputs.subList(from, Math.min(inputs.size(), from + BULK_RESOLVE_CHUNK));
+                String in = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                List<Object> params = new ArrayList<>();
+                String sql;
+                switch (type) {
+                    case "oms":
+                        sql = "SELECT DISTINCT oms_order_number AS input, wh_id, order_number, oms_order_number"
+                            + " FROM t_order_detail WHERE oms_order_number IN (" + in + ")";
+                        break;
+                    case "container":
+                        sql = "SELECT DISTINCT container_id AS input, wh_id, order_number, container_id"
+                            + " FROM t_pick_container WHERE wh_id = ? AND container_id IN (" + in + ")";
+                        params.add(warehouseId);
+                        break;
+                    case "order":
+                    default:
+                        // Like the single lookup: the order stands even without a container, which is just the first one
+                        sql = "SELECT order_number AS input, wh_id, order_number, MIN(container_id) AS container_id"
+                            + " FROM t_pick_container WHERE wh_id = ? AND order_number IN (" + in + ")"
+                            + " GROUP BY wh_id, order_number";
+                        params.add(warehouseId);
+                        break;
+                }
+                params.addAll(chunk);
+                Map<String, Object> r = executeQuery(conn, sql, params.toArray());
+                if (r.containsKey("error")) {
+                    throw new SQLException("Bulk resolution failed: " + r.get("error"));
+                }
+                List<Map<String, Object>> rows = rows(r);
+                for (Map<String, Object> row : rows) {
+                    String key = bulkMatchKey(str(row.get("input")));
+                    List<Map<String, Object>> targets = byInput.get(key);
+                    if (targets == null) {
+                        continue;
+                    }
+                    Map<String, Object> target = new LinkedHashMap<>();
+                    target.put("input", inputByKey.get(key));
+                    target.put("warehouseId", str(row.get("wh_id")));
+                    target.put("orderNumber", str(row.get("order_number")));
+                    target.put("containerId", str(row.get("container_id")));
+                    target.put("omsOrderNumber", str(row.get("oms_order_number")));
+                    targets.add(target);
+                }
             }
+        } finally {
+            permits.release();
         }
 
-        response.put("groups", partitionTablesIntoGroups(flat));
-        response.put("tables", flat);
-        return response;
+        List<Map<String, Object>> resolved = new ArrayList<>();
+        for (Map.Entry<String, List<Map<String, Object>>> entry : byInput.entrySet()) {
+            List<Map<String, Object>> targets = entry.getValue();
+            String input = inputByKey.get(entry.getKey());
+            if (targets.isEmpty() && "order".equals(type)) {
+                Map<String, Object> target = new LinkedHashMap<>();
+                target.put("input", input);
+                target.put("warehouseId", warehouseId);
+                target.put("orderNumber", input);
+                target.put("containerId", null);
+                target.put("omsOrderNumber", null);
+                targets.add(target);
+            } else if (targets.isEmpty()) {
+                Map<String, Object> miss = new LinkedHashMap<>();
+                miss.put("input", input);
+                miss.put("error", "No matching order found");
+                targets.add(miss);
+            }
+            resolved.addAll(targets);
+        }
+        return resolved;
+    }
+
+    private static String bulkMatchKey(String id) {
+        return id == null ? "" : id.trim().toUpperCase(Locale.ROOT);
     }
 
     private static String emptyToNull(String s) {
@@ -331,6 +495,14 @@ public class OrderLookupService {
         }
     }
 
+    private Set<KeyRow> resolveKeysOnStack(String env, String stack, String oms, String ord, String cont, String wh)
+            throws SQLException {
+        try (Connection conn = dataSources.getConnection(env, stack)) {
+            conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
+            return resolveKeysOnConnection(conn, oms, ord, cont, wh);
+        }
+    }
+
     private Set<KeyRow> resolveKeysOnConnection(
             Connection conn,
             String oms,
@@ -344,8 +516,7 @@ public class OrderLookupService {
             Map<String, Object> r = executeQuery(conn,
                 "SELECT DISTINCT wh_id, order_number, oms_order_number FROM t_order_detail WHERE oms_order_number = ?",
                 oms);
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> rows = (List<Map<String, Object>>) r.get("rows");
+            List<Map<String, Object>> rows = rows(r);
             for (Map<String, Object> row : rows) {
                 base.add(new KeyRow(
                     str(row.get("wh_id")),
@@ -357,8 +528,7 @@ public class OrderLookupService {
             Map<String, Object> r = executeQuery(conn,
                 "SELECT DISTINCT order_number FROM t_pick_container WHERE wh_id = ? AND container_id = ?",
                 wh, cont);
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> rows = (List<Map<String, Object>>) r.get("rows");
+            List<Map<String, Object>> rows = rows(r);
             for (Map<String, Object> row : rows) {
                 String on = str(row.get("order_number"));
                 if (on != null) {
@@ -371,8 +541,7 @@ public class OrderLookupService {
             Map<String, Object> r = executeQuery(conn,
                 "SELECT DISTINCT TOP 200 wh_id, order_number FROM t_pick_container WHERE order_number = ?",
                 ord);
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> rows = (List<Map<String, Object>>) r.get("rows");
+            List<Map<String, Object>> rows = rows(r);
             for (Map<String, Object> row : rows) {
                 base.add(new KeyRow(str(row.get("wh_id")), str(row.get("order_number")), null, null));
             }
@@ -419,8 +588,7 @@ public class OrderLookupService {
         Map<String, Object> r = executeQuery(conn,
             "SELECT TOP 1 oms_order_number FROM t_order_detail WHERE wh_id = ? AND order_number = ?",
             whId, orderNumber);
-        @SuppressWarnings("unchecked")
-        List<Map<String, Object>> rows = (List<Map<String, Object>>) r.get("rows");
+        List<Map<String, Object>> rows = rows(r);
         if (rows.isEmpty()) return null;
         return str(rows.get(0).get("oms_order_number"));
     }
@@ -429,8 +597,7 @@ public class OrderLookupService {
         Map<String, Object> r = executeQuery(conn,
             "SELECT DISTINCT container_id FROM t_pick_container WHERE wh_id = ? AND order_number = ?",
             whId, orderNumber);
-        @SuppressWarnings("unchecked")
-        List<Map<String, Object>> rows = (List<Map<String, Object>>) r.get("rows");
+        List<Map<String, Object>> rows = rows(r);
         List<String> ids = new ArrayList<>();
         for (Map<String, Object> row : rows) {
             String c = str(row.get("container_id"));
@@ -479,73 +646,73 @@ public class OrderLookupService {
 
     // ======================== AAD Stack (WMSSQL-TEST / AAD) ========================
 
-    private List<Map<String, Object>> buildAadTables(Connection conn, String orderNumber, String containerId, String whId) {
-        List<Map<String, Object>> tables = new ArrayList<>();
+    private List<DiagnosticQuery> aadQueries(String orderNumber, String containerId, String whId) {
+        List<DiagnosticQuery> tables = new ArrayList<>();
 
         if (orderNumber != null && whId != null) {
-            tables.add(namedQuery(conn, "aad_pick_container", "Pick Container", "AAD", "Pick & Container",
+            tables.add(new DiagnosticQuery("aad_pick_container", "Pick Container", "AAD", "Pick & Container",
                 "SELECT TOP 100 * FROM t_pick_container WHERE wh_id = ? AND order_number = ?", whId, orderNumber));
 
-            tables.add(namedQuery(conn, "aad_pick_detail", "Pick Detail", "AAD", "Pick & Container",
+            tables.add(new DiagnosticQuery("aad_pick_detail", "Pick Detail", "AAD", "Pick & Container",
                 "SELECT TOP 100 * FROM t_pick_detail WHERE wh_id = ? AND order_number = ?", whId, orderNumber));
 
-            tables.add(namedQuery(conn, "aad_al_host_order_master", "Import Order Master", "AAD", "Import",
+            tables.add(new DiagnosticQuery("aad_al_host_order_master", "Import Order Master", "AAD", "Import",
                 "SELECT TOP 100 * FROM t_al_host_order_master WHERE wh_id = ? AND order_number = ?", whId, orderNumber));
 
-            tables.add(namedQuery(conn, "aad_al_host_order_detail", "Import Order Detail", "AAD", "Import",
+            tables.add(new DiagnosticQuery("aad_al_host_order_detail", "Import Order Detail", "AAD", "Import",
                 "SELECT TOP 100 import_notes, * FROM t_al_host_order_detail WHERE wh_id = ? AND order_number = ?", whId, orderNumber));
 
-            tables.add(namedQuery(conn, "aad_order", "Order", "AAD", "Order",
+            tables.add(new DiagnosticQuery("aad_order", "Order", "AAD", "Order",
                 "SELECT TOP 100 * FROM t_order WHERE wh_id = ? AND order_number = ?", whId, orderNumber));
 
-            tables.add(namedQuery(conn, "aad_order_detail", "Order Detail", "AAD", "Order",
+            tables.add(new DiagnosticQuery("aad_order_detail", "Order Detail", "AAD", "Order",
                 "SELECT TOP 100 oms_order_number, * FROM t_order_detail WHERE wh_id = ? AND order_number = ?", whId, orderNumber));
 
-            tables.add(namedQuery(conn, "aad_order_cancel", "Order Cancel", "AAD", "Order",
+            tables.add(new DiagnosticQuery("aad_order_cancel", "Order Cancel", "AAD", "Order",
                 "SELECT TOP 100 * FROM t_order_cancel WHERE wh_id = ? AND order_number = ?", whId, orderNumber));
 
-            tables.add(namedQuery(conn, "aad_order_late_cancel", "Order Late Cancel", "AAD", "Order",
+            tables.add(new DiagnosticQuery("aad_order_late_cancel", "Order Late Cancel", "AAD", "Order",
                 "SELECT TOP 100 * FROM t_order_late_cancel WHERE wh_id = ? AND order_number = ?", whId, orderNumber));
 
-            tables.add(namedQuery(conn, "aad_tran_log", "Transaction Log", "AAD", "Logs",
+            tables.add(new DiagnosticQuery("aad_tran_log", "Transaction Log", "AAD", "Logs",
                 "SELECT TOP 100 * FROM t_tran_log WHERE wh_id = ? AND control_number = ? ORDER BY tran_log_id DESC", whId, orderNumber));
         }
 
         if (containerId != null && whId != null) {
-            tables.add(namedQuery(conn, "aad_pick_container_status_log", "Container Status Log", "AAD", "Pick & Container",
+            tables.add(new DiagnosticQuery("aad_pick_container_status_log", "Container Status Log", "AAD", "Pick & Container",
                 "SELECT TOP 100 * FROM t_pick_container_status_log WHERE wh_id = ? AND container_id = ? ORDER BY unique_id DESC", whId, containerId));
 
-            tables.add(namedQuery(conn, "aad_hu_master", "HU Master", "AAD", "Shipping",
+            tables.add(new DiagnosticQuery("aad_hu_master", "HU Master", "AAD", "Shipping",
                 "SELECT TOP 100 * FROM t_hu_master WHERE wh_id = ? AND hu_id = ?", whId, containerId));
 
-            tables.add(namedQuery(conn, "aad_stored_item", "Stored Item", "AAD", "Shipping",
+            tables.add(new DiagnosticQuery("aad_stored_item", "Stored Item", "AAD", "Shipping",
                 "SELECT TOP 100 * FROM t_stored_item WHERE wh_id = ? AND hu_id = ?", whId, containerId));
 
-            tables.add(namedQuery(conn, "aad_ship_confirm_queue", "Ship Confirm Queue", "AAD", "Shipping",
+            tables.add(new DiagnosticQuery("aad_ship_confirm_queue", "Ship Confirm Queue", "AAD", "Shipping",
                 "SELECT TOP 100 * FROM t_pick_container_ship_confirm_queue WHERE wh_id = ? AND container_id = ?", whId, containerId));
 
-            tables.add(namedQuery(conn, "aad_ship_confirm_queue_log", "Ship Confirm Queue Log", "AAD", "Shipping",
+            tables.add(new DiagnosticQuery("aad_ship_confirm_queue_log", "Ship Confirm Queue Log", "AAD", "Shipping",
                 "SELECT TOP 100 * FROM t_pick_container_ship_confirm_queue_log WHERE wh_id = ? AND container_id = ?", whId, containerId));
 
-            tables.add(namedQuery(conn, "aad_ship_confirm_log", "Ship Confirm Log", "AAD", "Shipping",
+            tables.add(new DiagnosticQuery("aad_ship_confirm_log", "Ship Confirm Log", "AAD", "Shipping",
                 "SELECT TOP 100 * FROM t_pick_container_ship_confirm_log WHERE wh_id = ? AND container_id = ?", whId, containerId));
 
-            tables.add(namedQuery(conn, "aad_divert_reason", "Divert Reason", "AAD", "Shipping",
+            tables.add(new DiagnosticQuery("aad_divert_reason", "Divert Reason", "AAD", "Shipping",
                 "SELECT TOP 100 * FROM t_pick_container_divert_reason WHERE wh_id = ? AND container_id = ?", whId, containerId));
         }
 
         // Exception log uses both identifiers
         if (whId != null) {
             if (orderNumber != null && containerId != null) {
-                tables.add(namedQuery(conn, "aad_exception_log", "Exception Log", "AAD", "Logs",
+                tables.add(new DiagnosticQuery("aad_exception_log", "Exception Log", "AAD", "Logs",
                     "SELECT TOP 100 * FROM t_exception_log WHERE wh_id = ? AND (control_number = ? OR hu_id = ?) ORDER BY exception_id DESC",
                     whId, orderNumber, containerId));
             } else if (orderNumber != null) {
-                tables.add(namedQuery(conn, "aad_exception_log", "Exception Log", "AAD", "Logs",
+                tables.add(new DiagnosticQuery("aad_exception_log", "Exception Log", "AAD", "Logs",
                     "SELECT TOP 100 * FROM t_exception_log WHERE wh_id = ? AND control_number = ? ORDER BY exception_id DESC",
                     whId, orderNumber));
             } else {
-                tables.add(namedQuery(conn, "aad_exception_log", "Exception Log", "AAD", "Logs",
+                tables.add(new DiagnosticQuery("aad_exception_log", "Exception Log", "AAD", "Logs",
                     "SELECT TOP 100 * FROM t_exception_log WHERE wh_id = ? AND hu_id = ? ORDER BY exception_id DESC",
                     whId, containerId));
             }
@@ -556,89 +723,88 @@ public class OrderLookupService {
 
     // ======================== IO Stack (WMSSQL-IO-TEST / AAD_IMPORT_ORDER) ========================
 
-    @SuppressWarnings("unchecked")
-    private List<Map<String, Object>> buildIoTables(Connection conn, String orderNumber, String containerId, String whId) {
-        List<Map<String, Object>> tables = new ArrayList<>();
+    private List<DiagnosticQuery> ioQueries(String orderNumber, String containerId, String whId) {
+        List<DiagnosticQuery> tables = new ArrayList<>();
 
         if (orderNumber == null || whId == null) return tables;
 
         // --- Pre-Processing ---
-        tables.add(namedQuery(conn, "io_event_queue", "Event Queue (Pre-Processing)", "IO", "Pre-Processing",
-            "SELECT TOP 50 * FROM ADV..t_event_queue WHERE event_data LIKE '%' + ? + '%'", orderNumber));
+        tables.add(new DiagnosticQuery("io_event_queue", "Event Queue (Pre-Processing)", "IO", "Pre-Processing",
+            "SELECT TOP 50 * FROM ADV..t_event_queue WHERE event_data LIKE '%' + ? + '%'", orderNumber).slow());
 
-        tables.add(namedQuery(conn, "io_xml_imp_oo_master", "XML Import OO Master", "IO", "Pre-Processing",
+        tables.add(new DiagnosticQuery("io_xml_imp_oo_master", "XML Import OO Master", "IO", "Pre-Processing",
             "SELECT TOP 50 * FROM t_xml_imp_oo_master WHERE OrderNumber = ?", orderNumber));
 
-        tables.add(namedQuery(conn, "io_xml_imp_oo_info", "XML Import OO Info", "IO", "Pre-Processing",
+        tables.add(new DiagnosticQuery("io_xml_imp_oo_info", "XML Import OO Info", "IO", "Pre-Processing",
             "SELECT TOP 50 * FROM t_xml_imp_oo_info WHERE hjs_parent_id = (SELECT TOP 1 hjs_node_id FROM t_xml_imp_oo_master WHERE OrderNumber = ?)",
             orderNumber));
 
-        tables.add(namedQuery(conn, "io_xml_imp_oo_details", "XML Import OO Details", "IO", "Pre-Processing",
+        tables.add(new DiagnosticQuery("io_xml_imp_oo_details", "XML Import OO Details", "IO", "Pre-Processing",
             "SELECT TOP 50 * FROM t_xml_imp_oo_details WHERE hjs_parent_id = (SELECT TOP 1 hjs_node_id FROM t_xml_imp_oo_master WHERE OrderNumber = ?)",
             orderNumber));
 
-        tables.add(namedQuery(conn, "io_link_work_queue", "Link Work Queue", "IO", "Pre-Processing",
+        tables.add(new DiagnosticQuery("io_link_work_queue", "Link Work Queue", "IO", "Pre-Processing",
             "SELECT TOP 50 * FROM t_link_work_queue WHERE event_type = 1 AND event_data = (SELECT TOP 1 hjs_parent_id FROM t_xml_imp_oo_master WHERE OrderNumber = ?) AND date_added > GETDATE() - 7",
-            orderNumber));
+            orderNumber).slow());
 
-        tables.add(namedQuery(conn, "io_event_queue_cls", "Event Queue (Class 6)", "IO", "Pre-Processing",
+        tables.add(new DiagnosticQuery("io_event_queue_cls", "Event Queue (Class 6)", "IO", "Pre-Processing",
             "SELECT TOP 50 * FROM ADV..t_event_queue WHERE event_class = 6 AND event_data = " +
             "(SELECT CONCAT(N'SYS_EVENT_ID|', CONVERT(NVARCHAR(50), l.event_id)) " +
             "FROM t_link_work_queue l WHERE event_type = 1 " +
             "AND event_data = (SELECT TOP 1 hjs_parent_id FROM t_xml_imp_oo_master WHERE OrderNumber = ?) " +
-            "AND date_added > GETDATE() - 7)", orderNumber));
+            "AND date_added > GETDATE() - 7)", orderNumber).slow());
 
         // --- Queues ---
-        tables.add(namedQuery(conn, "io_cls_xml_log", "CLS XML Log", "IO", "Queues",
+        tables.add(new DiagnosticQuery("io_cls_xml_log", "CLS XML Log", "IO", "Queues",
             "SELECT TOP 50 * FROM WMS_LOG..t_cls_xml_log WHERE order_number = ? AND wh_id = ? ORDER BY 2", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_cls_rate_queue", "CLS Rate Queue", "IO", "Queues",
+        tables.add(new DiagnosticQuery("io_cls_rate_queue", "CLS Rate Queue", "IO", "Queues",
             "SELECT TOP 50 * FROM t_cls_rate_queue WHERE order_number = ? AND wh_id = ? ORDER BY 2", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_al_order_import_queue", "Order Import Queue", "IO", "Queues",
+        tables.add(new DiagnosticQuery("io_al_order_import_queue", "Order Import Queue", "IO", "Queues",
             "SELECT TOP 50 * FROM t_al_order_import_queue WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_container_optimize_queue", "Container Optimize Queue", "IO", "Queues",
+        tables.add(new DiagnosticQuery("io_container_optimize_queue", "Container Optimize Queue", "IO", "Queues",
             "SELECT TOP 50 * FROM t_container_optimize_queue WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_cls_rate_order_queue", "CLS Rate Order Queue", "IO", "Queues",
+        tables.add(new DiagnosticQuery("io_cls_rate_order_queue", "CLS Rate Order Queue", "IO", "Queues",
             "SELECT TOP 50 * FROM t_cls_rate_order_queue WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_cls_manifest_queue", "CLS Manifest Queue", "IO", "Queues",
+        tables.add(new DiagnosticQuery("io_cls_manifest_queue", "CLS Manifest Queue", "IO", "Queues",
             "SELECT TOP 50 * FROM t_cls_manifest_queue WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_cls_rate_hold_queue", "CLS Rate Hold Queue", "IO", "Queues",
+        tables.add(new DiagnosticQuery("io_cls_rate_hold_queue", "CLS Rate Hold Queue", "IO", "Queues",
             "SELECT TOP 50 * FROM t_cls_rate_hold_queue WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_export_order_queue", "Export Order Queue", "IO", "Queues",
+        tables.add(new DiagnosticQuery("io_export_order_queue", "Export Order Queue", "IO", "Queues",
             "SELECT TOP 50 * FROM t_export_order_queue WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
         // --- Order Tables (IO) ---
-        tables.add(namedQuery(conn, "io_al_host_order_master", "Import Order Master", "IO", "Order (IO)",
+        tables.add(new DiagnosticQuery("io_al_host_order_master", "Import Order Master", "IO", "Order (IO)",
             "SELECT TOP 100 import_notes, * FROM t_al_host_order_master WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_al_host_order_detail", "Import Order Detail", "IO", "Order (IO)",
+        tables.add(new DiagnosticQuery("io_al_host_order_detail", "Import Order Detail", "IO", "Order (IO)",
             "SELECT TOP 100 import_notes, * FROM t_al_host_order_detail WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_order", "Order", "IO", "Order (IO)",
+        tables.add(new DiagnosticQuery("io_order", "Order", "IO", "Order (IO)",
             "SELECT TOP 100 cold_profile, express_eligible, * FROM t_order WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_order_detail", "Order Detail", "IO", "Order (IO)",
+        tables.add(new DiagnosticQuery("io_order_detail", "Order Detail", "IO", "Order (IO)",
             "SELECT TOP 100 * FROM t_order_detail WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_pick_detail", "Pick Detail (with UOM)", "IO", "Pick & Container (IO)",
+        tables.add(new DiagnosticQuery("io_pick_detail", "Pick Detail (with UOM)", "IO", "Pick & Container (IO)",
             "SELECT TOP 100 * FROM t_pick_detail pkd INNER JOIN t_item_uom uom ON uom.wh_id = pkd.wh_id AND uom.item_number = pkd.item_number " +
             "WHERE pkd.order_number = ? AND pkd.wh_id = ?", orderNumber, whId));
 
-        tables.add(namedQuery(conn, "io_pick_container", "Pick Container", "IO", "Pick & Container (IO)",
+        tables.add(new DiagnosticQuery("io_pick_container", "Pick Container", "IO", "Pick & Container (IO)",
             "SELECT TOP 100 service_level, transit_days, sat_delivery_flag, * FROM t_pick_container WHERE order_number = ? AND wh_id = ?", orderNumber, whId));
 
         if (containerId != null) {
-            tables.add(namedQuery(conn, "io_pick_container_label", "Pick Container Label", "IO", "Pick & Container (IO)",
+            tables.add(new DiagnosticQuery("io_pick_container_label", "Pick Container Label", "IO", "Pick & Container (IO)",
                 "SELECT TOP 100 * FROM t_pick_container_label WHERE container_id = ? AND wh_id = ?", containerId, whId));
         }
 
-        tables.add(namedQuery(conn, "io_work_queue", "Work Queue", "IO", "Pick & Container (IO)",
+        tables.add(new DiagnosticQuery("io_work_queue", "Work Queue", "IO", "Pick & Container (IO)",
             "SELECT TOP 100 wkq.* FROM t_work_q wkq INNER JOIN t_pick_detail pkd ON pkd.work_q_id = wkq.work_q_id AND pkd.wh_id = wkq.wh_id " +
             "WHERE pkd.order_number = ? AND pkd.wh_id = ?", orderNumber, whId));
 
@@ -647,84 +813,541 @@ public class OrderLookupService {
 
     // ======================== Helpers ========================
 
-    private Map<String, Object> namedQuery(Connection conn, String key, String displayName, String source, String group, String sql, Object... params) {
-        Map<String, Object> result = executeQuery(conn, sql, params);
-        result.put("name", key);
-        result.put("displayName", displayName);
-        result.put("source", source);
-        result.put("group", group);
+    /**
+     * One named diagnostic table: where it shows up in the UI and the query that fills it.
+     */
+    private static final class DiagnosticQuery {
+        final String key;
+        final String displayName;
+        final String source;
+        final String group;
+        final String sql;
+        final Object[] params;
+        boolean slow;
+
+        DiagnosticQuery(String key, String displayName, String source, String group, String sql, Object... params) {
+            this.key = key;
+            this.displayName = displayName;
+            this.source = source;
+            this.group = group;
+            this.sql = sql;
+            this.params = params;
+        }
+
+        /**
+         * Mark as inherently slow (scans, nested queue lookups): deferred on interactive lookups.
+         */
+        DiagnosticQuery slow() {
+            this.slow = true;
+            return this;
+        }
+    }
+
+    /**
+     * Diagnostic queries for one stack, in flight. Up to roadrats.wms360.lookup.parallelism
+     * workers each hold one pooled connection and take the next query until none are left, so
+     * a lookup takes about as long as its slowest query rather than the sum. Every query has its
+     * own statement timeout; queries not started by the lookup deadline come back as error
+     * tables. Start both stacks before awaiting either to run them side by side.
+     */
+    private final class DiagnosticRun {
+        final String env;
+        final String stack;
+        final List<DiagnosticQuery> queries;
+        final long startTime = System.currentTimeMillis();
+        final long deadlineMs;
+        final long deadline;
+        final Consumer<Map<String, Object>> onTable;
+        final Semaphore permits;
+        final List<List<Integer>> units;
+        final AtomicReferenceArray<Map<String, Object>> results;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<SQLException> connectFailure = new AtomicReference<>();
+        final AtomicInteger skipped = new AtomicInteger();
+        // Tables that came back with an error (statement timeout or any other SQL failure)
+        final AtomicInteger failed = new AtomicInteger();
+        final List<Future<?>> futures = new ArrayList<>();
+
+        DiagnosticRun(String env, String stack, List<DiagnosticQuery> queries, Lane lane) {
+            this(env, stack, queries, lane, config.getLookupDeadlineMs(), null);
+        }
+
+        /**
+         * @param onTable if non-null, called with each table as soon as it is finished (from a worker thread)
+         */
+        DiagnosticRun(String env, String stack, List<DiagnosticQuery> queries, Lane lane, long deadlineMs,
+                      Consumer<Map<String, Object>> onTable) {
+            this.env = env;
+            this.stack = stack;
+            this.queries = queries;
+            this.permits = lane.permits(env, stack);
+            this.deadlineMs = deadlineMs;
+            this.deadline = startTime + deadlineMs;
+            this.onTable = onTable;
+            this.results = new AtomicReferenceArray<>(queries.size());
+            this.units = workUnits(queries);
+            int workers = Math.min(Math.max(1, config.getLookupParallelism()), units.size());
+            if (lane.maxConnections > 0) {
+                workers = Math.min(workers, lane.maxConnections);
+            }
+            for (int w = 0; w < workers; w++) {
+                futures.add(lane.executor.submit(this::work));
+            }
+        }
+
+        private void work() {
+            if (permits != null) {
+                try {
+                    if (!permits.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                        // Whatever this worker would have run is reported as not finished by await()
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            try {
+                // Other workers may have drained the queue while this one waited for a permit
+                if (next.get() < units.size()) {
+                    runUnits();
+                }
+            } finally {
+                if (permits != null) {
+                    permits.release();
+                }
+            }
+        }
+
+        private void runUnits() {
+            try (Connection conn = dataSources.getConnection(env, stack)) {
+                conn.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
+                int u;
+                while ((u = next.getAndIncrement()) < units.size()) {
+                    List<Integer> unit = units.get(u);
+                    if (System.currentTimeMillis() >= deadline) {
+                        skipped.addAndGet(unit.size());
+                        for (int i : unit) {
+                            DiagnosticQuery q = queries.get(i);
+                            store(i, errorTable(q.key, q.displayName, q.source, q.group, "Skipped: lookup deadline reached"));
+                        }
+                    } else if (unit.size() == 1) {
+                        DiagnosticQuery q = queries.get(unit.get(0));
+                        store(unit.get(0), namedQuery(conn, q, cappedTimeout(queryTimeoutSeconds(q), deadline)));
+                    } else {
+                        List<DiagnosticQuery> batch = new ArrayList<>();
+                        unit.forEach(i -> batch.add(queries.get(i)));
+                        List<Map<String, Object>> tables = namedBatch(conn, batch, deadline);
+                        for (int k = 0; k < unit.size(); k++) {
+                            if (k < tables.size()) {
+                                store(unit.get(k), tables.get(k));
+                            } else {
+                                skipped.incrementAndGet();
+                                DiagnosticQuery q = batch.get(k);
+                                store(unit.get(k), errorTable(q.key, q.displayName, q.source, q.group, "Skipped: lookup deadline reached"));
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                connectFailure.compareAndSet(null, e);
+            }
+        }
+
+        private void store(int i, Map<String, Object> table) {
+            if (table.containsKey("error")) {
+                failed.incrementAndGet();
+            }
+            results.set(i, table);
+            if (onTable != null) {
+                onTable.accept(table);
+            }
+        }
+
+        /**
+         * True once awaited if every query ran and returned rows: none skipped, left without a
+         * connection, or failed (including statement timeouts).
+         */
+        boolean isComplete() {
+            return skipped.get() == 0 && failed.get() == 0;
+        }
+
+        /**
+         * Wait (up to the deadline) and return the tables in the order the queries were given.
+         *
+         * @throws SQLException if no connection could be opened at all (nothing ran)
+         */
+        List<Map<String, Object>> await() throws SQLException {
+            for (Future<?> future : futures) {
+                try {
+                    future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.cancel(true);
+                } catch (ExecutionException e) {
+                    logger.warn("Diagnostic worker failed for {}/{}: {}", env, stack, e.getCause().getMessage());
+                }
+            }
+
+            List<Map<String, Object>> tables = new ArrayList<>(queries.size());
+            int missing = 0;
+            for (int i = 0; i < queries.size(); i++) {
+                Map<String, Object> table = results.get(i);
+                if (table == null) {
+                    missing++;
+                    DiagnosticQuery q = queries.get(i);
+                    String reason = connectFailure.get() != null
+                            ? "Not run: " + connectFailure.get().getMessage()
+                            : "Not finished within the " + deadlineMs + "ms lookup deadline";
+                    table = errorTable(q.key, q.displayName, q.source, q.group, reason);
+                }
+                tables.add(table);
+            }
+            skipped.addAndGet(missing);
+            if (missing > 0 && missing == queries.size() && connectFailure.get() != null) {
+                throw connectFailure.get();
+            }
+            logger.info("Ran {} {} diagnostic queries on {} connection(s) in {}ms", queries.size(), stack, futures.size(),
+                    System.currentTimeMillis() - startTime);
+            return tables;
+        }
+    }
+
+    /**
+     * Start the requested stacks together and collect the tables AAD first, then IO. A stack
+     * that cannot connect contributes a single connection-error table; the other is unaffected.
+     * Complete results are kept in {@link OrderLookupCache}; a cache hit adds cachedAt to response.
+     *
+     * Interactive lookups (lookup.defer-slow) leave queries tagged slow out of the returned tables:
+     * they keep running in the background and response gets deferred.token / deferred.pending,
+     * which the client redeems through {@link DeferredLookupRegistry} (poll or SSE). Bulk lookups
+     * run everything inline on the bulk lane.
+     */
+    private List<Map<String, Object>> runStacks(Map<String, Object> response, String env, boolean queryAad, boolean queryIo,
+                                                String orderNumber, String containerId, String whId, Set<String> groups,
+                                                boolean bulk) {
+        boolean deferSlow = !bulk && config.isLookupDeferSlow();
+        Lane lane = bulk ? bulkLane : interactiveLane;
+        String stack = queryAad && queryIo ? "both" : queryAad ? Wms360DataSourceRegistry.AAD : Wms360DataSourceRegistry.IO;
+        long[] cachedAt = new long[1];
+        List<Map<String, Object>> cached = lookupCache.get(env, stack, whId, orderNumber, containerId, groups, cachedAt);
+        if (cached != null) {
+            response.put("cachedAt", new java.util.Date(cachedAt[0]).toString());
+            return cached;
+        }
+        long cacheToken = lookupCache.token();
+
+        List<DiagnosticQuery> aadSpecs = queryAad ? inGroups(aadQueries(orderNumber, containerId, whId), groups) : new ArrayList<>();
+        List<DiagnosticQuery> ioSpecs = queryIo ? inGroups(ioQueries(orderNumber, containerId, whId), groups) : new ArrayList<>();
+        Map<String, Integer> position = new HashMap<>();
+        for (DiagnosticQuery q : aadSpecs) position.put(q.key, position.size());
+        for (DiagnosticQuery q : ioSpecs) position.put(q.key, position.size());
+
+        // Past lookup.deferred-max-runs, slow queries run inline under the normal deadline instead
+        if (deferSlow && !deferredRuns.tryAcquire()) {
+            logger.info("{} deferred lookups already running; running slow queries inline", config.getLookupDeferredMaxRuns());
+            deferSlow = false;
+        }
+        boolean holdsDeferredSlot = deferSlow;
+        List<DiagnosticQuery> aadSlow = deferSlow ? takeSlow(aadSpecs) : new ArrayList<>();
+        List<DiagnosticQuery> ioSlow = deferSlow ? takeSlow(ioSpecs) : new ArrayList<>();
+        DeferredLookupRegistry.Sections sections = null;
+        List<DiagnosticRun> slowRuns = new ArrayList<>();
+        if (!aadSlow.isEmpty() || !ioSlow.isEmpty()) {
+            List<String> keys = new ArrayList<>();
+            aadSlow.forEach(q -> keys.add(q.key));
+            ioSlow.forEach(q -> keys.add(q.key));
+            DeferredLookupRegistry.Sections s = deferredLookups.create(keys);
+            sections = s;
+            if (!aadSlow.isEmpty()) {
+                slowRuns.add(new DiagnosticRun(env, Wms360DataSourceRegistry.AAD, aadSlow, deferredLane, config.getLookupSlowDeadlineMs(),
+                        t -> deferredLookups.publish(s, t)));
+            }
+            if (!ioSlow.isEmpty()) {
+                slowRuns.add(new DiagnosticRun(env, Wms360DataSourceRegistry.IO, ioSlow, deferredLane, config.getLookupSlowDeadlineMs(),
+                        t -> deferredLookups.publish(s, t)));
+            }
+        } else if (holdsDeferredSlot) {
+            // Nothing slow among the selected groups
+            deferredRuns.release();
+        }
+
+        DiagnosticRun aad = queryAad ? new DiagnosticRun(env, Wms360DataSourceRegistry.AAD, aadSpecs, lane) : null;
+        DiagnosticRun io = queryIo ? new DiagnosticRun(env, Wms360DataSourceRegistry.IO, ioSpecs, lane) : null;
+
+        List<Map<String, Object>> tables = new ArrayList<>();
+        boolean complete = true;
+        if (aad != null) {
+            try {
+                tables.addAll(aad.await());
+            } catch (SQLException e) {
+                complete = false;
+                logger.error("AAD connection failed", e);
+                tables.add(errorTable("aad_connection", "AAD Connection Error", "AAD", "Connection",
+                    "Failed to connect to " + config.getAadServer(env) + ": " + e.getMessage()));
+            }
+        }
+        if (io != null) {
+            try {
+                tables.addAll(io.await());
+            } catch (SQLException e) {
+                complete = false;
+                logger.error("IO connection failed", e);
+                tables.add(errorTable("io_connection", "IO Connection Error", "IO", "Connection",
+                    "Failed to connect to " + config.getIoServer(env) + ": " + e.getMessage()));
+            }
+        }
+        complete = complete && (aad == null || aad.isComplete()) && (io == null || io.isComplete());
+
+        if (sections != null) {
+            Map<String, Object> deferred = new LinkedHashMap<>();
+            deferred.put("token", sections.token);
+            deferred.put("pending", new ArrayList<>(sections.pending));
+            response.put("deferred", deferred);
+
+            DeferredLookupRegistry.Sections s = sections;
+            List<Map<String, Object>> fastTables = List.copyOf(tables);
+            boolean fastComplete = complete;
+            try {
+                deferredExecutor.submit(() -> {
+                    try {
+                        List<Map<String, Object>> all = new ArrayList<>(fastTables);
+                        boolean allComplete = fastComplete && finishDeferred(s, slowRuns, all);
+                        if (allComplete) {
+                            all.sort(Comparator.comparingInt(t -> position.getOrDefault(String.valueOf(t.get("name")), Integer.MAX_VALUE)));
+                            lookupCache.put(env, stack, whId, orderNumber, containerId, groups, all, cacheToken);
+                        }
+                    } finally {
+                        deferredRuns.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                deferredRuns.release();
+                deferredLookups.finish(s);
+            }
+            return tables;
+        }
+
+        // Only cache what the databases actually answered, not query errors, connection failures or deadline misses
+        if (complete) {
+            lookupCache.put(env, stack, whId, orderNumber, containerId, groups, tables, cacheToken);
+        }
+        return tables;
+    }
+
+    private static List<DiagnosticQuery> takeSlow(List<DiagnosticQuery> queries) {
+        List<DiagnosticQuery> slow = new ArrayList<>();
+        Iterator<DiagnosticQuery> it = queries.iterator();
+        while (it.hasNext()) {
+            DiagnosticQuery q = it.next();
+            if (q.slow) {
+                slow.add(q);
+                it.remove();
+            }
+        }
+        return slow;
+    }
+
+    /**
+     * Wait for the slow runs of a deferred lookup, publish whatever was not published as it
+     * finished (timeouts, connection failures), mark the token done and add the tables to out.
+     *
+     * @return true if every slow query ran without an error
+     */
+    private boolean finishDeferred(DeferredLookupRegistry.Sections sections, List<DiagnosticRun> runs,
+                                   List<Map<String, Object>> out) {
+        boolean complete = true;
+        for (DiagnosticRun run : runs) {
+            List<Map<String, Object>> tables;
+            try {
+                tables = run.await();
+                complete &= run.isComplete();
+            } catch (SQLException e) {
+                complete = false;
+                tables = new ArrayList<>();
+                for (DiagnosticQuery q : run.queries) {
+                    tables.add(errorTable(q.key, q.displayName, q.source, q.group, "Not run: " + e.getMessage()));
+                }
+            }
+            tables.forEach(t -> deferredLookups.publish(sections, t));
+            out.addAll(tables);
+        }
+        deferredLookups.finish(sections);
+        return complete;
+    }
+
+    private Map<String, Object> namedQuery(Connection conn, DiagnosticQuery q, int timeoutSeconds) {
+        long startTime = System.currentTimeMillis();
+        Map<String, Object> result = executeQuery(conn, timeoutSeconds, q.sql, q.params);
+        result.put("name", q.key);
+        result.put("displayName", q.displayName);
+        result.put("source", q.source);
+        result.put("group", q.group);
+        result.put("elapsedMs", System.currentTimeMillis() - startTime);
         return result;
     }
 
+    private static List<DiagnosticQuery> inGroups(List<DiagnosticQuery> queries, Set<String> groups) {
+        if (groups == null || groups.isEmpty()) {
+            return queries;
+        }
+        Set<String> wanted = new HashSet<>();
+        groups.forEach(g -> wanted.add(g.trim().toLowerCase(Locale.ROOT)));
+        queries.removeIf(q -> !wanted.contains(q.group.toLowerCase(Locale.ROOT)));
+        return queries;
+    }
+
+    /**
+     * With roadrats.wms360.lookup.batch-groups on, each diagnostic group is one unit of work
+     * (one round trip); otherwise every query is its own unit. Units keep first-seen group order.
+     */
+    private List<List<Integer>> workUnits(List<DiagnosticQuery> queries) {
+        List<List<Integer>> units = new ArrayList<>();
+        if (!config.isLookupBatchGroups()) {
+            for (int i = 0; i < queries.size(); i++) {
+                units.add(List.of(i));
+            }
+            return units;
+        }
+        Map<String, List<Integer>> byGroup = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            byGroup.computeIfAbsent(queries.get(i).group, k -> new ArrayList<>()).add(i);
+        }
+        units.addAll(byGroup.values());
+        return units;
+    }
+
+    /**
+     * Statement timeout for one query: lookup.query-timeout-seconds, or the whole
+     * lookup.slow-deadline-ms for queries tagged slow (they would never finish in the former).
+     */
+    private int queryTimeoutSeconds(DiagnosticQuery q) {
+        if (q.slow) {
+            return (int) Math.max(1, (config.getLookupSlowDeadlineMs() + 999) / 1000);
+        }
+        return config.getLookupQueryTimeoutSeconds();
+    }
+
+    /**
+     * Statement timeout of seconds, cut down to what is left before deadline (at least 1s, since
+     * 0 means no timeout to JDBC).
+     */
+    private static int cappedTimeout(int seconds, long deadline) {
+        long remaining = (deadline - System.currentTimeMillis() + 999) / 1000;
+        return (int) Math.max(1, Math.min(seconds, remaining));
+    }
+
+    /**
+     * Send several diagnostic queries as one SQL batch and map its result sets back to their
+     * tables in order. If the batch stops early (a table missing, a bad column), the tables
+     * already read are kept and the rest run one at a time so each reports its own error.
+     * Nothing runs past deadline: the returned list is shorter than batch when it was reached.
+     */
+    private List<Map<String, Object>> namedBatch(Connection conn, List<DiagnosticQuery> batch, long deadline) {
+        long startTime = System.currentTimeMillis();
+        StringBuilder sql = new StringBuilder("SET NOCOUNT ON;\n");
+        List<Object> params = new ArrayList<>();
+        for (DiagnosticQuery q : batch) {
+            sql.append(q.sql).append(";\n");
+            params.addAll(Arrays.asList(q.params));
+        }
+
+        List<Map<String, Object>> tables = new ArrayList<>(batch.size());
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            stmt.setQueryTimeout(cappedTimeout(batch.stream().mapToInt(this::queryTimeoutSeconds).sum(), deadline));
+            boolean isResultSet = stmt.execute();
+            while (tables.size() < batch.size()) {
+                if (isResultSet) {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    try (ResultSet rs = stmt.getResultSet()) {
+                        readResultSet(rs, result);
+                    }
+                    tables.add(result);
+                } else if (stmt.getUpdateCount() == -1) {
+                    break;
+                }
+                isResultSet = stmt.getMoreResults();
+            }
+        } catch (SQLException e) {
+            logger.debug("Batch of {} stopped after {} result sets: {}", batch.size(), tables.size(), e.getMessage());
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        for (int k = 0; k < tables.size(); k++) {
+            DiagnosticQuery q = batch.get(k);
+            Map<String, Object> result = tables.get(k);
+            result.put("name", q.key);
+            result.put("displayName", q.displayName);
+            result.put("source", q.source);
+            result.put("group", q.group);
+            result.put("elapsedMs", elapsed);
+            result.put("batched", true);
+        }
+        for (int k = tables.size(); k < batch.size(); k++) {
+            if (System.currentTimeMillis() >= deadline) {
+                break;
+            }
+            tables.add(namedQuery(conn, batch.get(k), cappedTimeout(queryTimeoutSeconds(batch.get(k)), deadline)));
+        }
+        return tables;
+    }
+
     private Map<String, Object> errorTable(String key, String displayName, String source, String group, String errorMsg) {
         Map<String, Object> result = new LinkedHashMap<>();
         result.put("name", key);
         result.put("displayName", displayName);
         result.put("source", source);
         result.put("group", group);
-        result.put("columns", List.of());
-        result.put("rows", List.of());
         result.put("rowCount", 0);
+        result.put("table", ColumnarTable.EMPTY);
         result.put("error", errorMsg);
         return result;
     }
 
     private Map<String, Object> executeQuery(Connection conn, String sql, Object... params) {
-        Map<String, Object> result = new LinkedHashMap<>();
-
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i]);
-            }
-            stmt.setQueryTimeout(config.getConnectionTimeout());
+        return executeQuery(conn, config.getConnectionTimeout(), sql, params);
+    }
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                ResultSetMetaData meta = rs.getMetaData();
-                int colCount = meta.getColumnCount();
+    private Map<String, Object> executeQuery(Connection conn, int timeoutSeconds, String sql, Object... params) {
+        Map<String, Object> result = new LinkedHashMap<>();
 
-                List<String> columns = new ArrayList<>();
-                for (int i = 1; i <= colCount; i++) {
-                    String colName = meta.getColumnName(i);
-                    if (columns.contains(colName)) {
-                        colName = colName + "_" + i;
-                    }
-                    columns.add(colName);
-                }
-                result.put("columns", columns);
-
-                List<Map<String, Object>> rows = new ArrayList<>();
-                while (rs.next()) {
-                    Map<String, Object> row = new LinkedHashMap<>();
-                    for (int i = 1; i <= colCount; i++) {
-                        Object value = rs.getObject(i);
-                        if (value instanceof java.sql.Timestamp) {
-                            row.put(columns.get(i - 1), value.toString());
-                        } else if (value instanceof java.sql.Date) {
-                            row.put(columns.get(i - 1), value.toString());
-                        } else if (value instanceof byte[]) {
-                            row.put(columns.get(i - 1), "[binary]");
-                        } else if (value instanceof java.math.BigDecimal) {
-                            row.put(columns.get(i - 1), ((java.math.BigDecimal) value).toPlainString());
-                        } else {
-                            row.put(columns.get(i - 1), value);
-                        }
-                    }
-                    rows.add(row);
-                }
-                result.put("rows", rows);
-                result.put("rowCount", rows.size());
-            }
+        try {
+            ColumnarTable table = ColumnarResultMapper.query(conn, timeoutSeconds, sql, params);
+            result.put("rowCount", table.getRowCount());
+            result.put("table", table);
         } catch (SQLException e) {
             logger.warn("Query failed: {} - {}", sql.substring(0, Math.min(80, sql.length())), e.getMessage());
-            result.put("columns", List.of());
-            result.put("rows", List.of());
             result.put("rowCount", 0);
+            result.put("table", ColumnarTable.EMPTY);
             result.put("error", e.getMessage());
         }
 
         return result;
     }
 
+    /**
+     * Read the current result set into result as rowCount plus a columnar table.
+     */
+    private static void readResultSet(ResultSet rs, Map<String, Object> result) throws SQLException {
+        ColumnarTable table = ColumnarResultMapper.read(rs);
+        result.put("rowCount", table.getRowCount());
+        result.put("table", table);
+    }
+
+    /**
+     * Rows of an executeQuery result as maps (empty on error); only for the small resolution queries.
+     */
+    private static List<Map<String, Object>> rows(Map<String, Object> result) {
+        Object table = result.get("table");
+        return table instanceof ColumnarTable t ? t.toRowMaps() : List.of();
+    }
+
     public Map<String, Object> testConnection(String env) {
         Map<String, Object> result = new LinkedHashMap<>();
         result.put("environment", env);
@@ -734,8 +1357,7 @@ public class OrderLookupService {
         result.put("aadDatabase", config.getAadDatabase(env));
 
         try {
-            Class.forName(config.getDriverClassName());
-            try (Connection conn = DriverManager.getConnection(config.buildIoJdbcUrl(env))) {
+            try (Connection conn = dataSources.getIoConnection(env)) {
                 result.put("ioStatus", "Connected");
             }
         } catch (Exception e) {
@@ -743,7 +1365,7 @@ public class OrderLookupService {
         }
 
         try {
-            try (Connection conn = DriverManager.getConnection(config.buildAadJdbcUrl(env))) {
+            try (Connection conn = dataSources.getAadConnection(env)) {
                 result.put("aadStatus", "Connected");
             }
         } catch (Exception e) {
@@ -752,4 +1374,11 @@ public class OrderLookupService {
 
         return result;
     }
+
+    /**
+     * Metrics for the pooled (env, stack) connections.
+     */
+    public Map<String, Object> getPoolStats() {
+        return dataSources.getPoolStats();
+    }
 }
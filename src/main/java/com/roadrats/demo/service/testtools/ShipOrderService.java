@@ -1,6 +1,7 @@
 package com.roadrats.demo.service.testtools;
 
 import com.roadrats.demo.config.Wms360Config;
+import com.roadrats.demo.repository.testtools.Wms360DataSourceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -14,9 +15,13 @@ public class ShipOrderService {
     private static final Logger logger = LoggerFactory.getLogger(ShipOrderService.class);
 
     private final Wms360Config config;
+    private final Wms360DataSourceRegistry dataSources;
+    private final OrderLookupCache lookupCache;
 
-    public ShipOrderService(Wms360Config config) {
+    public ShipOrderService(Wms360Config config, Wms360DataSourceRegistry dataSources, OrderLookupCache lookupCache) {
         this.config = config;
+        this.dataSources = dataSources;
+        this.lookupCache = lookupCache;
     }
 
     public Map<String, Object> shipOrder(String warehouseId, String orderNumber, String env) {
@@ -32,18 +37,10 @@ public class ShipOrderService {
             return response;
         }
 
-        try {
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            response.put("success", false);
-            response.put("message", "JDBC driver not found: " + e.getMessage());
-            return response;
-        }
-
         String jdbcUrl = config.buildAadJdbcUrl(env);
         logger.info("Ship order: wh={}, order={}, env={}, url={}", warehouseId, orderNumber, env, jdbcUrl);
 
-        try (Connection conn = DriverManager.getConnection(jdbcUrl)) {
+        try (Connection conn = dataSources.getAadConnection(env)) {
             try (CallableStatement cs = conn.prepareCall("{? = call dbo.usp_nonprod_order_ship(?, ?)}")) {
                 cs.registerOutParameter(1, Types.INTEGER);
                 cs.setString(2, warehouseId);
@@ -64,6 +61,9 @@ public class ShipOrderService {
             response.put("message", "Database error: " + e.getMessage());
         }
 
+        // Even a failed ship may have changed rows before erroring out
+        lookupCache.invalidateOrder(env, warehouseId, orderNumber);
+
         return response;
     }
 
@@ -80,18 +80,12 @@ public class ShipOrderService {
             return response;
         }
 
-        try {
-            Class.forName(config.getDriverClassName());
-        } catch (ClassNotFoundException e) {
-            response.put("success", false);
-            response.put("message", "JDBC driver not found: " + e.getMessage());
-            return response;
-        }
-
         String jdbcUrl = config.buildAadJdbcUrl(env);
         logger.info("Ship container: wh={}, container={}, env={}, url={}", warehouseId, containerId, env, jdbcUrl);
 
-        try (Connection conn = DriverManager.getConnection(jdbcUrl)) {
+        String orderNumber = null;
+        try (Connection conn = dataSources.getAadConnection(env)) {
+            orderNumber = containerOrder(conn, warehouseId, containerId);
             try (CallableStatement cs = conn.prepareCall("{? = call dbo.usp_nonprod_container_ship(?, ?)}")) {
                 cs.registerOutParameter(1, Types.INTEGER);
                 cs.setString(2, warehouseId);
@@ -112,6 +106,23 @@ public class ShipOrderService {
             response.put("message", "Database error: " + e.getMessage());
         }
 
+        lookupCache.invalidateContainer(env, warehouseId, containerId, orderNumber);
+
         return response;
     }
+
+    /**
+     * Order the container belongs to, so cached lookups of that order can be dropped; null if unknown.
+     */
+    private String containerOrder(Connection conn, String warehouseId, String containerId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT TOP 1 order_number FROM t_pick_container WHERE wh_id = ? AND container_id = ?")) {
+            ps.setString(1, warehouseId);
+            ps.setString(2, containerId);
+            ps.setQueryTimeout(config.getConnectionTimeout());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
 }
@@ -0,0 +1,108 @@
+package com.roadrats.demo.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeasedPoolsTest {
+
+    /**
+     * Data source handing out stub connections; remembers whether it was closed.
+     */
+    private static final class FakeDataSource extends HikariDataSource {
+        boolean closed;
+        int physicalCloses;
+        RuntimeException failure;
+
+        @Override
+        public Connection getConnection() {
+            if (failure != null) {
+                throw failure;
+            }
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("close".equals(method.getName())) {
+                            physicalCloses++;
+                        }
+                        return "isClosed".equals(method.getName()) ? closed : null;
+                    });
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private final List<FakeDataSource> created = new ArrayList<>();
+
+    private HikariDataSource create(String key) {
+        FakeDataSource dataSource = new FakeDataSource();
+        created.add(dataSource);
+        return dataSource;
+    }
+
+    @Test
+    void poolWithABorrowedConnectionIsNotEvicted() throws SQLException {
+        LeasedPools pools = new LeasedPools("test");
+        Connection conn = pools.getConnection("a", this::create);
+
+        pools.evictIdle(Long.MAX_VALUE);
+
+        assertFalse(created.get(0).closed);
+        assertEquals(1, pools.getStats().size());
+
+        conn.close();
+        pools.evictIdle(Long.MAX_VALUE);
+
+        assertTrue(created.get(0).closed);
+        assertTrue(pools.getStats().isEmpty());
+    }
+
+    @Test
+    void closingTwiceReleasesTheLeaseOnce() throws SQLException {
+        LeasedPools pools = new LeasedPools("test");
+        Connection first = pools.getConnection("a", this::create);
+        Connection second = pools.getConnection("a", this::create);
+
+        first.close();
+        first.close();
+        pools.evictIdle(Long.MAX_VALUE);
+
+        // The second borrow still holds its lease
+        assertFalse(created.get(0).closed);
+        assertEquals(2, created.get(0).physicalCloses);
+        second.close();
+    }
+
+    @Test
+    void borrowAfterEvictionGetsAFreshPool() throws SQLException {
+        LeasedPools pools = new LeasedPools("test");
+        pools.getConnection("a", this::create).close();
+        pools.evictIdle(Long.MAX_VALUE);
+
+        pools.getConnection("a", this::create).close();
+
+        assertEquals(2, created.size());
+        assertFalse(created.get(1).closed);
+    }
+
+    @Test
+    void failedBorrowReleasesItsLease() {
+        LeasedPools pools = new LeasedPools("test");
+        FakeDataSource failing = new FakeDataSource();
+        failing.failure = new IllegalStateException("pool down");
+
+        assertThrows(IllegalStateException.class, () -> pools.getConnection("a", k -> failing));
+        pools.evictIdle(Long.MAX_VALUE);
+
+        assertTrue(failing.closed);
+    }
+}
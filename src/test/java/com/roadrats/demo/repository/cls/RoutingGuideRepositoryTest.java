@@ -0,0 +1,62 @@
+package com.roadrats.demo.repository.cls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingGuideRepositoryTest {
+
+    private static List<String> zips(int count) {
+        List<String> zips = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            zips.add(String.format("%05d", i));
+        }
+        return zips;
+    }
+
+    @Test
+    void smallListIsPaddedToSmallestSizeWithLastCode() {
+        List<List<String>> chunks = RoutingGuideRepository.planChunks(List.of("10001", "10002", "10003"));
+
+        assertEquals(1, chunks.size());
+        assertEquals(32, chunks.get(0).size());
+        assertEquals(List.of("10001", "10002", "10003"), chunks.get(0).subList(0, 3));
+        assertTrue(chunks.get(0).subList(3, 32).stream().allMatch("10003"::equals));
+    }
+
+    @Test
+    void largeListIsSplitIntoFullChunksAndOnePaddedTail() {
+        List<String> zips = zips(600);
+        List<List<String>> chunks = RoutingGuideRepository.planChunks(zips);
+
+        assertEquals(3, chunks.size());
+        assertEquals(256, chunks.get(0).size());
+        assertEquals(256, chunks.get(1).size());
+        // 88 codes left over: padded up to the 256 size, not sent as an 88-parameter statement
+        assertEquals(256, chunks.get(2).size());
+        assertEquals(zips.subList(0, 256), chunks.get(0));
+        assertEquals(zips.subList(256, 512), chunks.get(1));
+        assertEquals(zips.subList(512, 600), chunks.get(2).subList(0, 88));
+        assertEquals("00599", chunks.get(2).get(255));
+    }
+
+    @Test
+    void everyCodeIsSentExactlyOnceApartFromPadding() {
+        List<String> zips = zips(513);
+        List<String> sent = new ArrayList<>();
+        for (List<String> chunk : RoutingGuideRepository.planChunks(zips)) {
+            chunk.stream().distinct().forEach(sent::add);
+        }
+        assertEquals(zips, sent);
+    }
+
+    @Test
+    void exactChunkSizeNeedsNoPadding() {
+        List<List<String>> chunks = RoutingGuideRepository.planChunks(zips(32));
+        assertEquals(1, chunks.size());
+        assertEquals(zips(32), chunks.get(0));
+    }
+}
@@ -0,0 +1,41 @@
+package com.roadrats.demo.repository.io;
+
+import com.roadrats.demo.service.XmlParsingService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueStatusRepositoryTest {
+
+    private final XmlParsingService xmlParsingService = new XmlParsingService();
+
+    @Test
+    void unroutedResponsesAreScreenedOut() {
+        for (String xml : List.of(
+                "<Response><Error>No rate</Error></Response>",
+                "<Response><CHE_ROUTE></CHE_ROUTE></Response>",
+                "<Response><CHE_ROUTE>   </CHE_ROUTE></Response>",
+                "<Response><CHE_ROUTE/></Response>",
+                "<Response><CHE_ROUTE type=\"x\" /></Response>",
+                "<Response><CHE_ROUTE_CODE>12</CHE_ROUTE_CODE></Response>")) {
+            assertFalse(QueueStatusRepository.mayHaveRoute(xml), xml);
+            assertEquals("", xmlParsingService.extractRoute(xml), xml);
+        }
+        assertFalse(QueueStatusRepository.mayHaveRoute(null));
+    }
+
+    @Test
+    void everyRoutedResponsePassesTheScreen() {
+        for (String xml : List.of(
+                "<Response><CHE_ROUTE>R12</CHE_ROUTE></Response>",
+                "<Response><CHE_ROUTE>\n  R12\n</CHE_ROUTE></Response>",
+                "<Response><CHE_ROUTE type=\"x\">R12</CHE_ROUTE></Response>",
+                "<Response><CHE_ROUTE><![CDATA[R12]]></CHE_ROUTE></Response>",
+                "<Response><CHE_ROUTE_CODE>1</CHE_ROUTE_CODE><CHE_ROUTE>R12</CHE_ROUTE></Response>")) {
+            assertTrue(QueueStatusRepository.mayHaveRoute(xml), xml);
+            assertEquals("R12", xmlParsingService.extractRoute(xml), xml);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.roadrats.demo.service.dberrors;
+
+import com.roadrats.demo.config.DatabaseErrorsConfig;
+import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import com.roadrats.demo.repository.dberrors.DatabaseErrorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseErrorAggregatorTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now(ZoneOffset.UTC).withNano(0);
+
+    private DatabaseErrorAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseErrorsConfig config = new DatabaseErrorsConfig() {
+            @Override
+            public List<String> getServers() {
+                return List.of("SQL1", "SQL2");
+            }
+
+            @Override
+            public int getAggregationBucketMinutes() {
+                return 60;
+            }
+        };
+        DatabaseErrorRepository repository = new DatabaseErrorRepository(null, null);
+        aggregator = new DatabaseErrorAggregator(config,
+                new DatabaseErrorCollector(config, repository, new ServerCircuitBreaker(config, repository)));
+
+        // One fingerprint: seen on SQL1/M1 three days ago and an hour ago, on SQL2/M2 two hours ago
+        aggregator.onAppended("SQL1", List.of(row("SQL1", "M1", "deadlock on 1", NOW.minusDays(3))));
+        aggregator.onAppended("SQL2", List.of(row("SQL2", "M2", "deadlock on 2", NOW.minusHours(2))));
+        aggregator.onAppended("SQL1", List.of(row("SQL1", "M1", "deadlock on 3", NOW.minusHours(1))));
+    }
+
+    private static DatabaseErrorEntry row(String server, String machine, String details, LocalDateTime utc) {
+        DatabaseErrorEntry e = new DatabaseErrorEntry();
+        e.setServerName(server);
+        e.setMachineId(machine);
+        e.setLoggedOnUtc(utc);
+        e.setResourceName("CANT_EXE_DB_TEST");
+        e.setDetails(details);
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> only(int days, String server, String machine) {
+        List<Map<String, Object>> rows = (List<Map<String, Object>>) aggregator.getTop(days, 10, server, machine).get("fingerprints");
+        assertEquals(1, rows.size());
+        return rows.get(0);
+    }
+
+    @Test
+    void unfilteredCoversTheWholeWindow() {
+        Map<String, Object> row = only(7, null, null);
+
+        assertEquals(3L, row.get("count"));
+        assertEquals(NOW.minusDays(3), row.get("firstSeenUtc"));
+        assertEquals(NOW.minusHours(1), row.get("lastSeenUtc"));
+    }
+
+    @Test
+    void firstSeenStaysInsideTheRequestedDays() {
+        Map<String, Object> row = only(1, null, null);
+
+        assertEquals(2L, row.get("count"));
+        assertEquals(NOW.minusHours(2), row.get("firstSeenUtc"));
+    }
+
+    @Test
+    void firstAndLastSeenFollowTheServerFilter() {
+        Map<String, Object> sql1 = only(7, "SQL1", null);
+        assertEquals(2L, sql1.get("count"));
+        assertEquals(NOW.minusDays(3), sql1.get("firstSeenUtc"));
+        assertEquals(NOW.minusHours(1), sql1.get("lastSeenUtc"));
+
+        Map<String, Object> sql2 = only(7, "SQL2", null);
+        assertEquals(1L, sql2.get("count"));
+        assertEquals(NOW.minusHours(2), sql2.get("firstSeenUtc"));
+        assertEquals("deadlock on 2", sql2.get("sampleDetails"));
+
+        assertEquals(NOW.minusHours(1), only(1, "SQL1", null).get("firstSeenUtc"));
+    }
+
+    @Test
+    void firstAndLastSeenFollowTheMachineFilter() {
+        Map<String, Object> m2 = only(7, null, "M2");
+        assertEquals(1L, m2.get("count"));
+        assertEquals(NOW.minusHours(2), m2.get("firstSeenUtc"));
+        assertEquals(NOW.minusHours(2), m2.get("lastSeenUtc"));
+
+        Map<String, Object> m1 = only(7, "SQL1", "M1");
+        assertEquals(NOW.minusDays(3), m1.get("firstSeenUtc"));
+        assertEquals("deadlock on 3", m1.get("sampleDetails"));
+    }
+
+    @Test
+    void rowsOutsideTheFiltersLeaveNoFingerprint() {
+        Map<String, Object> result = aggregator.getTop(1, 10, null, "M3");
+
+        assertEquals(0L, result.get("totalErrors"));
+        assertEquals(List.of(), result.get("fingerprints"));
+    }
+}
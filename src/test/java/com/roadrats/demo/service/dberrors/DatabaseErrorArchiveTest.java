@@ -0,0 +1,198 @@
+package com.roadrats.demo.service.dberrors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roadrats.demo.config.DatabaseErrorsConfig;
+import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import com.roadrats.demo.repository.dberrors.DatabaseErrorRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseErrorArchiveTest {
+
+    private static final String SERVER = "SQL1";
+    private static final LocalDateTime TODAY = LocalDateTime.now(ZoneOffset.UTC).withHour(12).withMinute(0).withSecond(0).withNano(0);
+
+    private Path dir;
+    private DatabaseErrorsConfig config;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("dberrors-archive");
+        config = new DatabaseErrorsConfig() {
+            @Override
+            public List<String> getServers() {
+                return List.of(SERVER, "SQL2");
+            }
+
+            @Override
+            public boolean isArchiveEnabled() {
+                return true;
+            }
+
+            @Override
+            public String getArchiveDir() {
+                return dir.toString();
+            }
+
+            @Override
+            public int getArchiveRetentionDays() {
+                return 90;
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private DatabaseErrorArchive archive() {
+        DatabaseErrorRepository repository = new DatabaseErrorRepository(null, null);
+        DatabaseErrorCollector collector = new DatabaseErrorCollector(config, repository, new ServerCircuitBreaker(config, repository));
+        DatabaseErrorArchive archive = new DatabaseErrorArchive(config, collector, new ObjectMapper().findAndRegisterModules());
+        archive.loadIndexes();
+        return archive;
+    }
+
+    private static DatabaseErrorEntry row(String server, String details, LocalDateTime utc) {
+        DatabaseErrorEntry e = new DatabaseErrorEntry();
+        e.setServerName(server);
+        e.setLoggedOnUtc(utc);
+        e.setLoggedOnLocal(utc);
+        e.setResourceName("CANT_EXE_DB_TEST");
+        e.setDetails(details);
+        return e;
+    }
+
+    private static List<String> details(List<DatabaseErrorEntry> rows) {
+        List<String> out = new ArrayList<>();
+        for (DatabaseErrorEntry e : rows) {
+            out.add(e.getDetails());
+        }
+        return out;
+    }
+
+    private Path segmentFile(LocalDateTime day, String server) {
+        return dir.resolve(day.toLocalDate().toString()).resolve(server + ".ndjson.gz");
+    }
+
+    @Test
+    void appendedRowsReadBackNewestFirstAcrossDays() {
+        DatabaseErrorArchive archive = archive();
+        archive.onAppended(SERVER, List.of(
+                row(SERVER, "a", TODAY.minusDays(1)),
+                row(SERVER, "b", TODAY.minusHours(2))));
+        archive.onAppended(SERVER, List.of(row(SERVER, "c", TODAY.minusHours(1))));
+        archive.onAppended("SQL2", List.of(row("SQL2", "d", TODAY.minusMinutes(30))));
+
+        assertEquals(List.of("d", "c", "b", "a"), details(archive.query(TODAY.minusDays(2), null, null, null, 0)));
+        assertEquals(List.of("c", "b", "a"), details(archive.query(TODAY.minusDays(2), null, SERVER, null, 0)));
+        assertEquals(List.of("b", "a"), details(archive.query(TODAY.minusDays(2), TODAY.minusHours(1), SERVER, null, 0)));
+    }
+
+    @Test
+    void rowsAlreadyArchivedAreNotWrittenAgain() {
+        DatabaseErrorArchive archive = archive();
+        List<DatabaseErrorEntry> batch = List.of(row(SERVER, "a", TODAY.minusHours(2)), row(SERVER, "b", TODAY.minusHours(1)));
+        archive.onAppended(SERVER, batch);
+        archive.onAppended(SERVER, batch);
+
+        assertEquals(2, archive.query(TODAY.minusDays(1), null, null, null, 0).size());
+    }
+
+    @Test
+    void limitKeepsRowsTiedWithTheLastOne() {
+        DatabaseErrorArchive archive = archive();
+        archive.onAppended(SERVER, List.of(
+                row(SERVER, "a", TODAY.minusHours(3)),
+                row(SERVER, "b", TODAY.minusHours(2)),
+                row(SERVER, "c", TODAY.minusHours(2)),
+                row(SERVER, "d", TODAY.minusHours(1))));
+
+        List<DatabaseErrorEntry> page = archive.query(TODAY.minusDays(1), null, null, null, 2);
+
+        assertEquals(3, page.size());
+        assertEquals("d", page.get(0).getDetails());
+        assertEquals(TODAY.minusHours(2), page.get(2).getLoggedOnUtc());
+    }
+
+    @Test
+    void indexesReloadAfterRestart() {
+        archive().onAppended(SERVER, List.of(row(SERVER, "a", TODAY.minusHours(2)), row(SERVER, "b", TODAY.minusHours(1))));
+
+        DatabaseErrorArchive restarted = archive();
+
+        assertEquals(List.of("b", "a"), details(restarted.query(TODAY.minusDays(1), null, SERVER, null, 0)));
+        // The reloaded high-water mark keeps a collector backfill from being archived twice
+        restarted.onAppended(SERVER, List.of(row(SERVER, "b", TODAY.minusHours(1)), row(SERVER, "c", TODAY.minusMinutes(30))));
+        assertEquals(List.of("c", "b", "a"), details(restarted.query(TODAY.minusDays(1), null, SERVER, null, 0)));
+    }
+
+    @Test
+    void damagedMemberOnlyLosesItsOwnBatch() throws IOException {
+        DatabaseErrorArchive archive = archive();
+        archive.onAppended(SERVER, List.of(row(SERVER, "a", TODAY.minusHours(3))));
+        archive.onAppended(SERVER, List.of(row(SERVER, "b", TODAY.minusHours(2))));
+
+        // Break the first member's gzip header
+        try (FileChannel channel = FileChannel.open(segmentFile(TODAY, SERVER), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0}), 0);
+        }
+
+        assertEquals(List.of("b"), details(archive.query(TODAY.minusDays(1), null, SERVER, null, 0)));
+    }
+
+    @Test
+    void tornTailIsDroppedBeforeTheNextAppend() throws IOException {
+        DatabaseErrorArchive archive = archive();
+        archive.onAppended(SERVER, List.of(row(SERVER, "a", TODAY.minusHours(3))));
+        Path data = segmentFile(TODAY, SERVER);
+
+        // Half of a gzip member, as left by a crash mid-append
+        byte[] whole = Files.readAllBytes(data);
+        try (OutputStream out = Files.newOutputStream(data, StandardOpenOption.APPEND)) {
+            out.write(whole, 0, whole.length / 2);
+        }
+        assertEquals(List.of("a"), details(archive.query(TODAY.minusDays(1), null, SERVER, null, 0)));
+
+        DatabaseErrorArchive restarted = archive();
+        restarted.onAppended(SERVER, List.of(row(SERVER, "b", TODAY.minusHours(2))));
+
+        assertEquals(List.of("b", "a"), details(restarted.query(TODAY.minusDays(1), null, SERVER, null, 0)));
+    }
+
+    @Test
+    void retentionDeletesOnlyDaysPastTheRetentionPeriod() {
+        DatabaseErrorArchive archive = archive();
+        LocalDateTime old = TODAY.minusDays(120);
+        archive.onAppended(SERVER, List.of(row(SERVER, "old", old), row(SERVER, "new", TODAY.minusHours(1))));
+        assertTrue(Files.exists(segmentFile(old, SERVER)));
+
+        archive.enforceRetention();
+
+        assertFalse(Files.exists(dir.resolve(old.toLocalDate().toString())));
+        assertEquals(List.of("new"), details(archive.query(TODAY.minusDays(200), null, null, null, 0)));
+    }
+}
@@ -0,0 +1,193 @@
+package com.roadrats.demo.service.dberrors;
+
+import com.roadrats.demo.config.DatabaseErrorsConfig;
+import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import com.roadrats.demo.repository.dberrors.DatabaseErrorRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseErrorCollectorTest {
+
+    private static final String SERVER = "SQL1";
+    private static final LocalDateTime BASE = LocalDateTime.now(ZoneOffset.UTC).minusDays(1).withNano(0);
+
+    /**
+     * In-memory t_log_message: queryServerSince / queryServerAt behave like the SQL (strictly
+     * after, oldest first, TOP n; exact match).
+     */
+    private static final class FakeRepository extends DatabaseErrorRepository {
+        final List<DatabaseErrorEntry> rows = new ArrayList<>();
+        int sinceCalls;
+        // Run once, after the first queryServerSince has read its batch
+        Runnable afterFirstRead;
+
+        FakeRepository() {
+            super(null, null);
+        }
+
+        @Override
+        public List<DatabaseErrorEntry> queryServerSince(String server, LocalDateTime afterUtc, int maxRows) {
+            sinceCalls++;
+            List<DatabaseErrorEntry> batch = rows.stream()
+                    .filter(e -> e.getLoggedOnUtc().isAfter(afterUtc))
+                    .sorted(Comparator.comparing(DatabaseErrorEntry::getLoggedOnUtc))
+                    .limit(maxRows)
+                    .collect(Collectors.toCollection(ArrayList::new));
+            if (sinceCalls == 1 && afterFirstRead != null) {
+                afterFirstRead.run();
+            }
+            return batch;
+        }
+
+        @Override
+        public List<DatabaseErrorEntry> queryServerAt(String server, LocalDateTime atUtc) {
+            return rows.stream()
+                    .filter(e -> e.getLoggedOnUtc().equals(atUtc))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static DatabaseErrorsConfig config(int maxEntries) {
+        return new DatabaseErrorsConfig() {
+            @Override
+            public List<String> getServers() {
+                return List.of(SERVER);
+            }
+
+            @Override
+            public int getCollectorMaxEntriesPerServer() {
+                return maxEntries;
+            }
+
+            @Override
+            public int getBreakerFailureThreshold() {
+                return 2;
+            }
+        };
+    }
+
+    private static DatabaseErrorEntry row(int id, LocalDateTime utc) {
+        DatabaseErrorEntry e = new DatabaseErrorEntry();
+        e.setServerName(SERVER);
+        e.setLoggedOnUtc(utc);
+        e.setLoggedOnLocal(utc);
+        e.setResourceName("CANT_EXE_DB_TEST");
+        e.setDetails("row " + id);
+        return e;
+    }
+
+    private static DatabaseErrorCollector collector(DatabaseErrorsConfig config, FakeRepository repository) {
+        return new DatabaseErrorCollector(config, repository, new ServerCircuitBreaker(config, repository));
+    }
+
+    @Test
+    void trimTrailingTiesDropsTheLastTimestampAndReturnsIt() {
+        List<DatabaseErrorEntry> batch = new ArrayList<>(List.of(
+                row(1, BASE), row(2, BASE.plusSeconds(1)), row(3, BASE.plusSeconds(2)), row(4, BASE.plusSeconds(2))));
+
+        assertEquals(BASE.plusSeconds(2), DatabaseErrorCollector.trimTrailingTies(batch));
+        assertEquals(2, batch.size());
+        assertEquals(BASE.plusSeconds(1), batch.get(1).getLoggedOnUtc());
+    }
+
+    @Test
+    void trimTrailingTiesEmptiesABatchOfOneTimestamp() {
+        List<DatabaseErrorEntry> batch = new ArrayList<>(List.of(row(1, BASE), row(2, BASE), row(3, BASE)));
+
+        assertEquals(BASE, DatabaseErrorCollector.trimTrailingTies(batch));
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    void backfillPagesThroughTiesAtBatchBoundariesWithoutLosingRows() {
+        FakeRepository repository = new FakeRepository();
+        int id = 0;
+        // 4998 distinct timestamps, then 10 rows sharing one that straddle the 5000-row batch edge
+        for (int i = 0; i < 4998; i++) {
+            repository.rows.add(row(id++, BASE.plusSeconds(i)));
+        }
+        LocalDateTime tie = BASE.plusSeconds(5000);
+        for (int i = 0; i < 10; i++) {
+            repository.rows.add(row(id++, tie));
+        }
+        for (int i = 0; i < 3000; i++) {
+            repository.rows.add(row(id++, BASE.plusSeconds(6000 + i)));
+        }
+
+        DatabaseErrorCollector collector = collector(config(100_000), repository);
+        collector.pollServer(SERVER);
+
+        List<DatabaseErrorEntry> collected = collector.getRecent(SERVER, 7, Integer.MAX_VALUE);
+        assertEquals(repository.rows.size(), collected.size());
+        assertEquals(repository.rows.size(), collected.stream().map(DatabaseErrorEntry::getDetails).distinct().count());
+        assertEquals(10, collected.stream().filter(e -> e.getLoggedOnUtc().equals(tie)).count());
+        assertTrue(collector.isReady(SERVER));
+    }
+
+    @Test
+    void batchOfOneTimestampIsReadInFullAndPollingMovesOn() {
+        FakeRepository repository = new FakeRepository();
+        for (int i = 0; i < 6000; i++) {
+            repository.rows.add(row(i, BASE));
+        }
+        repository.rows.add(row(6000, BASE.plusSeconds(1)));
+
+        DatabaseErrorCollector collector = collector(config(100_000), repository);
+        collector.pollServer(SERVER);
+
+        assertEquals(6001, collector.getRecent(SERVER, 7, Integer.MAX_VALUE).size());
+
+        // Nothing new: the next poll appends nothing and doesn't re-read the tied rows
+        collector.pollServer(SERVER);
+        assertEquals(6001, collector.getRecent(SERVER, 7, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void backfillNeverHoldsMoreThanTheCapPlusOneBatch() {
+        FakeRepository repository = new FakeRepository();
+        for (int i = 0; i < 20_000; i++) {
+            repository.rows.add(row(i, BASE.plusSeconds(i)));
+        }
+        int cap = 1000;
+        DatabaseErrorCollector collector = collector(config(cap), repository);
+        int[] largest = new int[1];
+        int[] delivered = new int[1];
+        collector.addListener((server, rows) -> {
+            delivered[0] += rows.size();
+            Map<?, ?> status = (Map<?, ?>) collector.getStatus().get(SERVER);
+            largest[0] = Math.max(largest[0], (Integer) status.get("entries"));
+        });
+
+        collector.pollServer(SERVER);
+
+        assertTrue(largest[0] <= cap, "buffer grew to " + largest[0]);
+        assertEquals(20_000, delivered[0], "listeners still see every row once");
+        List<DatabaseErrorEntry> recent = collector.getRecent(SERVER, 7, Integer.MAX_VALUE);
+        assertEquals(cap, recent.size());
+        assertEquals("row 19999", recent.get(0).getDetails());
+    }
+
+    @Test
+    void pollThatLostTheRaceToAnotherPollAppendsNothing() {
+        FakeRepository repository = new FakeRepository();
+        for (int i = 0; i < 10; i++) {
+            repository.rows.add(row(i, BASE.plusSeconds(i)));
+        }
+        DatabaseErrorCollector collector = collector(config(100_000), repository);
+        // A second poll for the same server runs to completion while the first one holds its batch
+        repository.afterFirstRead = () -> collector.pollServer(SERVER);
+        int[] delivered = new int[1];
+        collector.addListener((server, rows) -> delivered[0] += rows.size());
+
+        collector.pollServer(SERVER);
+
+        assertEquals(10, delivered[0]);
+        assertEquals(10, collector.getRecent(SERVER, 7, Integer.MAX_VALUE).size());
+    }
+}
@@ -0,0 +1,150 @@
+package com.roadrats.demo.service.dberrors;
+
+import com.roadrats.demo.config.DatabaseErrorsConfig;
+import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import com.roadrats.demo.repository.dberrors.DatabaseErrorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseErrorSearchIndexTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now(ZoneOffset.UTC).withNano(0);
+
+    private DatabaseErrorSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseErrorsConfig config = new DatabaseErrorsConfig() {
+            @Override
+            public List<String> getServers() {
+                return List.of("SQL1", "SQL2");
+            }
+
+            @Override
+            public int getSearchMaxDocs() {
+                return 1000;
+            }
+        };
+        DatabaseErrorRepository repository = new DatabaseErrorRepository(null, null);
+        index = new DatabaseErrorSearchIndex(config,
+                new DatabaseErrorCollector(config, repository, new ServerCircuitBreaker(config, repository)));
+    }
+
+    private static DatabaseErrorEntry row(String server, String machine, String details, LocalDateTime utc) {
+        DatabaseErrorEntry e = new DatabaseErrorEntry();
+        e.setServerName(server);
+        e.setMachineId(machine);
+        e.setLoggedOnUtc(utc);
+        e.setResourceName("CANT_EXE_DB_TEST");
+        e.setDetails(details);
+        e.setCallStack("1: dbo.usp_ship_order:12");
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> details(Map<String, Object> result) {
+        List<String> out = new ArrayList<>();
+        for (DatabaseErrorEntry e : (List<DatabaseErrorEntry>) result.get("errors")) {
+            out.add(e.getDetails());
+        }
+        return out;
+    }
+
+    private Map<String, Object> search(String query) {
+        return index.search(query, null, null, null, null, 0);
+    }
+
+    @Test
+    void termsAreAndedAndCaseInsensitive() {
+        index.onAppended("SQL1", List.of(
+                row("SQL1", "M1", "Transaction was deadlocked on lock resources", NOW.minusMinutes(3)),
+                row("SQL1", "M1", "Timeout expired waiting for lock", NOW.minusMinutes(2)),
+                row("SQL1", "M1", "Deadlock victim chosen", NOW.minusMinutes(1))));
+
+        assertEquals(List.of("Timeout expired waiting for lock", "Transaction was deadlocked on lock resources"),
+                details(search("LOCK")));
+        assertEquals(List.of("Transaction was deadlocked on lock resources"), details(search("lock deadlocked")));
+        assertEquals(List.of(), details(search("lock nosuchterm")));
+        // Call stack is indexed too, with underscores kept inside a term
+        assertEquals(3, details(search("usp_ship_order")).size());
+    }
+
+    @Test
+    void phrasesMustAppearAsWritten() {
+        index.onAppended("SQL1", List.of(
+                row("SQL1", "M1", "was chosen as the deadlock victim", NOW.minusMinutes(2)),
+                row("SQL1", "M1", "victim of a deadlock", NOW.minusMinutes(1))));
+
+        assertEquals(List.of("was chosen as the deadlock victim"), details(search("\"deadlock victim\"")));
+        assertEquals(2, details(search("deadlock victim")).size());
+    }
+
+    @Test
+    void filtersApplyToServerMachineAndTimeRange() {
+        index.onAppended("SQL1", List.of(row("SQL1", "M1", "deadlock one", NOW.minusHours(3))));
+        index.onAppended("SQL2", List.of(
+                row("SQL2", "M2", "deadlock two", NOW.minusHours(2)),
+                row("SQL2", "M3", "deadlock three", NOW.minusHours(1))));
+
+        assertEquals(List.of("deadlock three", "deadlock two"),
+                details(index.search("deadlock", "sql2", null, null, null, 0)));
+        assertEquals(List.of("deadlock two"), details(index.search("deadlock", null, "m2", null, null, 0)));
+        assertEquals(List.of("deadlock two", "deadlock one"),
+                details(index.search("deadlock", null, null, NOW.minusHours(4), NOW.minusHours(1), 0)));
+    }
+
+    @Test
+    void limitKeepsTheNewestAndReportsTheTotal() {
+        List<DatabaseErrorEntry> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(row("SQL1", "M1", "deadlock " + i, NOW.minusMinutes(10 - i)));
+        }
+        index.onAppended("SQL1", rows);
+
+        Map<String, Object> result = index.search("deadlock", null, null, null, null, 3);
+
+        assertEquals(List.of("deadlock 9", "deadlock 8", "deadlock 7"), details(result));
+        assertEquals(10, result.get("totalMatches"));
+    }
+
+    @Test
+    void oldestRowsAreDroppedPastMaxDocs() {
+        List<DatabaseErrorEntry> rows = new ArrayList<>();
+        for (int i = 0; i < 1005; i++) {
+            rows.add(row("SQL1", "M1", "row" + i + " deadlock", NOW.minusSeconds(2000 - i)));
+        }
+        index.onAppended("SQL1", rows);
+
+        assertEquals(1000, index.getStats().get("docs"));
+        assertEquals(List.of(), details(search("row0")));
+        assertEquals(List.of("row5 deadlock"), details(search("row5")));
+    }
+
+    @Test
+    void expiredRowsAreEvictedAndPostingsCompacted() {
+        index.onAppended("SQL1", List.of(
+                row("SQL1", "M1", "deadlock old", NOW.minusDays(DatabaseErrorCollector.WINDOW_DAYS + 1)),
+                row("SQL1", "M1", "deadlock recent", NOW.minusMinutes(1))));
+
+        index.evictExpired();
+
+        assertEquals(List.of("deadlock recent"), details(search("deadlock")));
+        assertEquals(List.of(), details(search("old")));
+        Map<String, Object> stats = index.getStats();
+        assertEquals(1, stats.get("docs"));
+        assertEquals(0L, stats.get("deadPostings"));
+    }
+
+    @Test
+    void queryWithoutTermsIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> search("a \" \""));
+    }
+}
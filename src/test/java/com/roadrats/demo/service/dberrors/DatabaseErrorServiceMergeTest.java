@@ -0,0 +1,123 @@
+package com.roadrats.demo.service.dberrors;
+
+import com.roadrats.demo.model.dberrors.DatabaseErrorEntry;
+import com.roadrats.demo.model.dberrors.DatabaseErrorPage;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseErrorServiceMergeTest {
+
+    private static final LocalDateTime T = LocalDateTime.of(2026, 10, 1, 12, 0);
+
+    private static DatabaseErrorEntry row(String server, String details, LocalDateTime utc) {
+        DatabaseErrorEntry e = new DatabaseErrorEntry();
+        e.setServerName(server);
+        e.setLoggedOnUtc(utc);
+        e.setResourceName("CANT_EXE_DB_TEST");
+        e.setDetails(details);
+        return e;
+    }
+
+    /**
+     * Two servers, each with several rows on the same few timestamps.
+     */
+    private static Map<String, List<DatabaseErrorEntry>> servers() {
+        Map<String, List<DatabaseErrorEntry>> perServer = new LinkedHashMap<>();
+        for (String server : List.of("SQL2", "SQL1")) {
+            List<DatabaseErrorEntry> rows = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                rows.add(row(server, server + "-" + i, T.minusSeconds(i % 3)));
+            }
+            perServer.put(server, rows);
+        }
+        return perServer;
+    }
+
+    // A fresh copy of every list in a different order, as a re-query returning ties unordered would
+    private static Map<String, List<DatabaseErrorEntry>> reshuffled(Map<String, List<DatabaseErrorEntry>> perServer, Random random) {
+        Map<String, List<DatabaseErrorEntry>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, List<DatabaseErrorEntry>> entry : perServer.entrySet()) {
+            List<DatabaseErrorEntry> rows = new ArrayList<>(entry.getValue());
+            Collections.shuffle(rows, random);
+            copy.put(entry.getKey(), rows);
+        }
+        return copy;
+    }
+
+    private static List<String> details(List<DatabaseErrorEntry> rows) {
+        List<String> out = new ArrayList<>();
+        for (DatabaseErrorEntry e : rows) {
+            out.add(e.getDetails());
+        }
+        return out;
+    }
+
+    @Test
+    void pagesCoverEveryRowOnceWhenTiesComeBackInAnotherOrder() {
+        Map<String, List<DatabaseErrorEntry>> perServer = servers();
+        List<String> all = details(DatabaseErrorService.merge(reshuffled(perServer, new Random(1)), null, 0).getErrors());
+        assertEquals(24, all.size());
+
+        Random random = new Random(42);
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            DatabaseErrorPage page = DatabaseErrorService.merge(reshuffled(perServer, random),
+                    DatabaseErrorService.MergePosition.decode(cursor), 5);
+            paged.addAll(details(page.getErrors()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(all, paged);
+        assertEquals(24, new HashSet<>(paged).size());
+    }
+
+    @Test
+    void tiesAreOrderedByServerThenRowId() {
+        List<DatabaseErrorEntry> merged = DatabaseErrorService.merge(servers(), null, 0).getErrors();
+
+        for (int i = 1; i < merged.size(); i++) {
+            DatabaseErrorEntry prev = merged.get(i - 1);
+            DatabaseErrorEntry next = merged.get(i);
+            int cmp = next.getLoggedOnUtc().compareTo(prev.getLoggedOnUtc());
+            assertTrue(cmp <= 0, "newest first");
+            if (cmp == 0 && prev.getServerName().equals(next.getServerName())) {
+                assertTrue(DatabaseErrorService.rowId(prev).compareTo(DatabaseErrorService.rowId(next)) < 0);
+            } else if (cmp == 0) {
+                assertTrue(prev.getServerName().compareTo(next.getServerName()) < 0);
+            }
+        }
+    }
+
+    @Test
+    void identicalRowsAreEachReturnedOnce() {
+        Map<String, List<DatabaseErrorEntry>> perServer = new LinkedHashMap<>();
+        perServer.put("SQL1", new ArrayList<>(List.of(row("SQL1", "same", T), row("SQL1", "same", T),
+                row("SQL1", "same", T), row("SQL1", "older", T.minusMinutes(1)))));
+
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            DatabaseErrorPage page = DatabaseErrorService.merge(perServer, DatabaseErrorService.MergePosition.decode(cursor), 1);
+            paged.addAll(details(page.getErrors()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of("same", "same", "same", "older"), paged);
+    }
+
+    @Test
+    void rowIdIgnoresServerAndListPosition() {
+        assertEquals(DatabaseErrorService.rowId(row("SQL1", "x", T)), DatabaseErrorService.rowId(row("SQL2", "x", T)));
+        assertNotEquals(DatabaseErrorService.rowId(row("SQL1", "x", T)), DatabaseErrorService.rowId(row("SQL1", "y", T)));
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> DatabaseErrorService.MergePosition.decode("not-a-cursor"));
+    }
+}
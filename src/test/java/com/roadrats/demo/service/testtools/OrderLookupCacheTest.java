@@ -0,0 +1,152 @@
+package com.roadrats.demo.service.testtools;
+
+import com.roadrats.demo.config.Wms360Config;
+import com.roadrats.demo.model.testtools.ColumnarTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderLookupCacheTest {
+
+    private static final String WH = "WH1";
+
+    private static OrderLookupCache cache(int maxEntries) {
+        return new OrderLookupCache(new Wms360Config() {
+            @Override
+            public int getLookupCacheTtlSeconds() {
+                return 60;
+            }
+
+            @Override
+            public int getLookupCacheMaxEntries() {
+                return maxEntries;
+            }
+        });
+    }
+
+    /**
+     * One diagnostic table listing the given containers in a container_id column.
+     */
+    private static List<Map<String, Object>> tables(String... containers) {
+        Object[] values = containers.clone();
+        ColumnarTable table = new ColumnarTable(List.of("container_id"), new ColumnarTable.Kind[]{ColumnarTable.Kind.STRING},
+                new Object[]{values}, new BitSet[]{new BitSet()}, containers.length);
+        Map<String, Object> t = new LinkedHashMap<>();
+        t.put("name", "aad_pick_container");
+        t.put("rowCount", containers.length);
+        t.put("table", table);
+        return List.of(t);
+    }
+
+    private static void put(OrderLookupCache cache, String stack, String order, String container, Set<String> groups,
+                            List<Map<String, Object>> tables) {
+        cache.put("test", stack, WH, order, container, groups, tables, cache.token());
+    }
+
+    private static boolean cached(OrderLookupCache cache, String stack, String order, String container, Set<String> groups) {
+        return cache.get("test", stack, WH, order, container, groups, null) != null;
+    }
+
+    @Test
+    void getReturnsWhatWasPutUnderTheSameKey() {
+        OrderLookupCache cache = cache(10);
+        put(cache, "both", "O1", null, null, tables("C1"));
+
+        long[] cachedAt = new long[1];
+        List<Map<String, Object>> hit = cache.get("test", "both", WH, "O1", null, null, cachedAt);
+        assertNotNull(hit);
+        assertEquals(1, hit.size());
+        assertTrue(cachedAt[0] > 0);
+        assertFalse(cached(cache, "aad", "O1", null, null));
+        assertFalse(cached(cache, "both", "O1", null, Set.of("Queues")));
+    }
+
+    @Test
+    void groupSelectionIsOrderAndCaseInsensitive() {
+        OrderLookupCache cache = cache(10);
+        put(cache, "both", "O1", null, new LinkedHashSet<>(List.of("Queues", "Picking")), tables());
+        assertTrue(cached(cache, "both", "O1", null, new LinkedHashSet<>(List.of("picking", "QUEUES"))));
+    }
+
+    @Test
+    void invalidateOrderDropsEveryVariantOfThatOrderOnly() {
+        OrderLookupCache cache = cache(10);
+        put(cache, "both", "O1", null, null, tables("C1"));
+        put(cache, "aad", "O1", "C1", Set.of("Queues"), tables());
+        put(cache, "both", "O2", null, null, tables("C2"));
+
+        cache.invalidateOrder("test", WH, "O1");
+
+        assertFalse(cached(cache, "both", "O1", null, null));
+        assertFalse(cached(cache, "aad", "O1", "C1", Set.of("Queues")));
+        assertTrue(cached(cache, "both", "O2", null, null));
+    }
+
+    @Test
+    void invalidateContainerDropsTheResolvedOrdersGroupFilteredLookups() {
+        OrderLookupCache cache = cache(10);
+        // Filtered to a group whose tables never list containers
+        put(cache, "both", "O1", null, Set.of("Queues"), tables());
+        put(cache, "both", "O2", null, null, tables("C2"));
+
+        cache.invalidateContainer("test", WH, "C1", "O1");
+
+        assertFalse(cached(cache, "both", "O1", null, Set.of("Queues")));
+        assertTrue(cached(cache, "both", "O2", null, null));
+    }
+
+    @Test
+    void invalidateContainerFollowsCachedRowsToTheirOrderWhenNotResolved() {
+        OrderLookupCache cache = cache(10);
+        put(cache, "both", "O1", null, null, tables("C1", "C9"));
+        put(cache, "both", "O1", null, Set.of("Queues"), tables());
+        put(cache, "both", "O2", null, null, tables("C2"));
+
+        cache.invalidateContainer("test", WH, " C1 ", null);
+
+        assertFalse(cached(cache, "both", "O1", null, null));
+        assertFalse(cached(cache, "both", "O1", null, Set.of("Queues")));
+        assertTrue(cached(cache, "both", "O2", null, null));
+    }
+
+    @Test
+    void invalidationOnlyAppliesToItsEnvironmentAndWarehouse() {
+        OrderLookupCache cache = cache(10);
+        put(cache, "both", "O1", null, null, tables("C1"));
+        cache.put("prod", "both", WH, "O1", null, null, tables("C1"), cache.token());
+        cache.put("test", "both", "WH2", "O1", null, null, tables("C1"), cache.token());
+
+        cache.invalidateContainer("test", WH, "C1", "O1");
+
+        assertFalse(cached(cache, "both", "O1", null, null));
+        assertNotNull(cache.get("prod", "both", WH, "O1", null, null, null));
+        assertNotNull(cache.get("test", "both", "WH2", "O1", null, null, null));
+    }
+
+    @Test
+    void resultsStartedBeforeAnInvalidationAreNotStored() {
+        OrderLookupCache cache = cache(10);
+        long token = cache.token();
+        cache.invalidateContainer("test", WH, "C1", "O1");
+
+        cache.put("test", "both", WH, "O1", null, null, tables("C1"), token);
+
+        assertFalse(cached(cache, "both", "O1", null, null));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsDroppedPastMaxEntries() {
+        OrderLookupCache cache = cache(2);
+        put(cache, "both", "O1", null, null, tables());
+        put(cache, "both", "O2", null, null, tables());
+        assertTrue(cached(cache, "both", "O1", null, null));
+
+        put(cache, "both", "O3", null, null, tables());
+
+        assertTrue(cached(cache, "both", "O1", null, null));
+        assertFalse(cached(cache, "both", "O2", null, null));
+        assertTrue(cached(cache, "both", "O3", null, null));
+    }
+}